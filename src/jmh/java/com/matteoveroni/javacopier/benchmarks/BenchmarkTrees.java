@@ -0,0 +1,43 @@
+package com.matteoveroni.javacopier.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * @author Matteo Veroni
+ */
+public class BenchmarkTrees {
+
+    /**
+     * Parent of the trees generated by the benchmarks, the java.io.tmpdir unless the javacopier.benchmark.dir
+     * system property points somewhere else, e.g. to the device to measure.
+     */
+    public static final String BENCHMARK_DIR_PROPERTY = "javacopier.benchmark.dir";
+
+    private BenchmarkTrees() {
+        //  PRIVATE CONSTRUCTOR
+    }
+
+    public static Path createBenchmarkDir() throws IOException {
+        String benchmarkDir = System.getProperty(BENCHMARK_DIR_PROPERTY);
+        if (benchmarkDir == null) {
+            return Files.createTempDirectory("javacopier-benchmark");
+        }
+        Path parentDir = Files.createDirectories(java.nio.file.Paths.get(benchmarkDir));
+        return Files.createTempDirectory(parentDir, "javacopier-benchmark");
+    }
+
+    public static void deleteTree(Path root) throws IOException {
+        if (Files.notExists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
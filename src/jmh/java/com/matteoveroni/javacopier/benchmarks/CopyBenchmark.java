@@ -0,0 +1,85 @@
+package com.matteoveroni.javacopier.benchmarks;
+
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.CopyStatusReport;
+import com.matteoveroni.javacopier.JavaCopier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link JavaCopier#copy} for every {@link TreeShape} and execution mode. Besides copies/s, the
+ * {@link CopyCounters} report the files/s and MB/s. Dest is deleted after every copy, outside of the measured time.
+ *
+ * @author Matteo Veroni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class CopyBenchmark {
+
+    public enum ExecutionMode {
+        SEQUENTIAL(new CopyConfiguration.Builder().build()),
+        PARALLEL(new CopyConfiguration.Builder().setParallelism(Runtime.getRuntime().availableProcessors()).build()),
+        PER_FILE(new CopyConfiguration.Builder().setPerFileExecution(true).build());
+
+        private final CopyConfiguration configuration;
+
+        ExecutionMode(CopyConfiguration configuration) {
+            this.configuration = configuration;
+        }
+    }
+
+    @Param
+    public TreeShape treeShape;
+
+    @Param
+    public ExecutionMode executionMode;
+
+    private Path benchmarkDir;
+    private Path srcDir;
+    private Path destDir;
+
+    @Setup(Level.Trial)
+    public void createSrcTree() throws IOException {
+        benchmarkDir = BenchmarkTrees.createBenchmarkDir();
+        srcDir = benchmarkDir.resolve("src");
+        destDir = benchmarkDir.resolve("dest");
+        treeShape.create(srcDir);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestTree() throws IOException {
+        BenchmarkTrees.deleteTree(destDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteBenchmarkDir() throws IOException {
+        BenchmarkTrees.deleteTree(benchmarkDir);
+    }
+
+    @Benchmark
+    public CopyStatusReport copy(CopyCounters copyCounters) {
+        CopyStatusReport copyStatusReport = JavaCopier.copy(srcDir, destDir, executionMode.configuration, StandardCopyOption.REPLACE_EXISTING);
+        copyCounters.register(copyStatusReport.getNumberOfCopiedFiles(), copyStatusReport.getCopiedBytes());
+        return copyStatusReport;
+    }
+}
@@ -0,0 +1,33 @@
+package com.matteoveroni.javacopier.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results of the copy benchmarks: in throughput mode JMH reports them per second, i.e. as files/s and MB/s.
+ *
+ * @author Matteo Veroni
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CopyCounters {
+
+    private static final double BYTES_IN_MEGABYTE = 1024 * 1024;
+
+    public long files;
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        files = 0;
+        megabytes = 0;
+    }
+
+    public void register(int copiedFiles, long copiedBytes) {
+        files += copiedFiles;
+        megabytes += copiedBytes / BYTES_IN_MEGABYTE;
+    }
+}
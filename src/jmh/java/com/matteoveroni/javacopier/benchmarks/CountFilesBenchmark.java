@@ -0,0 +1,71 @@
+package com.matteoveroni.javacopier.benchmarks;
+
+import com.matteoveroni.javacopier.JavaCopier;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link JavaCopier#calculateFilesCount(Path)}, the walk done before every copy. The
+ * {@link CountCounters} report the files counted per second.
+ *
+ * @author Matteo Veroni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class CountFilesBenchmark {
+
+    @Param({"MANY_TINY_FILES", "DEEP", "WIDE"})
+    public TreeShape treeShape;
+
+    private Path benchmarkDir;
+
+    @Setup(Level.Trial)
+    public void createSrcTree() throws IOException {
+        benchmarkDir = BenchmarkTrees.createBenchmarkDir();
+        treeShape.create(benchmarkDir.resolve("src"));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteBenchmarkDir() throws IOException {
+        BenchmarkTrees.deleteTree(benchmarkDir);
+    }
+
+    @Benchmark
+    public int calculateFilesCount(CountCounters countCounters) {
+        int filesCount = JavaCopier.calculateFilesCount(benchmarkDir.resolve("src"));
+        countCounters.files += filesCount;
+        return filesCount;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class CountCounters {
+
+        public long files;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            files = 0;
+        }
+    }
+}
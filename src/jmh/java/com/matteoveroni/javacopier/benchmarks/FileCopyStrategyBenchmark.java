@@ -0,0 +1,102 @@
+package com.matteoveroni.javacopier.benchmarks;
+
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.CopyStatusReport;
+import com.matteoveroni.javacopier.JavaCopier;
+import com.matteoveroni.javacopier.copystrategies.FileChannelCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.FileCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.FilesCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.MappedCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.SizeBasedCopyStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link FileCopyStrategy}s copying a single file of mid size, the range where
+ * {@link MappedCopyStrategy} is expected to compete with {@link FilesCopyStrategy}. Besides copies/s, the
+ * {@link CopyCounters} report the MB/s. Dest is deleted after every copy, outside of the measured time.
+ *
+ * @author Matteo Veroni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class FileCopyStrategyBenchmark {
+
+    public enum Strategy {
+        FILES_COPY(new FilesCopyStrategy()),
+        FILE_CHANNEL(new FileChannelCopyStrategy()),
+        MAPPED(new MappedCopyStrategy()),
+        SIZE_BASED(SizeBasedCopyStrategy.newDefault());
+
+        private final CopyConfiguration configuration;
+
+        Strategy(FileCopyStrategy fileCopyStrategy) {
+            this.configuration = new CopyConfiguration.Builder().setFileCopyStrategy(fileCopyStrategy).build();
+        }
+    }
+
+    @Param({"4", "64", "256"})
+    public int fileSizeInMegabytes;
+
+    @Param
+    public Strategy strategy;
+
+    private Path benchmarkDir;
+    private Path srcFile;
+    private Path destFile;
+
+    @Setup(Level.Trial)
+    public void createSrcFile() throws IOException {
+        benchmarkDir = BenchmarkTrees.createBenchmarkDir();
+        srcFile = benchmarkDir.resolve("src.bin");
+        destFile = benchmarkDir.resolve("dest.bin");
+        byte[] megabyte = new byte[1024 * 1024];
+        Random random = new Random(1);
+        try (OutputStream outputStream = Files.newOutputStream(srcFile)) {
+            for (int i = 0; i < fileSizeInMegabytes; i++) {
+                random.nextBytes(megabyte);
+                outputStream.write(megabyte);
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestFile() throws IOException {
+        Files.deleteIfExists(destFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteBenchmarkDir() throws IOException {
+        BenchmarkTrees.deleteTree(benchmarkDir);
+    }
+
+    @Benchmark
+    public CopyStatusReport copy(CopyCounters copyCounters) {
+        CopyStatusReport copyStatusReport = JavaCopier.copy(srcFile, destFile, strategy.configuration, StandardCopyOption.REPLACE_EXISTING);
+        copyCounters.register(copyStatusReport.getNumberOfCopiedFiles(), copyStatusReport.getCopiedBytes());
+        return copyStatusReport;
+    }
+}
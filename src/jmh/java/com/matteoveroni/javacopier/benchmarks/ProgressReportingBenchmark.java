@@ -0,0 +1,99 @@
+package com.matteoveroni.javacopier.benchmarks;
+
+import com.matteoveroni.javacopier.CopyListener;
+import com.matteoveroni.javacopier.CopyProgress;
+import com.matteoveroni.javacopier.CopyProgressNotifier;
+import com.matteoveroni.javacopier.CopyStatusReport;
+import com.matteoveroni.javacopier.ProgressNotificationPolicy;
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per copied file of the progress reporting, without any I/O: building a {@link CopyStatusReport} snapshot and
+ * notifying a progress event with the different {@link ProgressNotificationPolicy}s. The history only keeps the
+ * counters, otherwise the millions of events registered would fill the heap.
+ *
+ * @author Matteo Veroni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class ProgressReportingBenchmark {
+
+    private static final Path SRC = Paths.get("src");
+    private static final Path DEST = Paths.get("dest");
+    private static final CopyOption[] COPY_OPTIONS = new CopyOption[]{StandardCopyOption.REPLACE_EXISTING};
+
+    @Param({"EVERY_EVENT", "EVERY_1000_EVENTS", "EVERY_100_MILLIS", "EVERY_PERCENT"})
+    public String notificationPolicy;
+
+    private CopyProgress copyProgress;
+    private CopyHistory copyHistory;
+    private CopyProgressNotifier copyProgressNotifier;
+
+    @Setup(Level.Iteration)
+    public void createCopyJob(Blackhole blackhole) {
+        copyProgress = new CopyProgress(Integer.MAX_VALUE);
+        copyProgress.registerDiscoveredFile(Long.MAX_VALUE / 2);
+        copyHistory = new CopyHistory(CopyHistory.Retention.COUNTERS_ONLY, null);
+        CopyListener copyListener = new CopyListener() {
+            @Override
+            public void onCopyProgress(CopyStatusReport copyStatusReport) {
+                blackhole.consume(copyStatusReport);
+            }
+
+            @Override
+            public void onCopyComplete(CopyStatusReport finalCopyStatusReport) {
+                blackhole.consume(finalCopyStatusReport);
+            }
+        };
+        copyProgressNotifier = new CopyProgressNotifier(SRC, DEST, toProgressNotificationPolicy(notificationPolicy), copyProgress, copyHistory, copyListener, COPY_OPTIONS);
+    }
+
+    @Benchmark
+    public void notifyCopiedFile() {
+        copyHistory.registerCopySuccessEventInHistory(SRC, DEST);
+        copyProgress.registerCopiedBytes(4096);
+        copyProgressNotifier.onProgressEvent();
+    }
+
+    @Benchmark
+    public CopyStatusReport createStatusReport() {
+        return new CopyStatusReport(SRC, DEST, CopyStatusReport.CopyState.RUNNING, copyProgress, copyHistory, COPY_OPTIONS);
+    }
+
+    private static ProgressNotificationPolicy toProgressNotificationPolicy(String notificationPolicy) {
+        switch (notificationPolicy) {
+            case "EVERY_1000_EVENTS":
+                return ProgressNotificationPolicy.everyEvents(1000);
+            case "EVERY_100_MILLIS":
+                return ProgressNotificationPolicy.everyMillis(100);
+            case "EVERY_PERCENT":
+                return ProgressNotificationPolicy.onPercentageChange(1);
+            case "EVERY_EVENT":
+            default:
+                return ProgressNotificationPolicy.everyEvent();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.matteoveroni.javacopier.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Shapes of the directory trees generated for the benchmarks, each stressing a different cost of a copy: the
+ * per file overhead, the raw transfer of bytes, the depth of the walk and the size of a single directory.
+ *
+ * @author Matteo Veroni
+ */
+public enum TreeShape {
+
+    /**
+     * 10000 files of 1KB in 100 directories.
+     */
+    MANY_TINY_FILES(1, 100, 100, 1024),
+    /**
+     * 4 files of 64MB in a single directory.
+     */
+    FEW_HUGE_FILES(0, 1, 4, 64 * 1024 * 1024),
+    /**
+     * A chain of 64 nested directories with 4 files of 16KB each.
+     */
+    DEEP(64, 1, 4, 16 * 1024),
+    /**
+     * 5000 files of 16KB in a single directory.
+     */
+    WIDE(0, 1, 5000, 16 * 1024);
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final int depth;
+    private final int dirsPerLevel;
+    private final int filesPerDir;
+    private final int fileSize;
+
+    TreeShape(int depth, int dirsPerLevel, int filesPerDir, int fileSize) {
+        this.depth = depth;
+        this.dirsPerLevel = dirsPerLevel;
+        this.filesPerDir = filesPerDir;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Creates the tree under root, with random content so it cannot be compressed or deduplicated by the file system.
+     *
+     * @return the number of files and bytes created
+     */
+    public TreeStats create(Path root) throws IOException {
+        TreeStats treeStats = new TreeStats();
+        createLevel(root, depth, new Random(0), new byte[WRITE_BUFFER_SIZE], treeStats);
+        return treeStats;
+    }
+
+    private void createLevel(Path dir, int remainingDepth, Random random, byte[] buffer, TreeStats treeStats) throws IOException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < filesPerDir; i++) {
+            try (OutputStream out = Files.newOutputStream(dir.resolve("file" + i + ".bin"))) {
+                int remainingBytes = fileSize;
+                while (remainingBytes > 0) {
+                    random.nextBytes(buffer);
+                    int length = Math.min(buffer.length, remainingBytes);
+                    out.write(buffer, 0, length);
+                    remainingBytes -= length;
+                }
+            }
+            treeStats.files++;
+            treeStats.bytes += fileSize;
+        }
+        if (remainingDepth > 0) {
+            for (int i = 0; i < dirsPerLevel; i++) {
+                createLevel(dir.resolve("dir" + i), remainingDepth - 1, random, buffer, treeStats);
+            }
+        }
+    }
+
+    public static class TreeStats {
+
+        private int files = 0;
+        private long bytes = 0;
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
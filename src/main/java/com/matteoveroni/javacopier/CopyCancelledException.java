@@ -0,0 +1,18 @@
+package com.matteoveroni.javacopier;
+
+import java.io.IOException;
+
+/**
+ * Thrown inside a running copy job when it has been cancelled through its {@link CopyControl}, to abort the copy of
+ * the current file.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyCancelledException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CopyCancelledException() {
+        super("copy cancelled");
+    }
+}
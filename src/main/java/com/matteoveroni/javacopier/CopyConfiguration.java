@@ -0,0 +1,691 @@
+package com.matteoveroni.javacopier;
+
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.copystrategies.FileCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.FilesCopyStrategy;
+import com.matteoveroni.javacopier.filewalkers.OrderedFileTreeWalker;
+import com.matteoveroni.javacopier.filters.CopyFilter;
+import com.matteoveroni.javacopier.journal.CopyJournal;
+import com.matteoveroni.javacopier.manifest.CopyManifest;
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.throttling.CopyThrottle;
+import com.matteoveroni.javacopier.verification.CopyVerifier;
+
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+/**
+ * Immutable set of tuning options for {@link JavaCopier}. Use the {@link Builder} to create it.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyConfiguration {
+
+    public static final int DEFAULT_MAX_FILES_IN_FLIGHT = 1024;
+    public static final int DEFAULT_MIN_FILES_IN_FLIGHT = 1;
+    public static final int DEFAULT_MAX_FILES_IN_FLIGHT_PER_DEVICE = 8;
+    public static final long DEFAULT_DEDUPLICATION_MIN_SIZE = 4 * 1024;
+
+    public static final CopyConfiguration DEFAULT = new CopyConfiguration.Builder().build();
+
+    private final int parallelism;
+    private final boolean concurrentDiscovery;
+    private final boolean perFileExecution;
+    private final int maxFilesInFlight;
+    private final boolean adaptiveConcurrency;
+    private final int minFilesInFlight;
+    private final boolean deviceAwareScheduling;
+    private final int maxFilesInFlightPerDevice;
+    private final FileCopyStrategy fileCopyStrategy;
+    private final ProgressNotificationPolicy progressNotificationPolicy;
+    private final CopyHistory.Retention historyRetention;
+    private final Path historySpillFile;
+    private final boolean incrementalCopy;
+    private final boolean contentHashComparison;
+    private final boolean manifestEnabled;
+    private final String manifestFileName;
+    private final boolean journalEnabled;
+    private final boolean resume;
+    private final String journalFileName;
+    private final int journalBatchSize;
+    private final long journalSyncIntervalMillis;
+    private final CopyMetrics metrics;
+    private final int maxRetries;
+    private final boolean deduplication;
+    private final long deduplicationMinSize;
+    private final CopyFilter filter;
+    private final boolean verification;
+    private final int verificationParallelism;
+    private final int verificationBufferSize;
+    private final boolean archiveOutput;
+    private final int compressionThreads;
+    private final int compressionLevel;
+    private final CopyThrottle throttle;
+    private final OrderedFileTreeWalker.Order traversalOrder;
+
+    private CopyConfiguration(Builder builder) {
+        this.parallelism = builder.parallelism;
+        this.concurrentDiscovery = builder.concurrentDiscovery;
+        this.perFileExecution = builder.perFileExecution || builder.adaptiveConcurrency || builder.deviceAwareScheduling;
+        this.maxFilesInFlight = builder.maxFilesInFlight;
+        this.adaptiveConcurrency = builder.adaptiveConcurrency;
+        this.minFilesInFlight = builder.minFilesInFlight;
+        this.deviceAwareScheduling = builder.deviceAwareScheduling;
+        this.maxFilesInFlightPerDevice = builder.maxFilesInFlightPerDevice;
+        this.fileCopyStrategy = builder.fileCopyStrategy;
+        this.progressNotificationPolicy = builder.progressNotificationPolicy;
+        this.historyRetention = builder.historyRetention;
+        this.historySpillFile = builder.historySpillFile;
+        this.incrementalCopy = builder.incrementalCopy;
+        this.contentHashComparison = builder.contentHashComparison;
+        this.manifestEnabled = builder.manifestEnabled;
+        this.manifestFileName = builder.manifestFileName;
+        this.journalEnabled = builder.journalEnabled || builder.resume;
+        this.resume = builder.resume;
+        this.journalFileName = builder.journalFileName;
+        this.journalBatchSize = builder.journalBatchSize;
+        this.journalSyncIntervalMillis = builder.journalSyncIntervalMillis;
+        this.metrics = builder.metrics;
+        this.maxRetries = builder.maxRetries;
+        this.deduplication = builder.deduplication;
+        this.deduplicationMinSize = builder.deduplicationMinSize;
+        this.filter = builder.filter;
+        this.verification = builder.verification;
+        this.verificationParallelism = builder.verificationParallelism;
+        this.verificationBufferSize = builder.verificationBufferSize;
+        this.archiveOutput = builder.archiveOutput;
+        this.compressionThreads = builder.compressionThreads;
+        this.compressionLevel = builder.compressionLevel;
+        this.throttle = builder.throttle;
+        this.traversalOrder = builder.traversalOrder;
+    }
+
+    public static class Builder {
+
+        private int parallelism = 1;
+        private boolean concurrentDiscovery = false;
+        private boolean perFileExecution = false;
+        private int maxFilesInFlight = DEFAULT_MAX_FILES_IN_FLIGHT;
+        private boolean adaptiveConcurrency = false;
+        private int minFilesInFlight = DEFAULT_MIN_FILES_IN_FLIGHT;
+        private boolean deviceAwareScheduling = false;
+        private int maxFilesInFlightPerDevice = DEFAULT_MAX_FILES_IN_FLIGHT_PER_DEVICE;
+        private FileCopyStrategy fileCopyStrategy = new FilesCopyStrategy();
+        private ProgressNotificationPolicy progressNotificationPolicy = ProgressNotificationPolicy.everyEvent();
+        private CopyHistory.Retention historyRetention = CopyHistory.Retention.FULL;
+        private Path historySpillFile;
+        private boolean incrementalCopy = false;
+        private boolean contentHashComparison = false;
+        private boolean manifestEnabled = false;
+        private String manifestFileName = CopyManifest.DEFAULT_FILE_NAME;
+        private boolean journalEnabled = false;
+        private boolean resume = false;
+        private String journalFileName = CopyJournal.DEFAULT_FILE_NAME;
+        private int journalBatchSize = CopyJournal.DEFAULT_BATCH_SIZE;
+        private long journalSyncIntervalMillis = CopyJournal.DEFAULT_SYNC_INTERVAL_MILLIS;
+        private CopyMetrics metrics = CopyMetrics.NONE;
+        private int maxRetries = 0;
+        private boolean deduplication = false;
+        private long deduplicationMinSize = DEFAULT_DEDUPLICATION_MIN_SIZE;
+        private CopyFilter filter = CopyFilter.ACCEPT_ALL;
+        private boolean verification = false;
+        private int verificationParallelism = CopyVerifier.DEFAULT_PARALLELISM;
+        private int verificationBufferSize = CopyVerifier.DEFAULT_BUFFER_SIZE;
+        private boolean archiveOutput = false;
+        private int compressionThreads = Runtime.getRuntime().availableProcessors();
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private CopyThrottle throttle;
+        private OrderedFileTreeWalker.Order traversalOrder = OrderedFileTreeWalker.Order.NATURAL;
+
+        /**
+         * Number of threads used to copy a directory tree. A value greater than 1 enables the parallel
+         * copy, where each subdirectory becomes a fork/join task. Defaults to 1 (sequential copy).
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be greater than 0");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * If true the copy of a directory starts immediately while the files to copy are counted by a
+         * concurrent walk, instead of counting all of them first. Until the count is completed the
+         * reported total is an estimate. Defaults to false.
+         */
+        public Builder setConcurrentDiscovery(boolean concurrentDiscovery) {
+            this.concurrentDiscovery = concurrentDiscovery;
+            return this;
+        }
+
+        /**
+         * If true the files of a directory tree are copied as independent tasks, while the walk goes on, instead
+         * of one after the other on the walking thread. On Java 21+ every file gets its own virtual thread, on older
+         * JVMs the tasks run on a bounded pool of platform threads, see
+         * {@link com.matteoveroni.javacopier.executors.FileCopyExecutors}. Meant for trees of many small files,
+         * whose copy is bound by the latency of the file system calls. Defaults to false.
+         */
+        public Builder setPerFileExecution(boolean perFileExecution) {
+            this.perFileExecution = perFileExecution;
+            return this;
+        }
+
+        /**
+         * Maximum number of files copied at the same time by {@link #setPerFileExecution(boolean)}.
+         * Defaults to {@link #DEFAULT_MAX_FILES_IN_FLIGHT}.
+         */
+        public Builder setMaxFilesInFlight(int maxFilesInFlight) {
+            if (maxFilesInFlight < 1) {
+                throw new IllegalArgumentException("maxFilesInFlight must be greater than 0");
+            }
+            this.maxFilesInFlight = maxFilesInFlight;
+            return this;
+        }
+
+        /**
+         * If true the number of files copied at the same time by {@link #setPerFileExecution(boolean)}, which it
+         * implies, is not fixed: it starts from {@link #setMinFilesInFlight(int)} and is adjusted while the job runs,
+         * up to {@link #setMaxFilesInFlight(int)}, following the throughput and the latency of the copies, see
+         * {@link com.matteoveroni.javacopier.concurrency.AdaptiveConcurrencyLimiter}. The chosen concurrency is
+         * recorded by the {@link #setMetrics(CopyMetrics) metrics}. Defaults to false.
+         */
+        public Builder setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        /**
+         * Minimum number of files copied at the same time by {@link #setAdaptiveConcurrency(boolean)}. Defaults to
+         * {@link #DEFAULT_MIN_FILES_IN_FLIGHT}.
+         */
+        public Builder setMinFilesInFlight(int minFilesInFlight) {
+            if (minFilesInFlight < 1) {
+                throw new IllegalArgumentException("minFilesInFlight must be greater than 0");
+            }
+            this.minFilesInFlight = minFilesInFlight;
+            return this;
+        }
+
+        /**
+         * If true the files copied by {@link #setPerFileExecution(boolean)}, which it implies, are scheduled by the
+         * {@link java.nio.file.FileStore} of their src and of their dest: every device copies at most
+         * {@link #setMaxFilesInFlightPerDevice(int)} files at the same time and waits on its own queue, so a job
+         * spanning several mount points keeps all of them busy and a slow one does not hold back the others, see
+         * {@link com.matteoveroni.javacopier.scheduling.DeviceIoScheduler}. {@link #setMaxFilesInFlight(int)} still
+         * bounds the files copied at the same time by the whole job, the ones waiting for their devices excluded, and
+         * the files waiting on each queue. Defaults to false.
+         */
+        public Builder setDeviceAwareScheduling(boolean deviceAwareScheduling) {
+            this.deviceAwareScheduling = deviceAwareScheduling;
+            return this;
+        }
+
+        /**
+         * Maximum number of files read or written at the same time on every device by
+         * {@link #setDeviceAwareScheduling(boolean)}. Defaults to {@link #DEFAULT_MAX_FILES_IN_FLIGHT_PER_DEVICE}.
+         */
+        public Builder setMaxFilesInFlightPerDevice(int maxFilesInFlightPerDevice) {
+            if (maxFilesInFlightPerDevice < 1) {
+                throw new IllegalArgumentException("maxFilesInFlightPerDevice must be greater than 0");
+            }
+            this.maxFilesInFlightPerDevice = maxFilesInFlightPerDevice;
+            return this;
+        }
+
+        /**
+         * Strategy used to copy the content of every file, e.g. a
+         * {@link com.matteoveroni.javacopier.copystrategies.FileChannelCopyStrategy} to transfer big files in
+         * chunks with progress reported after each of them. Defaults to {@link FilesCopyStrategy}.
+         */
+        public Builder setFileCopyStrategy(FileCopyStrategy fileCopyStrategy) {
+            if (fileCopyStrategy == null) {
+                throw new IllegalArgumentException("fileCopyStrategy cannot be null");
+            }
+            this.fileCopyStrategy = fileCopyStrategy;
+            return this;
+        }
+
+        /**
+         * How often the {@link CopyListener} is notified of the copy progress. Defaults to
+         * {@link ProgressNotificationPolicy#everyEvent()}.
+         */
+        public Builder setProgressNotificationPolicy(ProgressNotificationPolicy progressNotificationPolicy) {
+            if (progressNotificationPolicy == null) {
+                throw new IllegalArgumentException("progressNotificationPolicy cannot be null");
+            }
+            this.progressNotificationPolicy = progressNotificationPolicy;
+            return this;
+        }
+
+        /**
+         * How much of the {@link CopyHistory} is kept. Use {@link CopyHistory.Retention#COUNTERS_ONLY},
+         * {@link CopyHistory.Retention#FAILURES_ONLY} or {@link CopyHistory.Retention#SPILL_TO_DISK} to keep the
+         * heap flat on huge trees. Defaults to {@link CopyHistory.Retention#FULL}.
+         */
+        public Builder setHistoryRetention(CopyHistory.Retention historyRetention) {
+            if (historyRetention == null) {
+                throw new IllegalArgumentException("historyRetention cannot be null");
+            }
+            this.historyRetention = historyRetention;
+            return this;
+        }
+
+        /**
+         * File the history events are appended to with {@link CopyHistory.Retention#SPILL_TO_DISK} retention.
+         */
+        public Builder setHistorySpillFile(Path historySpillFile) {
+            this.historySpillFile = historySpillFile;
+            return this;
+        }
+
+        /**
+         * If true the files whose dest already has the same size and last modified time of src are not copied
+         * again and are registered as skipped. Dest keeps the modified time of src only if it was copied with
+         * {@link java.nio.file.StandardCopyOption#COPY_ATTRIBUTES}. Defaults to false.
+         */
+        public Builder setIncrementalCopy(boolean incrementalCopy) {
+            this.incrementalCopy = incrementalCopy;
+            return this;
+        }
+
+        /**
+         * If true the incremental copy also compares the content hashes of src and dest before skipping a file.
+         * Defaults to false.
+         */
+        public Builder setContentHashComparison(boolean contentHashComparison) {
+            this.contentHashComparison = contentHashComparison;
+            return this;
+        }
+
+        /**
+         * If true a directory copy writes at its end a manifest in the dest dir with relative path, size, last
+         * modified time and, with {@link #setContentHashComparison(boolean)}, content hash of every file copied
+         * or skipped. The next incremental copy compares the src files with the manifest instead of reading the
+         * attributes of the dest files, so changes made to dest by others in the meantime are not detected.
+         * Defaults to false.
+         */
+        public Builder setManifestEnabled(boolean manifestEnabled) {
+            this.manifestEnabled = manifestEnabled;
+            return this;
+        }
+
+        /**
+         * Name of the manifest file in the dest dir. Defaults to {@link CopyManifest#DEFAULT_FILE_NAME}.
+         */
+        public Builder setManifestFileName(String manifestFileName) {
+            if (manifestFileName == null || manifestFileName.isEmpty()) {
+                throw new IllegalArgumentException("manifestFileName cannot be empty");
+            }
+            this.manifestFileName = manifestFileName;
+            return this;
+        }
+
+        /**
+         * If true a directory copy keeps in the dest dir a checkpoint journal of the files already copied, deleted
+         * when the copy completes without failures. Defaults to false.
+         */
+        public Builder setJournalEnabled(boolean journalEnabled) {
+            this.journalEnabled = journalEnabled;
+            return this;
+        }
+
+        /**
+         * If true a directory copy does not copy again the files listed in the journal left by a previous
+         * interrupted run: they are registered as skipped and the job keeps journaling from where it stopped.
+         * Files not in the journal may have been partially written, so resume together with
+         * {@link java.nio.file.StandardCopyOption#REPLACE_EXISTING}. Implies {@link #setJournalEnabled(boolean)}.
+         * Defaults to false.
+         */
+        public Builder setResume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * Name of the journal file in the dest dir. Defaults to {@link CopyJournal#DEFAULT_FILE_NAME}.
+         */
+        public Builder setJournalFileName(String journalFileName) {
+            if (journalFileName == null || journalFileName.isEmpty()) {
+                throw new IllegalArgumentException("journalFileName cannot be empty");
+            }
+            this.journalFileName = journalFileName;
+            return this;
+        }
+
+        /**
+         * Number of completed files written to the journal at once. Defaults to {@link CopyJournal#DEFAULT_BATCH_SIZE}.
+         */
+        public Builder setJournalBatchSize(int journalBatchSize) {
+            if (journalBatchSize < 1) {
+                throw new IllegalArgumentException("journalBatchSize must be greater than 0");
+            }
+            this.journalBatchSize = journalBatchSize;
+            return this;
+        }
+
+        /**
+         * Maximum time between two fsyncs of the journal, which is the work that can be lost in a crash.
+         * Defaults to {@link CopyJournal#DEFAULT_SYNC_INTERVAL_MILLIS}.
+         */
+        public Builder setJournalSyncIntervalMillis(long journalSyncIntervalMillis) {
+            if (journalSyncIntervalMillis < 0) {
+                throw new IllegalArgumentException("journalSyncIntervalMillis cannot be negative");
+            }
+            this.journalSyncIntervalMillis = journalSyncIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Instrumentation receiving the phase timers, the file copy latencies and the counters of the copy jobs, e.g.
+         * {@link com.matteoveroni.javacopier.metrics.JmxCopyMetrics}. Defaults to {@link CopyMetrics#NONE}.
+         */
+        public Builder setMetrics(CopyMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("metrics cannot be null");
+            }
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Number of times the copy of a file of a directory tree is tried again after an I/O error. Errors that
+         * would happen again, like a missing src or an existing dest, are never retried. Defaults to 0.
+         */
+        public Builder setMaxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("maxRetries cannot be negative");
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * If true a file of a directory tree with the same content of a file already copied by the job is not
+         * copied again: its dest becomes a hard link to the dest of the other one. Linked files share content and
+         * attributes, so changing one of them changes all of them. Files whose link cannot be created are copied.
+         * Defaults to false.
+         */
+        public Builder setDeduplication(boolean deduplication) {
+            this.deduplication = deduplication;
+            return this;
+        }
+
+        /**
+         * Minimum size of the files deduplicated, smaller ones are always copied. Defaults to
+         * {@link #DEFAULT_DEDUPLICATION_MIN_SIZE}.
+         */
+        public Builder setDeduplicationMinSize(long deduplicationMinSize) {
+            if (deduplicationMinSize < 0) {
+                throw new IllegalArgumentException("deduplicationMinSize cannot be negative");
+            }
+            this.deduplicationMinSize = deduplicationMinSize;
+            return this;
+        }
+
+        /**
+         * Rules selecting the entries of a directory tree that are counted and copied, the others are ignored as if
+         * they did not exist. Defaults to {@link CopyFilter#ACCEPT_ALL}.
+         */
+        public Builder setFilter(CopyFilter filter) {
+            if (filter == null) {
+                throw new IllegalArgumentException("filter cannot be null");
+            }
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * If true, once the copy is over, the content of every file copied by the job is read again from src and
+         * dest and their checksums compared. A mismatch turns the copy of the file into a failure and its dest is
+         * deleted, so that a later incremental copy does not take it for up to date. Defaults to false.
+         */
+        public Builder setVerification(boolean verification) {
+            this.verification = verification;
+            return this;
+        }
+
+        /**
+         * Number of files verified at the same time. Defaults to the number of available processors.
+         */
+        public Builder setVerificationParallelism(int verificationParallelism) {
+            if (verificationParallelism < 1) {
+                throw new IllegalArgumentException("verificationParallelism must be greater than 0");
+            }
+            this.verificationParallelism = verificationParallelism;
+            return this;
+        }
+
+        /**
+         * Size in bytes of the buffer each verifying thread reads the files with. Defaults to
+         * {@link CopyVerifier#DEFAULT_BUFFER_SIZE}.
+         */
+        public Builder setVerificationBufferSize(int verificationBufferSize) {
+            if (verificationBufferSize < 1) {
+                throw new IllegalArgumentException("verificationBufferSize must be greater than 0");
+            }
+            this.verificationBufferSize = verificationBufferSize;
+            return this;
+        }
+
+        /**
+         * If true a src directory copied to a dest that is not a directory is streamed into dest as a tar.gz
+         * archive, instead of having its paths listed in it. The archive is written sequentially, so
+         * {@link #setParallelism(int)} and {@link #setPerFileExecution(boolean)} are ignored, while the compression
+         * runs on {@link #setCompressionThreads(int)} threads. If the job is cancelled or dest cannot be written,
+         * dest is deleted instead of being left as a partial archive. Defaults to false.
+         * <p>
+         * Only tar.gz is written, not zip: {@link java.util.zip.ZipOutputStream} deflates every entry on the thread
+         * writing it, so a zip could not be compressed on several cores without writing the zip format by hand.
+         */
+        public Builder setArchiveOutput(boolean archiveOutput) {
+            this.archiveOutput = archiveOutput;
+            return this;
+        }
+
+        /**
+         * Number of threads compressing the archive, see {@link #setArchiveOutput(boolean)}. Defaults to the number
+         * of available processors.
+         */
+        public Builder setCompressionThreads(int compressionThreads) {
+            if (compressionThreads < 1) {
+                throw new IllegalArgumentException("compressionThreads must be greater than 0");
+            }
+            this.compressionThreads = compressionThreads;
+            return this;
+        }
+
+        /**
+         * Deflate level of the archive, from 0 (no compression) to 9 (best compression). Defaults to
+         * {@link Deflater#DEFAULT_COMPRESSION}.
+         */
+        public Builder setCompressionLevel(int compressionLevel) {
+            if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+                throw new IllegalArgumentException("compressionLevel must be between 0 and 9");
+            }
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Limits the bytes and the files per second copied, waiting between the chunks and the files. The limits
+         * can be changed on the throttle while the job runs and the time spent waiting is reported. Not applied by
+         * {@link com.matteoveroni.javacopier.JavaCopier#copyToMany}. Defaults to null, no limit.
+         */
+        public Builder setThrottle(CopyThrottle throttle) {
+            this.throttle = throttle;
+            return this;
+        }
+
+        /**
+         * Order the entries of every directory are copied in. Anything but
+         * {@link OrderedFileTreeWalker.Order#NATURAL} reads and sorts the entries of a directory before copying them,
+         * e.g. {@link OrderedFileTreeWalker.Order#INODE} to copy the files of a rotational disk following their
+         * position on it. The time spent sorting them is reported by
+         * {@link com.matteoveroni.javacopier.CopyStatusReport#getTraversalPlanningMillis()}, to compare with the time
+         * it saves. Ignored by the parallel copy, see {@link #setParallelism(int)}, by the archive output and by
+         * {@link com.matteoveroni.javacopier.JavaCopier#copyToMany}. Defaults to
+         * {@link OrderedFileTreeWalker.Order#NATURAL}.
+         */
+        public Builder setTraversalOrder(OrderedFileTreeWalker.Order traversalOrder) {
+            if (traversalOrder == null) {
+                throw new IllegalArgumentException("traversalOrder cannot be null");
+            }
+            this.traversalOrder = traversalOrder;
+            return this;
+        }
+
+        public CopyConfiguration build() {
+            if (historyRetention == CopyHistory.Retention.SPILL_TO_DISK && historySpillFile == null) {
+                throw new IllegalArgumentException("historySpillFile is required by " + CopyHistory.Retention.SPILL_TO_DISK + " retention");
+            }
+            if (adaptiveConcurrency && minFilesInFlight > maxFilesInFlight) {
+                throw new IllegalArgumentException("minFilesInFlight cannot be greater than maxFilesInFlight");
+            }
+            return new CopyConfiguration(this);
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isParallelCopy() {
+        return parallelism > 1;
+    }
+
+    public boolean isConcurrentDiscovery() {
+        return concurrentDiscovery;
+    }
+
+    public boolean isPerFileExecution() {
+        return perFileExecution;
+    }
+
+    public int getMaxFilesInFlight() {
+        return maxFilesInFlight;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public int getMinFilesInFlight() {
+        return minFilesInFlight;
+    }
+
+    public boolean isDeviceAwareScheduling() {
+        return deviceAwareScheduling;
+    }
+
+    public int getMaxFilesInFlightPerDevice() {
+        return maxFilesInFlightPerDevice;
+    }
+
+    public FileCopyStrategy getFileCopyStrategy() {
+        return fileCopyStrategy;
+    }
+
+    public ProgressNotificationPolicy getProgressNotificationPolicy() {
+        return progressNotificationPolicy;
+    }
+
+    public CopyHistory.Retention getHistoryRetention() {
+        return historyRetention;
+    }
+
+    public Path getHistorySpillFile() {
+        return historySpillFile;
+    }
+
+    public boolean isIncrementalCopy() {
+        return incrementalCopy;
+    }
+
+    public boolean isContentHashComparison() {
+        return contentHashComparison;
+    }
+
+    public boolean isManifestEnabled() {
+        return manifestEnabled;
+    }
+
+    public String getManifestFileName() {
+        return manifestFileName;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public String getJournalFileName() {
+        return journalFileName;
+    }
+
+    public int getJournalBatchSize() {
+        return journalBatchSize;
+    }
+
+    public long getJournalSyncIntervalMillis() {
+        return journalSyncIntervalMillis;
+    }
+
+    public CopyMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public boolean isDeduplication() {
+        return deduplication;
+    }
+
+    public long getDeduplicationMinSize() {
+        return deduplicationMinSize;
+    }
+
+    public CopyFilter getFilter() {
+        return filter;
+    }
+
+    public boolean isVerification() {
+        return verification;
+    }
+
+    public int getVerificationParallelism() {
+        return verificationParallelism;
+    }
+
+    public int getVerificationBufferSize() {
+        return verificationBufferSize;
+    }
+
+    public boolean isArchiveOutput() {
+        return archiveOutput;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @return the throttle limiting the job, null if it is not limited
+     */
+    public CopyThrottle getThrottle() {
+        return throttle;
+    }
+
+    public OrderedFileTreeWalker.Order getTraversalOrder() {
+        return traversalOrder;
+    }
+}
@@ -0,0 +1,60 @@
+package com.matteoveroni.javacopier;
+
+/**
+ * Cooperative cancel and pause/resume of a copy job. The job calls {@link #checkpoint()} between files and between
+ * the chunks of a file, so a cancel or a pause takes effect as soon as the current chunk is done. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyControl {
+
+    private boolean cancelled = false;
+    private boolean paused = false;
+
+    /**
+     * Asks the job to stop. A paused job is resumed to let it stop.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Suspends the job at its next checkpoint until {@link #resume()} or {@link #cancel()} are called.
+     */
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    public synchronized void resume() {
+        paused = false;
+        notifyAll();
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Waits while the job is paused.
+     *
+     * @throws CopyCancelledException if the job has been cancelled, or the thread interrupted while paused
+     */
+    public synchronized void checkpoint() throws CopyCancelledException {
+        while (paused && !cancelled) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            throw new CopyCancelledException();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.matteoveroni.javacopier;
+
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handle of a copy job started by
+ * {@link JavaCopier#copyAsync(Path, Path, CopyConfiguration, CopyListener, java.util.concurrent.Executor, CopyOption...)}.
+ * <p>
+ * The future completes with the final {@link CopyStatusReport} of the job, whose result is
+ * {@link CopyStatusReport.FinalResult#COPY_CANCELLED} if the job was cancelled. Cancelling the future cancels the
+ * job too.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyHandle {
+
+    private final Path src;
+    private final Path dest;
+    private final CopyProgress copyProgress;
+    private final CopyHistory copyHistory;
+    private final CopyControl copyControl;
+    private final CopyOption[] copyOptions;
+    private final CompletableFuture<CopyStatusReport> future = new CompletableFuture<>();
+
+    CopyHandle(Path src, Path dest, CopyProgress copyProgress, CopyHistory copyHistory, CopyControl copyControl, CopyOption[] copyOptions) {
+        this.src = src;
+        this.dest = dest;
+        this.copyProgress = copyProgress;
+        this.copyHistory = copyHistory;
+        this.copyControl = copyControl;
+        this.copyOptions = copyOptions;
+        future.whenComplete((copyStatusReport, ex) -> {
+            if (future.isCancelled()) {
+                copyControl.cancel();
+            }
+        });
+    }
+
+    public CompletableFuture<CopyStatusReport> getFuture() {
+        return future;
+    }
+
+    /**
+     * Asks the job to stop after the chunk being copied. The file being copied is not registered in the history,
+     * like the files not copied yet, and what is left of its dest depends on the
+     * {@link com.matteoveroni.javacopier.copystrategies.FileCopyStrategy}. The default
+     * {@link com.matteoveroni.javacopier.copystrategies.FilesCopyStrategy} copies a file in a single chunk, so the
+     * job stops once its dest is complete. The strategies extending
+     * {@link com.matteoveroni.javacopier.copystrategies.AbstractChannelCopyStrategy} delete the partially written
+     * dest, except for a delta transfer of {@link com.matteoveroni.javacopier.copystrategies.DeltaCopyStrategy},
+     * which leaves the dest it updates in place partially updated. An archive, see
+     * {@link CopyConfiguration.Builder#setArchiveOutput(boolean)}, is deleted as a whole.
+     */
+    public void cancel() {
+        copyControl.cancel();
+    }
+
+    public boolean isCancelled() {
+        return copyControl.isCancelled();
+    }
+
+    /**
+     * Suspends the job after the chunk being copied, without releasing its thread.
+     */
+    public void pause() {
+        copyControl.pause();
+    }
+
+    public void resume() {
+        copyControl.resume();
+    }
+
+    public boolean isPaused() {
+        return copyControl.isPaused();
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * @return the progress of the job right now, or its final report if it is done
+     */
+    public CopyStatusReport getProgressSnapshot() {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            return future.join();
+        }
+        return new CopyStatusReport(src, dest, CopyStatusReport.CopyState.RUNNING, copyProgress, copyHistory, copyOptions);
+    }
+
+    void complete(CopyStatusReport finalCopyStatusReport) {
+        future.complete(finalCopyStatusReport);
+    }
+
+    void completeExceptionally(Throwable ex) {
+        future.completeExceptionally(ex);
+    }
+}
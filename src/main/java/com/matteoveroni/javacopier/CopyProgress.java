@@ -0,0 +1,303 @@
+package com.matteoveroni.javacopier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live, thread safe state of a running copy job. {@link CopyStatusReport}s are snapshots taken from it.
+ * <p>
+ * When the files are counted while the copy is already running the totals are estimates, refined every
+ * time the discovery walk finds a new file, and become exact once the discovery is completed.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyProgress {
+
+    public static final double BYTES_IN_MEGABYTE = 1024 * 1024;
+
+    private static final long THROUGHPUT_SAMPLE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicInteger discoveredFiles = new AtomicInteger(0);
+    private final AtomicLong discoveredBytes = new AtomicLong(0);
+    private volatile boolean discoveryCompleted;
+    private final AtomicLong copiedBytes = new AtomicLong(0);
+    private final AtomicLong skippedBytes = new AtomicLong(0);
+    private final AtomicLong savedBytes = new AtomicLong(0);
+    private final AtomicLong sparseBytes = new AtomicLong(0);
+    private final AtomicInteger deduplicatedFiles = new AtomicInteger(0);
+    private final AtomicLong deduplicatedBytes = new AtomicLong(0);
+    private volatile long copyStartNanos;
+    private final AtomicInteger verifiedFiles = new AtomicInteger(0);
+    private final AtomicLong verifiedBytes = new AtomicLong(0);
+    private volatile long verificationStartNanos;
+    private volatile long verificationEndNanos;
+    private final AtomicLong throttledNanos = new AtomicLong(0);
+    private final AtomicLong traversalPlanningNanos = new AtomicLong(0);
+
+    private long previousSampleNanos;
+    private long previousSampleBytes;
+    private long lastSampleNanos;
+    private long lastSampleBytes;
+
+    /**
+     * Creates the progress of a job whose files are still being discovered.
+     */
+    public CopyProgress() {
+        this.discoveryCompleted = false;
+        startCopy();
+    }
+
+    /**
+     * Creates the progress of a job whose files were already counted.
+     */
+    public CopyProgress(int totalFiles) {
+        this.discoveredFiles.set(totalFiles);
+        this.discoveryCompleted = true;
+        startCopy();
+    }
+
+    /**
+     * Creates the progress of a job whose files and bytes were already counted.
+     */
+    public CopyProgress(int totalFiles, long totalBytes) {
+        this(totalFiles);
+        this.discoveredBytes.set(totalBytes);
+    }
+
+    /**
+     * Restarts the clock used for throughput and ETA, to be called when the bytes start moving.
+     */
+    public final synchronized void startCopy() {
+        copyStartNanos = System.nanoTime();
+        previousSampleNanos = lastSampleNanos = copyStartNanos;
+        previousSampleBytes = lastSampleBytes = copiedBytes.get();
+    }
+
+    public void registerDiscoveredFile(long fileSize) {
+        discoveredFiles.incrementAndGet();
+        discoveredBytes.addAndGet(fileSize);
+    }
+
+    public void completeDiscovery() {
+        discoveryCompleted = true;
+    }
+
+    public boolean isDiscoveryCompleted() {
+        return discoveryCompleted;
+    }
+
+    public int getDiscoveredFiles() {
+        return discoveredFiles.get();
+    }
+
+    public long getDiscoveredBytes() {
+        return discoveredBytes.get();
+    }
+
+    /**
+     * @param analyzedFiles files already processed by the copy, which can be ahead of the discovery walk
+     * @return the exact number of files once the discovery is completed, otherwise the best estimate so far
+     */
+    public int getTotalFiles(int analyzedFiles) {
+        int discovered = discoveredFiles.get();
+        return discoveryCompleted ? discovered : Math.max(discovered, analyzedFiles);
+    }
+
+    /**
+     * @return the exact number of bytes to copy once the discovery is completed, otherwise the best estimate so far
+     */
+    public long getTotalBytes() {
+        long discovered = discoveredBytes.get();
+        return discoveryCompleted ? discovered : Math.max(discovered, getProcessedBytes());
+    }
+
+    public void registerCopiedBytes(long bytes) {
+        copiedBytes.addAndGet(bytes);
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes.get();
+    }
+
+    /**
+     * Registers the bytes of a file that did not need to be copied.
+     */
+    public void registerSkippedBytes(long bytes) {
+        skippedBytes.addAndGet(bytes);
+    }
+
+    public long getSkippedBytes() {
+        return skippedBytes.get();
+    }
+
+    /**
+     * Registers the bytes of a file being copied that dest already had and were not written again.
+     */
+    public void registerSavedBytes(long bytes) {
+        savedBytes.addAndGet(bytes);
+    }
+
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    /**
+     * Registers the zero bytes of a file being copied that were left as holes in a sparse dest instead of written.
+     */
+    public void registerSparseBytes(long bytes) {
+        sparseBytes.addAndGet(bytes);
+    }
+
+    public long getSparseBytes() {
+        return sparseBytes.get();
+    }
+
+    /**
+     * Registers a file linked to an identical one already copied instead of being copied.
+     */
+    public void registerDeduplicatedFile(long fileSize) {
+        deduplicatedFiles.incrementAndGet();
+        deduplicatedBytes.addAndGet(fileSize);
+    }
+
+    public int getDeduplicatedFiles() {
+        return deduplicatedFiles.get();
+    }
+
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.get();
+    }
+
+    /**
+     * @return the bytes copied, skipped, saved, left as holes or deduplicated, i.e. the part of the total already done
+     */
+    public long getProcessedBytes() {
+        return copiedBytes.get() + skippedBytes.get() + savedBytes.get() + sparseBytes.get() + deduplicatedBytes.get();
+    }
+
+    /**
+     * Starts the clock of the verification, which is timed apart from the copy.
+     */
+    public void startVerification() {
+        verificationStartNanos = System.nanoTime();
+        verificationEndNanos = 0;
+    }
+
+    public void completeVerification() {
+        verificationEndNanos = System.nanoTime();
+    }
+
+    /**
+     * Registers a file whose dest has been read again and found identical to its src.
+     */
+    public void registerVerifiedFile(long fileSize) {
+        verifiedFiles.incrementAndGet();
+        verifiedBytes.addAndGet(fileSize);
+    }
+
+    public int getVerifiedFiles() {
+        return verifiedFiles.get();
+    }
+
+    public long getVerifiedBytes() {
+        return verifiedBytes.get();
+    }
+
+    /**
+     * @return the milliseconds spent verifying, 0 if the verification never started
+     */
+    public long getVerificationElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getVerificationElapsedNanos());
+    }
+
+    /**
+     * @return MB/s of files verified, each of them read twice, once from src and once from dest
+     */
+    public double getVerificationThroughput() {
+        return calculateThroughput(verifiedBytes.get(), getVerificationElapsedNanos());
+    }
+
+    /**
+     * Registers time the job waited to stay within the limits of its throttle.
+     */
+    public void registerThrottledNanos(long nanos) {
+        throttledNanos.addAndGet(nanos);
+    }
+
+    public long getThrottledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    /**
+     * Registers time spent reading and sorting the entries of the directories before copying them.
+     */
+    public void registerTraversalPlanningNanos(long nanos) {
+        traversalPlanningNanos.addAndGet(nanos);
+    }
+
+    public long getTraversalPlanningMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(traversalPlanningNanos.get());
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - copyStartNanos);
+    }
+
+    /**
+     * @return MB/s since the copy started
+     */
+    public double getAverageThroughput() {
+        return calculateThroughput(copiedBytes.get(), System.nanoTime() - copyStartNanos);
+    }
+
+    /**
+     * @return MB/s over the last one or two seconds of copy
+     */
+    public synchronized double getInstantThroughput() {
+        long now = System.nanoTime();
+        long bytes = copiedBytes.get();
+        if (now - lastSampleNanos >= THROUGHPUT_SAMPLE_WINDOW_NANOS) {
+            previousSampleNanos = lastSampleNanos;
+            previousSampleBytes = lastSampleBytes;
+            lastSampleNanos = now;
+            lastSampleBytes = bytes;
+        }
+        return calculateThroughput(bytes - previousSampleBytes, now - previousSampleNanos);
+    }
+
+    /**
+     * @return the estimated milliseconds needed to copy the remaining bytes at the current throughput, or -1 if
+     * it cannot be estimated yet
+     */
+    public long getEstimatedRemainingMillis() {
+        long remainingBytes = Math.max(0, getTotalBytes() - getProcessedBytes());
+        if (remainingBytes == 0) {
+            return 0;
+        }
+        double throughput = getInstantThroughput();
+        if (throughput <= 0) {
+            throughput = getAverageThroughput();
+        }
+        if (throughput <= 0) {
+            return -1;
+        }
+        return (long) (remainingBytes / (throughput * BYTES_IN_MEGABYTE) * 1000);
+    }
+
+    private long getVerificationElapsedNanos() {
+        long startNanos = verificationStartNanos;
+        if (startNanos == 0) {
+            return 0;
+        }
+        long endNanos = verificationEndNanos;
+        return ((endNanos == 0) ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    private double calculateThroughput(long bytes, long nanos) {
+        if (nanos <= 0) {
+            return 0.0;
+        }
+        return (bytes / BYTES_IN_MEGABYTE) / ((double) nanos / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,126 @@
+package com.matteoveroni.javacopier;
+
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifies the progress of a copy job to its {@link CopyListener} following a {@link ProgressNotificationPolicy}.
+ * Events skipped by the policy cost a few arithmetic operations and no allocation: the {@link CopyStatusReport} is
+ * only created when the listener is going to be called.
+ * <p>
+ * Thread safe: reports are taken under the history lock, so they are consistent when files are copied concurrently,
+ * while the listener is called outside of it, one call at a time. A thread never waits for a listener busy on another
+ * thread: it leaves its report to that thread, which notifies the latest report left once done, so a slow listener
+ * gets fewer reports instead of stalling the copy.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyProgressNotifier {
+
+    private final Path rootSrc;
+    private final Path rootDest;
+    private final ProgressNotificationPolicy policy;
+    private final CopyProgress copyProgress;
+    private final CopyHistory copyHistory;
+    private final CopyListener copyListener;
+    private final CopyMetrics metrics;
+    private final CopyOption[] copyOptions;
+
+    private long skippedEvents = 0;
+    private boolean notifiedOnce = false;
+    private long lastNotificationNanos = 0;
+    private double lastNotifiedFilesPercentage = -1;
+    private double lastNotifiedBytesPercentage = -1;
+    private CopyStatusReport pendingReport;
+    private boolean notifying = false;
+
+    public CopyProgressNotifier(Path rootSrc, Path rootDest, ProgressNotificationPolicy policy, CopyProgress copyProgress, CopyHistory copyHistory, CopyListener copyListener, CopyOption[] copyOptions) {
+        this(rootSrc, rootDest, policy, copyProgress, copyHistory, copyListener, CopyMetrics.NONE, copyOptions);
+    }
+
+    /**
+     * @param metrics records the time spent inside the listener
+     */
+    public CopyProgressNotifier(Path rootSrc, Path rootDest, ProgressNotificationPolicy policy, CopyProgress copyProgress, CopyHistory copyHistory, CopyListener copyListener, CopyMetrics metrics, CopyOption[] copyOptions) {
+        this.rootSrc = rootSrc;
+        this.rootDest = rootDest;
+        this.policy = policy;
+        this.copyProgress = copyProgress;
+        this.copyHistory = copyHistory;
+        this.copyListener = copyListener;
+        this.metrics = metrics;
+        this.copyOptions = copyOptions;
+    }
+
+    public void onProgressEvent() {
+        if (copyListener == null) {
+            return;
+        }
+        synchronized (copyHistory) {
+            if (!isNotificationDue()) {
+                skippedEvents++;
+                return;
+            }
+            skippedEvents = 0;
+            notifiedOnce = true;
+            lastNotificationNanos = System.nanoTime();
+            pendingReport = new CopyStatusReport(rootSrc, rootDest, CopyStatusReport.CopyState.RUNNING, copyProgress, copyHistory, copyOptions);
+            lastNotifiedFilesPercentage = pendingReport.getCopyPercentage();
+            lastNotifiedBytesPercentage = pendingReport.getBytesCopyPercentage();
+            if (notifying) {
+                return;
+            }
+            notifying = true;
+        }
+        notifyPendingReports();
+    }
+
+    /**
+     * Calls the listener with the pending reports, outside of the history lock, until no report is left.
+     */
+    private void notifyPendingReports() {
+        try {
+            while (true) {
+                CopyStatusReport copyStatusReport;
+                synchronized (copyHistory) {
+                    copyStatusReport = pendingReport;
+                    pendingReport = null;
+                    if (copyStatusReport == null) {
+                        notifying = false;
+                        return;
+                    }
+                }
+                long callbackStartNanos = System.nanoTime();
+                copyListener.onCopyProgress(copyStatusReport);
+                metrics.recordPhase(CopyPhase.LISTENER_CALLBACK, System.nanoTime() - callbackStartNanos);
+            }
+        } catch (RuntimeException ex) {
+            synchronized (copyHistory) {
+                notifying = false;
+            }
+            throw ex;
+        }
+    }
+
+    private boolean isNotificationDue() {
+        if (policy.getEveryEvents() > 0) {
+            return skippedEvents + 1 >= policy.getEveryEvents();
+        } else if (policy.getEveryMillis() > 0) {
+            return !notifiedOnce
+                    || System.nanoTime() - lastNotificationNanos >= TimeUnit.MILLISECONDS.toNanos(policy.getEveryMillis());
+        } else {
+            int analyzedFiles = copyHistory.getAnalyzedFiles();
+            int totalFiles = copyProgress.getTotalFiles(analyzedFiles);
+            long totalBytes = copyProgress.getTotalBytes();
+            double filesPercentage = totalFiles == 0 ? 0.0 : ((double) analyzedFiles / totalFiles) * 100;
+            double bytesPercentage = totalBytes == 0 ? 0.0 : ((double) copyProgress.getProcessedBytes() / totalBytes) * 100;
+            return filesPercentage - lastNotifiedFilesPercentage >= policy.getPercentageStep()
+                    || bytesPercentage - lastNotifiedBytesPercentage >= policy.getPercentageStep();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.matteoveroni.javacopier;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.copyhistory.CopyHistorySnapshot;
 import com.matteoveroni.javacopier.gsonconverters.PathToGsonConverter;
 
 import java.nio.file.CopyOption;
@@ -13,11 +14,11 @@ import java.nio.file.Path;
  */
 public class CopyStatusReport {
 
-    private transient final Gson gson = new GsonBuilder()
+    private static final Gson GSON = new GsonBuilder()
             .registerTypeHierarchyAdapter(Path.class, new PathToGsonConverter())
             .create();
 
-    private transient final Gson prettygson = new GsonBuilder()
+    private static final Gson PRETTY_GSON = new GsonBuilder()
             .registerTypeHierarchyAdapter(Path.class, new PathToGsonConverter())
             .setPrettyPrinting()
             .create();
@@ -27,40 +28,96 @@ public class CopyStatusReport {
     }
 
     public enum FinalResult {
-        NOT_ELABORATED, COPY_SUCCESSFUL, COPY_FAILED, COPY_PARTIAL
+        NOT_ELABORATED, COPY_SUCCESSFUL, COPY_FAILED, COPY_PARTIAL, COPY_CANCELLED
     }
 
     private final Path src;
     private final Path dest;
     private final int totalFiles;
-    private final CopyHistory copyHistory;
+    private final boolean totalFilesEstimated;
+    private final CopyHistorySnapshot copyHistory;
     private final int numberOfCopiedFiles;
     private final int numberOfCopiesFailed;
+    private final int numberOfSkippedFiles;
+    private final long totalBytes;
+    private final long copiedBytes;
+    private final long skippedBytes;
+    private final long savedBytes;
+    private final long sparseBytes;
+    private final int numberOfDeduplicatedFiles;
+    private final long deduplicatedBytes;
+    private final int numberOfVerifiedFiles;
+    private final long verifiedBytes;
+    private final double verificationThroughput;
+    private final long verificationElapsedMillis;
+    private final long throttledMillis;
+    private final long traversalPlanningMillis;
+    private final double bytesCopyPercentage;
+    private final double instantThroughput;
+    private final double averageThroughput;
+    private final long elapsedMillis;
+    private final long estimatedRemainingMillis;
     private final CopyState copyState;
     private final double copyPercentage;
     private final FinalResult result;
     private final CopyOption[] copyOptions;
 
     public CopyStatusReport(Path src, Path dest, CopyState copyState, int totalFiles, CopyHistory copyHistory, CopyOption... copyOptions) {
+        this(src, dest, copyState, new CopyProgress(totalFiles), copyHistory, copyOptions);
+    }
+
+    public CopyStatusReport(Path src, Path dest, CopyState copyState, CopyProgress copyProgress, CopyHistory copyHistory, CopyOption... copyOptions) {
+        this(src, dest, copyState, copyProgress, copyHistory, false, copyOptions);
+    }
+
+    /**
+     * @param cancelled true if the job was cancelled before copying everything, see {@link CopyControl}
+     */
+    public CopyStatusReport(Path src, Path dest, CopyState copyState, CopyProgress copyProgress, CopyHistory copyHistory, boolean cancelled, CopyOption... copyOptions) {
         this.src = src;
         this.dest = dest;
         this.copyState = copyState;
-        this.totalFiles = totalFiles;
-        this.copyHistory = copyHistory;
-        this.numberOfCopiedFiles = copyHistory.getCopiedFiles().size();
-        this.numberOfCopiesFailed = copyHistory.getCopiesFailed().size();
+        // a snapshot, so that the report stays consistent while the copy goes on
+        this.copyHistory = copyHistory.snapshot();
+        this.totalFiles = copyProgress.getTotalFiles(this.copyHistory.getAnalyzedFiles());
+        this.totalFilesEstimated = !copyProgress.isDiscoveryCompleted();
+        this.numberOfCopiedFiles = this.copyHistory.getNumberOfCopiedFiles();
+        this.numberOfCopiesFailed = this.copyHistory.getNumberOfCopiesFailed();
+        this.numberOfSkippedFiles = this.copyHistory.getNumberOfSkippedFiles();
+        this.totalBytes = copyProgress.getTotalBytes();
+        this.copiedBytes = copyProgress.getCopiedBytes();
+        this.skippedBytes = copyProgress.getSkippedBytes();
+        this.savedBytes = copyProgress.getSavedBytes();
+        this.sparseBytes = copyProgress.getSparseBytes();
+        this.numberOfDeduplicatedFiles = copyProgress.getDeduplicatedFiles();
+        this.deduplicatedBytes = copyProgress.getDeduplicatedBytes();
+        this.numberOfVerifiedFiles = copyProgress.getVerifiedFiles();
+        this.verifiedBytes = copyProgress.getVerifiedBytes();
+        this.verificationThroughput = copyProgress.getVerificationThroughput();
+        this.verificationElapsedMillis = copyProgress.getVerificationElapsedMillis();
+        this.throttledMillis = copyProgress.getThrottledMillis();
+        this.traversalPlanningMillis = copyProgress.getTraversalPlanningMillis();
+        this.instantThroughput = copyProgress.getInstantThroughput();
+        this.averageThroughput = copyProgress.getAverageThroughput();
+        this.elapsedMillis = copyProgress.getElapsedMillis();
         this.copyOptions = copyOptions;
         switch (copyState) {
 
             case DONE:
                 copyPercentage = 100.0;
-                if (copyHistory == null || copyHistory.getCopiesFailed() == null) {
+                bytesCopyPercentage = 100.0;
+                estimatedRemainingMillis = 0;
+                if (copyHistory == null) {
                     result = FinalResult.COPY_FAILED;
                     break;
                 }
-                if (copyHistory.getCopiesFailed().size() >= totalFiles) {
+                if (cancelled) {
+                    result = FinalResult.COPY_CANCELLED;
+                    break;
+                }
+                if (numberOfCopiesFailed >= totalFiles) {
                     result = FinalResult.COPY_FAILED;
-                } else if (copyHistory.getCopiesFailed().isEmpty()) {
+                } else if (numberOfCopiesFailed == 0) {
                     result = FinalResult.COPY_SUCCESSFUL;
                 } else {
                     result = FinalResult.COPY_PARTIAL;
@@ -70,6 +127,8 @@ public class CopyStatusReport {
             case RUNNING:
             default:
                 copyPercentage = calculateCopyPercentage();
+                bytesCopyPercentage = calculateBytesCopyPercentage();
+                estimatedRemainingMillis = copyProgress.getEstimatedRemainingMillis();
                 result = FinalResult.NOT_ELABORATED;
                 break;
         }
@@ -95,6 +154,13 @@ public class CopyStatusReport {
         return totalFiles;
     }
 
+    /**
+     * @return true if the files are still being counted while copying, so {@link #getTotalFiles()} is an estimate
+     */
+    public boolean isTotalFilesEstimated() {
+        return totalFilesEstimated;
+    }
+
     public int getNumberOfCopiedFiles() {
         return numberOfCopiedFiles;
     }
@@ -103,7 +169,135 @@ public class CopyStatusReport {
         return numberOfCopiesFailed;
     }
 
-    public CopyHistory getCopyHistory() {
+    /**
+     * @return the number of files not copied because dest was already up to date
+     */
+    public int getNumberOfSkippedFiles() {
+        return numberOfSkippedFiles;
+    }
+
+    /**
+     * @return the progress measured in bytes, which unlike {@link #getCopyPercentage()} is not skewed by files
+     * of very different sizes
+     */
+    public double getBytesCopyPercentage() {
+        return bytesCopyPercentage;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    /**
+     * @return the throughput in MB/s over the last seconds of copy
+     */
+    public double getInstantThroughput() {
+        return instantThroughput;
+    }
+
+    /**
+     * @return the throughput in MB/s since the copy started
+     */
+    public double getAverageThroughput() {
+        return averageThroughput;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the estimated time to complete the copy, or -1 if it cannot be estimated yet
+     */
+    public long getEstimatedRemainingMillis() {
+        return estimatedRemainingMillis;
+    }
+
+    /**
+     * @return the bytes of the files skipped because already up to date
+     */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    /**
+     * @return the bytes of the files copied that were not written again because dest already had them, see
+     * {@link com.matteoveroni.javacopier.copystrategies.DeltaCopyStrategy}
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * @return the zero bytes of the files copied that were not written but left as holes in dest, see
+     * {@link com.matteoveroni.javacopier.copystrategies.SparseCopyStrategy}
+     */
+    public long getSparseBytes() {
+        return sparseBytes;
+    }
+
+    /**
+     * @return the number of copied files that are hard links to identical files copied by the same job
+     */
+    public int getNumberOfDeduplicatedFiles() {
+        return numberOfDeduplicatedFiles;
+    }
+
+    /**
+     * @return the bytes of the deduplicated files, not written because linked
+     */
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes;
+    }
+
+    /**
+     * @return the number of copied files whose content has been verified identical to src, see
+     * {@link CopyConfiguration.Builder#setVerification(boolean)}. Files failing verification are counted among
+     * the failed copies.
+     */
+    public int getNumberOfVerifiedFiles() {
+        return numberOfVerifiedFiles;
+    }
+
+    public long getVerifiedBytes() {
+        return verifiedBytes;
+    }
+
+    /**
+     * @return the throughput in MB/s of the verification, which is not part of {@link #getAverageThroughput()}
+     */
+    public double getVerificationThroughput() {
+        return verificationThroughput;
+    }
+
+    public long getVerificationElapsedMillis() {
+        return verificationElapsedMillis;
+    }
+
+    /**
+     * @return the milliseconds the job waited to stay within the limits of its throttle, see
+     * {@link CopyConfiguration.Builder#setThrottle}
+     */
+    public long getThrottledMillis() {
+        return throttledMillis;
+    }
+
+    /**
+     * @return the milliseconds spent sorting the entries of the directories before copying them, see
+     * {@link CopyConfiguration.Builder#setTraversalOrder}
+     */
+    public long getTraversalPlanningMillis() {
+        return traversalPlanningMillis;
+    }
+
+    /**
+     * @return the history of the copy when this report was created
+     */
+    public CopyHistorySnapshot getCopyHistory() {
         return copyHistory;
     }
 
@@ -121,11 +315,18 @@ public class CopyStatusReport {
 
     @Override
     public String toString() {
-        return gson.toJson(this);
+        return GSON.toJson(this);
     }
 
     public String toPrettyString() {
-        return prettygson.toJson(this);
+        return PRETTY_GSON.toJson(this);
+    }
+
+    private double calculateBytesCopyPercentage() {
+        if (totalBytes == 0) {
+            return 0.0;
+        }
+        return ((double) (copiedBytes + skippedBytes + savedBytes + sparseBytes + deduplicatedBytes) / totalBytes) * 100;
     }
 
     private double calculateCopyPercentage() {
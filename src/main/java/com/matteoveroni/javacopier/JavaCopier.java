@@ -1,15 +1,38 @@
 package com.matteoveroni.javacopier;
 
+import com.matteoveroni.javacopier.concurrency.AdaptiveConcurrencyLimiter;
+import com.matteoveroni.javacopier.concurrency.ConcurrencyLimiter;
+import com.matteoveroni.javacopier.concurrency.FixedConcurrencyLimiter;
 import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.copystrategies.CopyChunkListener;
+import com.matteoveroni.javacopier.executors.FileCopyExecutors;
+import com.matteoveroni.javacopier.filevisitors.ArchiveFileVisitor;
 import com.matteoveroni.javacopier.filevisitors.CopyDirsFileVisitor;
 import com.matteoveroni.javacopier.filevisitors.CountFileVisitor;
+import com.matteoveroni.javacopier.filevisitors.DispatchingFileVisitor;
+import com.matteoveroni.javacopier.filevisitors.FanOutFileVisitor;
 import com.matteoveroni.javacopier.copyhistory.CopyHistoryEvent;
 import com.matteoveroni.javacopier.filevisitors.PrintFileVisitor;
+import com.matteoveroni.javacopier.filewalkers.OrderedFileTreeWalker;
+import com.matteoveroni.javacopier.filewalkers.ParallelFileTreeWalker;
+import com.matteoveroni.javacopier.filters.CopyFilter;
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+import com.matteoveroni.javacopier.scheduling.DeviceIoScheduler;
+import com.matteoveroni.javacopier.throttling.CopyThrottle;
+import com.matteoveroni.javacopier.verification.CopyVerifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 /**
  * @author Matteo Veroni
@@ -18,6 +41,8 @@ public class JavaCopier {
 
     static final String ERROR_MSG_SRC_OR_DEST_NULL = "src and dest cannot be null";
     static final String ERROR_MSG_SRC_MUST_EXIST = "src must exists";
+    static final String ERROR_MSG_DESTS_EMPTY = "dests cannot be null or empty";
+    static final String ERROR_MSG_DESTS_NOT_DISTINCT = "dests must be distinct";
 
     private static final CopyOption[] DEFAULT_COPY_OPTIONS = new CopyOption[]{StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING};
     private static final Logger LOG = LoggerFactory.getLogger(JavaCopier.class);
@@ -39,24 +64,135 @@ public class JavaCopier {
     }
 
     public static CopyStatusReport copy(Path src, Path dest, CopyListener copyListener, OutputStream logReportOutputStream, CopyOption... copyOptions) throws IllegalArgumentException {
-        if (src == null || dest == null) {
-            throw new IllegalArgumentException(ERROR_MSG_SRC_OR_DEST_NULL);
-        } else if (Files.notExists(src)) {
-            throw new IllegalArgumentException(ERROR_MSG_SRC_MUST_EXIST);
+        return copy(src, dest, CopyConfiguration.DEFAULT, copyListener, logReportOutputStream, copyOptions);
+    }
+
+    public static CopyStatusReport copy(Path src, Path dest, CopyConfiguration configuration, CopyOption... copyOptions) throws IllegalArgumentException {
+        return copy(src, dest, configuration, null, null, copyOptions);
+    }
+
+    public static CopyStatusReport copy(Path src, Path dest, CopyConfiguration configuration, CopyListener copyListener, OutputStream logReportOutputStream, CopyOption... copyOptions) throws IllegalArgumentException {
+        validateSrcAndDest(src, dest);
+        copyOptions = (copyOptions != null) ? copyOptions : DEFAULT_COPY_OPTIONS;
+        configuration = (configuration != null) ? configuration : CopyConfiguration.DEFAULT;
+
+        CopyProgress copyProgress = new CopyProgress();
+        CopyHistory copyHistory = new CopyHistory(configuration.getHistoryRetention(), configuration.getHistorySpillFile());
+        return runCopy(src, dest, configuration, copyListener, logReportOutputStream, copyProgress, copyHistory, new CopyControl(), copyOptions);
+    }
+
+    public static CopyHandle copyAsync(Path src, Path dest, CopyOption... copyOptions) throws IllegalArgumentException {
+        return copyAsync(src, dest, CopyConfiguration.DEFAULT, null, null, copyOptions);
+    }
+
+    public static CopyHandle copyAsync(Path src, Path dest, CopyListener copyListener, CopyOption... copyOptions) throws IllegalArgumentException {
+        return copyAsync(src, dest, CopyConfiguration.DEFAULT, copyListener, null, copyOptions);
+    }
+
+    public static CopyHandle copyAsync(Path src, Path dest, CopyConfiguration configuration, CopyOption... copyOptions) throws IllegalArgumentException {
+        return copyAsync(src, dest, configuration, null, null, copyOptions);
+    }
+
+    /**
+     * Starts the copy without blocking the caller and returns the {@link CopyHandle} to follow, pause or cancel it.
+     *
+     * @param executor runs the copy job, if null the job gets its own daemon thread
+     */
+    public static CopyHandle copyAsync(Path src, Path dest, CopyConfiguration configuration, CopyListener copyListener, Executor executor, CopyOption... copyOptions) throws IllegalArgumentException {
+        validateSrcAndDest(src, dest);
+        CopyOption[] asyncCopyOptions = (copyOptions != null) ? copyOptions : DEFAULT_COPY_OPTIONS;
+        CopyConfiguration asyncConfiguration = (configuration != null) ? configuration : CopyConfiguration.DEFAULT;
+
+        CopyProgress copyProgress = new CopyProgress();
+        CopyHistory copyHistory = new CopyHistory(asyncConfiguration.getHistoryRetention(), asyncConfiguration.getHistorySpillFile());
+        CopyControl copyControl = new CopyControl();
+        CopyHandle copyHandle = new CopyHandle(src.toAbsolutePath(), dest.toAbsolutePath(), copyProgress, copyHistory, copyControl, asyncCopyOptions);
+        Runnable copyJob = () -> {
+            try {
+                copyHandle.complete(runCopy(src, dest, asyncConfiguration, copyListener, null, copyProgress, copyHistory, copyControl, asyncCopyOptions));
+            } catch (Throwable ex) {
+                LOG.error("Copy from src: " + src + " to dest: " + dest + " aborted, ex: " + ex.toString());
+                copyHandle.completeExceptionally(ex);
+            }
+        };
+        if (executor != null) {
+            executor.execute(copyJob);
+        } else {
+            Thread copyThread = new Thread(copyJob, "javacopier-copy");
+            copyThread.setDaemon(true);
+            copyThread.start();
         }
+        return copyHandle;
+    }
 
-        LOG.debug("calculating the number of files to copy...");
-        Integer totalFiles = calculateFilesCount(src);
-        LOG.debug("number of files to copy: " + totalFiles);
+    public static MultiDestinationCopyReport copyToMany(Path src, Path[] dests, CopyOption... copyOptions) throws IllegalArgumentException {
+        return copyToMany(src, dests, CopyConfiguration.DEFAULT, null, copyOptions);
+    }
+
+    public static MultiDestinationCopyReport copyToMany(Path src, Path[] dests, CopyConfiguration configuration, CopyOption... copyOptions) throws IllegalArgumentException {
+        return copyToMany(src, dests, configuration, null, copyOptions);
+    }
 
+    /**
+     * Copies src into every dest reading it only once: each chunk read is written to all the dests concurrently.
+     * Every dest gets its own {@link CopyStatusReport}, notified to copyListener, and its own {@link CopyHistory}.
+     * A dest that fails does not stop the copy to the others.
+     * <p>
+     * The files are read by a single walk, so incremental copy, journal, manifest, deduplication, verification,
+     * archive output, the file copy strategy and the parallel or per file execution settings are ignored.
+     *
+     * @return the reports of the dests, in the order they were given
+     */
+    public static MultiDestinationCopyReport copyToMany(Path src, Path[] dests, CopyConfiguration configuration, CopyListener copyListener, CopyOption... copyOptions) throws IllegalArgumentException {
+        validateSrcAndDests(src, dests);
         copyOptions = (copyOptions != null) ? copyOptions : DEFAULT_COPY_OPTIONS;
-        return executeCopy(src, dest, copyListener, totalFiles, logReportOutputStream, copyOptions);
+        configuration = (configuration != null) ? configuration : CopyConfiguration.DEFAULT;
+
+        src = src.toAbsolutePath();
+        CopyProgress discoveryProgress = new CopyProgress();
+        discoverFiles(src, discoveryProgress, configuration);
+
+        Path[] destPaths = new Path[dests.length];
+        CopyProgress[] copyProgresses = new CopyProgress[dests.length];
+        CopyHistory[] copyHistories = new CopyHistory[dests.length];
+        for (int i = 0; i < dests.length; i++) {
+            Path dest = dests[i].toAbsolutePath();
+            destPaths[i] = (src.toFile().isFile() && dest.toFile().isDirectory()) ? dest.resolve(src.getFileName()) : dest;
+            copyProgresses[i] = new CopyProgress(discoveryProgress.getDiscoveredFiles(), discoveryProgress.getDiscoveredBytes());
+            copyHistories[i] = new CopyHistory(configuration.getHistoryRetention(), calculateHistorySpillFile(configuration, i));
+        }
+
+        LOG.debug("Copy from src: " + src + " to " + dests.length + " dests started");
+        CopyControl copyControl = new CopyControl();
+        long readBytes = 0;
+        try (FanOutFileVisitor fanOutFileVisitor = new FanOutFileVisitor(src, destPaths, configuration, copyProgresses, copyHistories, copyControl, copyListener, copyOptions)) {
+            Files.walkFileTree(src, fanOutFileVisitor);
+            readBytes = fanOutFileVisitor.getReadBytes();
+        } catch (IOException ex) {
+            LOG.debug("Exception: " + ex.toString());
+        }
+
+        Map<Path, CopyStatusReport> reports = new LinkedHashMap<>();
+        for (int i = 0; i < dests.length; i++) {
+            copyHistories[i].close();
+            CopyStatusReport copyStatus = new CopyStatusReport(src, destPaths[i], CopyStatusReport.CopyState.DONE, copyProgresses[i], copyHistories[i], copyControl.isCancelled(), copyOptions);
+            notifyCopyStatusToListener(copyStatus, copyListener, configuration.getMetrics());
+            reports.put(dests[i].toAbsolutePath(), copyStatus);
+        }
+        return new MultiDestinationCopyReport(src, reports, readBytes);
     }
 
     public static Integer calculateFilesCount(Path src) {
+        return calculateFilesCount(src, CopyFilter.ACCEPT_ALL);
+    }
+
+    /**
+     * @return the number of files and directories of src accepted by filter
+     */
+    public static Integer calculateFilesCount(Path src, CopyFilter filter) {
         int filesCount;
         try {
-            CountFileVisitor fileCounter = new CountFileVisitor();
+            CountFileVisitor fileCounter = new CountFileVisitor(null, src, filter);
             Files.walkFileTree(src, fileCounter);
             filesCount = fileCounter.getFilesCount();
         } catch (IOException ex) {
@@ -66,27 +202,127 @@ public class JavaCopier {
         return filesCount;
     }
 
-    private static CopyStatusReport executeCopy(Path src, Path dest, CopyListener copyListener, Integer totalFiles, OutputStream logReportOutputStream, CopyOption[] copyOptions) {
+    private static void validateSrcAndDest(Path src, Path dest) throws IllegalArgumentException {
+        if (src == null || dest == null) {
+            throw new IllegalArgumentException(ERROR_MSG_SRC_OR_DEST_NULL);
+        } else if (Files.notExists(src)) {
+            throw new IllegalArgumentException(ERROR_MSG_SRC_MUST_EXIST);
+        }
+    }
+
+    private static void validateSrcAndDests(Path src, Path[] dests) throws IllegalArgumentException {
+        if (dests == null || dests.length == 0) {
+            throw new IllegalArgumentException(ERROR_MSG_DESTS_EMPTY);
+        }
+        Set<Path> distinctDests = new HashSet<>();
+        for (Path dest : dests) {
+            validateSrcAndDest(src, dest);
+            if (!distinctDests.add(dest.toAbsolutePath().normalize())) {
+                throw new IllegalArgumentException(ERROR_MSG_DESTS_NOT_DISTINCT);
+            }
+        }
+    }
+
+    /**
+     * @return the spill file of the history of the dest with the given index, each dest needs its own
+     */
+    private static Path calculateHistorySpillFile(CopyConfiguration configuration, int destIndex) {
+        Path spillFile = configuration.getHistorySpillFile();
+        if (spillFile == null) {
+            return null;
+        }
+        return spillFile.resolveSibling(spillFile.getFileName() + "-" + destIndex);
+    }
+
+    private static CopyStatusReport runCopy(Path src, Path dest, CopyConfiguration configuration, CopyListener copyListener, OutputStream logReportOutputStream, CopyProgress copyProgress, CopyHistory copyHistory, CopyControl copyControl, CopyOption[] copyOptions) {
+        Thread filesDiscoveryThread = null;
+        if (configuration.isConcurrentDiscovery() && Files.isDirectory(src)) {
+            LOG.debug("counting the files to copy while copying...");
+            filesDiscoveryThread = startFilesDiscovery(src, copyProgress, configuration);
+        } else {
+            LOG.debug("calculating the number of files to copy...");
+            discoverFiles(src, copyProgress, configuration);
+        }
+
+        return executeCopy(src, dest, configuration, copyListener, copyProgress, copyHistory, copyControl, filesDiscoveryThread, logReportOutputStream, copyOptions);
+    }
+
+    /**
+     * Counts the files and the bytes to copy, publishing them to copyProgress.
+     */
+    private static void discoverFiles(Path src, CopyProgress copyProgress, CopyConfiguration configuration) {
+        CopyMetrics metrics = configuration.getMetrics();
+        long discoveryStartNanos = System.nanoTime();
+        try {
+            Files.walkFileTree(src, new CountFileVisitor(copyProgress, src, configuration.getFilter()));
+        } catch (IOException ex) {
+            LOG.debug("Error during files count. This should not happen because fileCounterVisitor doesnt throw ioexceptions. ex: " + ex);
+        } finally {
+            metrics.recordPhase(CopyPhase.FILES_DISCOVERY, System.nanoTime() - discoveryStartNanos);
+            copyProgress.completeDiscovery();
+            LOG.debug("number of files to copy: " + copyProgress.getDiscoveredFiles() + ", bytes to copy: " + copyProgress.getDiscoveredBytes());
+        }
+    }
+
+    private static Thread startFilesDiscovery(Path src, CopyProgress copyProgress, CopyConfiguration configuration) {
+        Thread filesDiscoveryThread = new Thread(() -> discoverFiles(src, copyProgress, configuration), "javacopier-files-discovery");
+        filesDiscoveryThread.setDaemon(true);
+        filesDiscoveryThread.start();
+        return filesDiscoveryThread;
+    }
+
+    private static void awaitFilesDiscovery(Thread filesDiscoveryThread) {
+        if (filesDiscoveryThread == null) {
+            return;
+        }
+        try {
+            filesDiscoveryThread.join();
+        } catch (InterruptedException ex) {
+            LOG.warn("Interrupted while waiting for the files count to complete");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CopyStatusReport executeCopy(Path src, Path dest, CopyConfiguration configuration, CopyListener copyListener, CopyProgress copyProgress, CopyHistory copyHistory, CopyControl copyControl, Thread filesDiscoveryThread, OutputStream logReportOutputStream, CopyOption[] copyOptions) {
         src = src.toAbsolutePath();
         dest = dest.toAbsolutePath();
         LOG.debug("Copy from src: " + src + " to dest: " + dest + " started");
-        CopyHistory copyHistory = new CopyHistory();
+        copyProgress.startCopy();
         CopyStatusReport copyStatus;
         boolean isCopyMultiple = false;
+        Path singleDestFile = null;
         try {
+            copyControl.checkpoint();
             if (src.toFile().isFile() && (Files.notExists(dest) || dest.toFile().isFile())) {
-                Files.copy(src, dest, copyOptions);
+                singleDestFile = dest;
+                copySingleFile(src, singleDestFile, configuration, copyProgress, copyControl, copyOptions);
             } else if (src.toFile().isFile() && (Files.exists(dest) && dest.toFile().isDirectory())) {
-                Files.copy(src, Paths.get(dest + File.separator + src.toFile().getName()), copyOptions);
+                singleDestFile = Paths.get(dest + File.separator + src.toFile().getName());
+                copySingleFile(src, singleDestFile, configuration, copyProgress, copyControl, copyOptions);
+            } else if (src.toFile().isDirectory() && configuration.isArchiveOutput() && !dest.toFile().isDirectory()) {
+                ArchiveFileVisitor archiveFileVisitor = new ArchiveFileVisitor(src, dest, configuration, copyProgress, copyHistory, copyControl, copyListener, copyOptions);
+                isCopyMultiple = true;
+                try {
+                    Files.walkFileTree(src, archiveFileVisitor);
+                } catch (IOException | RuntimeException ex) {
+                    archiveFileVisitor.abortArchive();
+                    throw ex;
+                }
+                archiveFileVisitor.completeArchive();
             } else if (src.toFile().isDirectory() && (Files.notExists(dest) || dest.toFile().isDirectory())) {
                 isCopyMultiple = true;
-                CopyDirsFileVisitor copyDirsFileVisitor = new CopyDirsFileVisitor(src, dest, totalFiles, copyHistory, copyListener, copyOptions);
-                Files.walkFileTree(src, copyDirsFileVisitor);
+                CopyDirsFileVisitor copyDirsFileVisitor = new CopyDirsFileVisitor(src, dest, configuration, copyProgress, copyHistory, copyControl, copyListener, copyOptions);
+                try {
+                    walkSrcDirTree(src, configuration, copyProgress, copyDirsFileVisitor, copyDirsFileVisitor::calculateDestPath);
+                    copyDirsFileVisitor.verifyCopiedFiles();
+                } finally {
+                    copyDirsFileVisitor.completeCopy();
+                }
             } else if (src.toFile().isDirectory() && (Files.exists(dest) && dest.toFile().isFile())) {
                 isCopyMultiple = true;
                 PrintFileVisitor printFileVisitor = null;
                 try {
-                    printFileVisitor = new PrintFileVisitor(src, dest, new FileOutputStream(dest.toFile()), totalFiles, copyHistory, copyListener, copyOptions);
+                    printFileVisitor = new PrintFileVisitor(src, dest, new FileOutputStream(dest.toFile()), configuration, copyProgress, copyHistory, copyListener, copyOptions);
                     Files.walkFileTree(src, printFileVisitor);
                 } finally {
                     if (printFileVisitor != null) {
@@ -96,22 +332,138 @@ public class JavaCopier {
             }
             if (!isCopyMultiple) {
                 copyHistory.registerCopySuccessEventInHistory(src, dest);
+                if (singleDestFile != null && configuration.isVerification()) {
+                    verifySingleFile(src, singleDestFile, configuration, copyProgress, copyHistory, copyControl);
+                }
             }
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Copy from src: " + src + " to dest: " + dest + " cancelled");
         } catch (IOException ex) {
             LOG.debug("Exception: " + ex.toString());
             if (!isCopyMultiple) {
                 copyHistory.registerCopyFailEventInHistory(src, dest, ex);
+                configuration.getMetrics().recordFileFailed();
             }
         }
-        copyStatus = new CopyStatusReport(src, dest, CopyStatusReport.CopyState.DONE, totalFiles, copyHistory, copyOptions);
-        notifyCopyStatusToListener(copyStatus, copyListener);
+        copyHistory.close();
+        awaitFilesDiscovery(filesDiscoveryThread);
+        copyProgress.completeDiscovery();
+        copyStatus = new CopyStatusReport(src, dest, CopyStatusReport.CopyState.DONE, copyProgress, copyHistory, copyControl.isCancelled(), copyOptions);
+        notifyCopyStatusToListener(copyStatus, copyListener, configuration.getMetrics());
         logCopyReportStatusToOutputStream(logReportOutputStream, copyStatus);
         return copyStatus;
     }
 
-    private static void notifyCopyStatusToListener(CopyStatusReport copyStatus, CopyListener copyListener) {
+    private static void copySingleFile(Path srcFile, Path destFile, CopyConfiguration configuration, CopyProgress copyProgress, CopyControl copyControl, CopyOption[] copyOptions) throws IOException {
+        CopyMetrics metrics = configuration.getMetrics();
+        long transferStartNanos = System.nanoTime();
+        long processedBytesBeforeCopy = getProcessedBytes(copyProgress);
+        try {
+            CopyThrottle throttle = configuration.getThrottle();
+            if (throttle != null) {
+                registerThrottledNanos(throttle.acquireFile(copyControl), copyProgress, metrics);
+            }
+            configuration.getFileCopyStrategy().copyFile(srcFile, destFile, copyOptions, newCopyChunkListener(copyProgress, copyControl, throttle, metrics));
+            metrics.recordFileCopied(getProcessedBytes(copyProgress) - processedBytesBeforeCopy, System.nanoTime() - transferStartNanos);
+        } finally {
+            metrics.recordPhase(CopyPhase.FILE_TRANSFER, System.nanoTime() - transferStartNanos);
+        }
+    }
+
+    /**
+     * @return the bytes gone through the copy strategies so far, whether written, left unchanged or left as holes
+     */
+    private static long getProcessedBytes(CopyProgress copyProgress) {
+        return copyProgress.getCopiedBytes() + copyProgress.getSavedBytes() + copyProgress.getSparseBytes();
+    }
+
+    private static void verifySingleFile(Path srcFile, Path destFile, CopyConfiguration configuration, CopyProgress copyProgress, CopyHistory copyHistory, CopyControl copyControl) {
+        CopyVerifier verifier = new CopyVerifier(configuration, copyProgress, copyHistory, copyControl);
+        verifier.registerCopiedFile(srcFile, destFile, srcFile.toFile().length());
+        verifier.verifyCopiedFiles();
+    }
+
+    private static void walkSrcDirTree(Path src, CopyConfiguration configuration, CopyProgress copyProgress, FileVisitor<Path> fileVisitor, Function<Path, Path> destPathResolver) throws IOException {
+        ExecutorService fileCopyExecutor = null;
+        DispatchingFileVisitor dispatchingFileVisitor = null;
+        if (configuration.isPerFileExecution()) {
+            LOG.debug("Per file execution enabled, virtual threads: " + FileCopyExecutors.isVirtualThreadPerFile() + ", max files in flight: " + configuration.getMaxFilesInFlight()
+                    + ", adaptive concurrency: " + configuration.isAdaptiveConcurrency() + ", device aware scheduling: " + configuration.isDeviceAwareScheduling());
+            fileCopyExecutor = FileCopyExecutors.newFileCopyExecutor(configuration.getMaxFilesInFlight());
+            ConcurrencyLimiter filesInFlight = configuration.isAdaptiveConcurrency()
+                    ? new AdaptiveConcurrencyLimiter(configuration.getMinFilesInFlight(), configuration.getMaxFilesInFlight(), configuration.getMetrics())
+                    : new FixedConcurrencyLimiter(configuration.getMaxFilesInFlight());
+            DeviceIoScheduler deviceIoScheduler = configuration.isDeviceAwareScheduling()
+                    ? new DeviceIoScheduler(fileCopyExecutor, configuration.getMaxFilesInFlightPerDevice(), configuration.getMaxFilesInFlight(), destPathResolver, null)
+                    : null;
+            fileVisitor = dispatchingFileVisitor = new DispatchingFileVisitor(fileVisitor, fileCopyExecutor, filesInFlight, deviceIoScheduler);
+        }
+        try {
+            if (configuration.isParallelCopy()) {
+                LOG.debug("Parallel copy enabled, parallelism: " + configuration.getParallelism());
+                new ParallelFileTreeWalker(configuration.getParallelism()).walkFileTree(src, fileVisitor);
+            } else if (configuration.getTraversalOrder() != OrderedFileTreeWalker.Order.NATURAL) {
+                LOG.debug("Ordered traversal enabled, order: " + configuration.getTraversalOrder());
+                OrderedFileTreeWalker orderedFileTreeWalker = new OrderedFileTreeWalker(configuration.getTraversalOrder(), configuration.getMetrics());
+                try {
+                    orderedFileTreeWalker.walkFileTree(src, fileVisitor);
+                } finally {
+                    copyProgress.registerTraversalPlanningNanos(orderedFileTreeWalker.getPlanningNanos());
+                }
+            } else {
+                Files.walkFileTree(src, fileVisitor);
+            }
+        } finally {
+            if (dispatchingFileVisitor != null) {
+                try {
+                    dispatchingFileVisitor.awaitCompletion();
+                } finally {
+                    fileCopyExecutor.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param throttle if not null, slows the copy down to its bytes limit
+     */
+    private static CopyChunkListener newCopyChunkListener(CopyProgress copyProgress, CopyControl copyControl, CopyThrottle throttle, CopyMetrics metrics) {
+        return new CopyChunkListener() {
+            @Override
+            public void onChunkCopied(long chunkBytes) throws IOException {
+                copyProgress.registerCopiedBytes(chunkBytes);
+                if (throttle != null) {
+                    registerThrottledNanos(throttle.acquireBytes(chunkBytes, copyControl), copyProgress, metrics);
+                }
+                copyControl.checkpoint();
+            }
+
+            @Override
+            public void onChunkUnchanged(long chunkBytes) throws IOException {
+                copyProgress.registerSavedBytes(chunkBytes);
+                copyControl.checkpoint();
+            }
+
+            @Override
+            public void onChunkSparse(long chunkBytes) throws IOException {
+                copyProgress.registerSparseBytes(chunkBytes);
+                copyControl.checkpoint();
+            }
+        };
+    }
+
+    private static void registerThrottledNanos(long throttledNanos, CopyProgress copyProgress, CopyMetrics metrics) {
+        if (throttledNanos > 0) {
+            copyProgress.registerThrottledNanos(throttledNanos);
+            metrics.recordPhase(CopyPhase.THROTTLING, throttledNanos);
+        }
+    }
+
+    private static void notifyCopyStatusToListener(CopyStatusReport copyStatus, CopyListener copyListener, CopyMetrics metrics) {
         if (copyListener != null) {
+            long callbackStartNanos = System.nanoTime();
             copyListener.onCopyComplete(copyStatus);
+            metrics.recordPhase(CopyPhase.LISTENER_CALLBACK, System.nanoTime() - callbackStartNanos);
         }
     }
 
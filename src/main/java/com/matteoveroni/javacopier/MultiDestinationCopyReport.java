@@ -0,0 +1,108 @@
+package com.matteoveroni.javacopier;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.matteoveroni.javacopier.gsonconverters.PathToGsonConverter;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of a copy of one src into several dests, see {@link JavaCopier#copyToMany}:
+ * holds the {@link CopyStatusReport} of every dest, each with its own history, and the bytes read from src, which
+ * are read only once whatever the number of dests.
+ *
+ * @author Matteo Veroni
+ */
+public class MultiDestinationCopyReport {
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeHierarchyAdapter(Path.class, new PathToGsonConverter())
+            .create();
+
+    private final Path src;
+    private final Map<Path, CopyStatusReport> reports;
+    private final long readBytes;
+    private final CopyStatusReport.FinalResult result;
+
+    /**
+     * @param reports the report of every dest, in the order the dests were given
+     */
+    public MultiDestinationCopyReport(Path src, Map<Path, CopyStatusReport> reports, long readBytes) {
+        this.src = src;
+        this.reports = Collections.unmodifiableMap(reports);
+        this.readBytes = readBytes;
+        this.result = calculateFinalResult();
+    }
+
+    public Path getSrc() {
+        return src;
+    }
+
+    public Map<Path, CopyStatusReport> getReports() {
+        return reports;
+    }
+
+    /**
+     * @return the report of dest, null if dest was not a dest of this copy
+     */
+    public CopyStatusReport getReport(Path dest) {
+        return reports.get(dest.toAbsolutePath());
+    }
+
+    /**
+     * @return the bytes read from src
+     */
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    /**
+     * @return the bytes written to all the dests
+     */
+    public long getWrittenBytes() {
+        long writtenBytes = 0;
+        for (CopyStatusReport report : reports.values()) {
+            writtenBytes += report.getCopiedBytes();
+        }
+        return writtenBytes;
+    }
+
+    /**
+     * @return cancelled if the copy was cancelled, successful or failed if every dest was, partial otherwise
+     */
+    public CopyStatusReport.FinalResult getFinalResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return GSON.toJson(this);
+    }
+
+    private CopyStatusReport.FinalResult calculateFinalResult() {
+        int successful = 0;
+        int failed = 0;
+        for (CopyStatusReport report : reports.values()) {
+            switch (report.getFinalResult()) {
+                case COPY_CANCELLED:
+                    return CopyStatusReport.FinalResult.COPY_CANCELLED;
+                case COPY_SUCCESSFUL:
+                    successful++;
+                    break;
+                case COPY_FAILED:
+                    failed++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (successful == reports.size()) {
+            return CopyStatusReport.FinalResult.COPY_SUCCESSFUL;
+        } else if (failed == reports.size()) {
+            return CopyStatusReport.FinalResult.COPY_FAILED;
+        }
+        return CopyStatusReport.FinalResult.COPY_PARTIAL;
+    }
+}
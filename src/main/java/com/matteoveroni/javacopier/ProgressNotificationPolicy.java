@@ -0,0 +1,71 @@
+package com.matteoveroni.javacopier;
+
+/**
+ * Decides how often {@link CopyListener#onCopyProgress(CopyStatusReport)} is invoked during a copy. Events that are
+ * not notified are only counted, so no report is created for them. The final
+ * {@link CopyListener#onCopyComplete(CopyStatusReport)} is always notified.
+ *
+ * @author Matteo Veroni
+ */
+public class ProgressNotificationPolicy {
+
+    private final int everyEvents;
+    private final long everyMillis;
+    private final double percentageStep;
+
+    private ProgressNotificationPolicy(int everyEvents, long everyMillis, double percentageStep) {
+        this.everyEvents = everyEvents;
+        this.everyMillis = everyMillis;
+        this.percentageStep = percentageStep;
+    }
+
+    /**
+     * Notifies every copied file, dir, failure and chunk. This is the default policy.
+     */
+    public static ProgressNotificationPolicy everyEvent() {
+        return everyEvents(1);
+    }
+
+    /**
+     * Notifies one progress event out of events.
+     */
+    public static ProgressNotificationPolicy everyEvents(int events) {
+        if (events < 1) {
+            throw new IllegalArgumentException("events must be greater than 0");
+        }
+        return new ProgressNotificationPolicy(events, 0, 0);
+    }
+
+    /**
+     * Notifies a progress event if at least millis have passed since the last notification.
+     */
+    public static ProgressNotificationPolicy everyMillis(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("millis must be greater than 0");
+        }
+        return new ProgressNotificationPolicy(0, millis, 0);
+    }
+
+    /**
+     * Notifies a progress event if the files or the bytes copy percentage advanced by at least percentageStep
+     * since the last notification.
+     */
+    public static ProgressNotificationPolicy onPercentageChange(double percentageStep) {
+        if (percentageStep <= 0) {
+            throw new IllegalArgumentException("percentageStep must be greater than 0");
+        }
+        return new ProgressNotificationPolicy(0, 0, percentageStep);
+    }
+
+    public int getEveryEvents() {
+        return everyEvents;
+    }
+
+    public long getEveryMillis() {
+        return everyMillis;
+    }
+
+    public double getPercentageStep() {
+        return percentageStep;
+    }
+}
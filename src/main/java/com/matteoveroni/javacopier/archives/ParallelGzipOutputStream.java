@@ -0,0 +1,243 @@
+package com.matteoveroni.javacopier.archives;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses on several cores, the way pigz does: the data is cut into blocks, every block
+ * is compressed by a pool of threads into an independent gzip member and the members are written in order by a
+ * dedicated writer thread. A sequence of members is a valid gzip file (RFC 1952) readable by any gzip tool.
+ * <p>
+ * The caller, the compression threads and the writer thread work as a pipeline. A bounded number of blocks is in
+ * flight at the same time, so a slow dest makes the caller wait instead of filling the memory. Not thread safe:
+ * a single thread must write into it. {@link #flush()} does not cut the current block.
+ *
+ * @author Matteo Veroni
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final static Logger LOG = LoggerFactory.getLogger(ParallelGzipOutputStream.class);
+
+    private static final String THREAD_NAME_PREFIX = "javacopier-compression-";
+    private static final Future<byte[]> END_OF_BLOCKS = CompletableFuture.completedFuture(null);
+
+    private final OutputStream out;
+    private final int compressionLevel;
+    private final ExecutorService compressionExecutor;
+    private final BlockingQueue<Future<byte[]>> compressedBlocks;
+    private final Thread writerThread;
+    private volatile IOException writeException;
+    private byte[] block;
+    private int blockLength = 0;
+    private int submittedBlocks = 0;
+    private boolean closed = false;
+
+    /**
+     * @param compressionLevel 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public ParallelGzipOutputStream(OutputStream out, int compressionThreads, int compressionLevel, int blockSize) {
+        if (compressionThreads < 1) {
+            throw new IllegalArgumentException("compressionThreads must be greater than 0");
+        }
+        if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("compressionLevel must be between 0 and 9");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be greater than 0");
+        }
+        this.out = out;
+        this.compressionLevel = compressionLevel;
+        this.block = new byte[blockSize];
+        this.compressionExecutor = Executors.newFixedThreadPool(compressionThreads, newDaemonThreadFactory());
+        this.compressedBlocks = new ArrayBlockingQueue<>(compressionThreads * 2);
+        this.writerThread = new Thread(this::writeCompressedBlocks, THREAD_NAME_PREFIX + "writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[blockLength++] = (byte) b;
+        if (blockLength == block.length) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            int copied = Math.min(length, block.length - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, copied);
+            blockLength += copied;
+            offset += copied;
+            length -= copied;
+            if (blockLength == block.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * @return true if the compressed stream could not be written to the underlying one, so it is incomplete
+     */
+    public boolean hasWriteFailed() {
+        return writeException != null;
+    }
+
+    /**
+     * Compresses the last block and waits until all of them are written, then closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        boolean completed = false;
+        try {
+            if (blockLength > 0 || submittedBlocks == 0) {
+                submitBlock();
+            }
+            putInQueue(END_OF_BLOCKS);
+            writerThread.join();
+            completed = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while completing the compression");
+        } finally {
+            closed = true;
+            if (!completed) {
+                writerThread.interrupt();
+            }
+            compressionExecutor.shutdownNow();
+            out.close();
+        }
+        if (writeException != null) {
+            throw writeException;
+        }
+    }
+
+    /**
+     * Discards the blocks not written yet and closes the underlying stream, which is left incomplete, for when the
+     * data being compressed is not wanted anymore.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writerThread.interrupt();
+        compressionExecutor.shutdownNow();
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException ex) {
+            LOG.warn("Unable to close the aborted compressed stream, ex: " + ex.toString());
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        block = new byte[data.length];
+        blockLength = 0;
+        submittedBlocks++;
+        putInQueue(compressionExecutor.submit(() -> compress(data, length)));
+    }
+
+    private void putInQueue(Future<byte[]> compressedBlock) throws IOException {
+        if (writeException != null) {
+            throw writeException;
+        }
+        try {
+            compressedBlocks.put(compressedBlock);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the compression");
+        }
+    }
+
+    private byte[] compress(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+        try (GZIPOutputStream gzip = new LeveledGZIPOutputStream(member, compressionLevel)) {
+            gzip.write(data, 0, length);
+        }
+        return member.toByteArray();
+    }
+
+    /**
+     * Writes the members in the order of their blocks. After a failure the remaining blocks are drained without
+     * being written, so the caller never waits for room in the queue and finds the exception at its next write.
+     */
+    private void writeCompressedBlocks() {
+        try {
+            Future<byte[]> compressedBlock;
+            while ((compressedBlock = compressedBlocks.take()) != END_OF_BLOCKS) {
+                if (writeException != null) {
+                    continue;
+                }
+                try {
+                    out.write(compressedBlock.get());
+                } catch (IOException ex) {
+                    writeException = ex;
+                } catch (ExecutionException ex) {
+                    writeException = (ex.getCause() instanceof IOException) ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                }
+                if (writeException != null) {
+                    LOG.error("Unable to write the compressed stream, ex: " + writeException.toString());
+                }
+            }
+        } catch (InterruptedException ex) {
+            writeException = new InterruptedIOException("compressed stream writer interrupted");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (writeException != null) {
+            throw writeException;
+        }
+    }
+
+    private static ThreadFactory newDaemonThreadFactory() {
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        LeveledGZIPOutputStream(OutputStream out, int compressionLevel) throws IOException {
+            super(out);
+            def.setLevel(compressionLevel);
+        }
+    }
+}
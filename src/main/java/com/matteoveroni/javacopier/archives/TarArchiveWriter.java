@@ -0,0 +1,184 @@
+package com.matteoveroni.javacopier.archives;
+
+import com.matteoveroni.javacopier.copystrategies.CopyChunkListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Streams entries into a tar archive in GNU format: names and link targets longer than 100 bytes are written as
+ * GNU long name entries and sizes too big for the octal field are written in base-256. Not thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class TarArchiveWriter implements Closeable {
+
+    public static final int DEFAULT_FILE_MODE = 0644;
+    public static final int DEFAULT_DIR_MODE = 0755;
+
+    private static final int RECORD_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final int BUFFER_SIZE = 128 * 1024;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final String GNU_LONG_LINK_NAME = "././@LongLink";
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_SYMBOLIC_LINK = '2';
+    private static final byte TYPE_DIRECTORY = '5';
+    private static final byte TYPE_GNU_LONG_NAME = 'L';
+    private static final byte TYPE_GNU_LONG_LINK_NAME = 'K';
+    private static final byte[] GNU_MAGIC = "ustar  \0".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    public TarArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param name path of the directory inside the archive, '/' separated
+     */
+    public void putDirectory(String name, int mode, long lastModifiedMillis) throws IOException {
+        writeHeader(name.endsWith("/") ? name : name + "/", null, TYPE_DIRECTORY, 0, mode, lastModifiedMillis);
+    }
+
+    public void putSymbolicLink(String name, String target, long lastModifiedMillis) throws IOException {
+        writeHeader(name, target, TYPE_SYMBOLIC_LINK, 0, 0777, lastModifiedMillis);
+    }
+
+    /**
+     * Streams size bytes of the file into the archive. If the file turns out to be shorter the entry is filled with
+     * zeros, to keep the archive readable, and the error is thrown once the entry is complete.
+     *
+     * @param copyChunkListener notified of every chunk written, it can abort the archive by throwing
+     */
+    public void putFile(String name, Path file, long size, int mode, long lastModifiedMillis, CopyChunkListener copyChunkListener) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            writeHeader(name, null, TYPE_FILE, size, mode, lastModifiedMillis);
+            long remaining = size;
+            IOException readException = null;
+            while (remaining > 0) {
+                int read;
+                try {
+                    read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                } catch (IOException ex) {
+                    readException = ex;
+                    break;
+                }
+                if (read == -1) {
+                    readException = new IOException("file " + file + " shrank while being archived");
+                    break;
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+                copyChunkListener.onChunkCopied(read);
+            }
+            writeZeros(remaining);
+            writePadding(size);
+            if (readException != null) {
+                throw readException;
+            }
+        }
+    }
+
+    /**
+     * Writes the two empty records that end the archive and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write(new byte[RECORD_SIZE * 2]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeHeader(String name, String linkName, byte type, long size, int mode, long lastModifiedMillis) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > NAME_LENGTH) {
+            writeGnuLongName(TYPE_GNU_LONG_NAME, nameBytes);
+        }
+        byte[] linkNameBytes = (linkName == null) ? new byte[0] : linkName.getBytes(StandardCharsets.UTF_8);
+        if (linkNameBytes.length > NAME_LENGTH) {
+            writeGnuLongName(TYPE_GNU_LONG_LINK_NAME, linkNameBytes);
+        }
+        out.write(newHeader(nameBytes, linkNameBytes, type, size, mode, lastModifiedMillis / 1000));
+    }
+
+    private void writeGnuLongName(byte type, byte[] nameBytes) throws IOException {
+        byte[] data = Arrays.copyOf(nameBytes, nameBytes.length + 1);
+        out.write(newHeader(GNU_LONG_LINK_NAME.getBytes(StandardCharsets.US_ASCII), new byte[0], type, data.length, 0, 0));
+        out.write(data);
+        writePadding(data.length);
+    }
+
+    private byte[] newHeader(byte[] nameBytes, byte[] linkNameBytes, byte type, long size, int mode, long lastModifiedSeconds) {
+        byte[] header = new byte[RECORD_SIZE];
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, NAME_LENGTH));
+        writeOctal(header, 100, 8, mode);
+        writeOctal(header, 108, 8, 0);
+        writeOctal(header, 116, 8, 0);
+        writeSize(header, size);
+        writeOctal(header, 136, 12, Math.max(0, lastModifiedSeconds));
+        header[156] = type;
+        System.arraycopy(linkNameBytes, 0, header, 157, Math.min(linkNameBytes.length, NAME_LENGTH));
+        System.arraycopy(GNU_MAGIC, 0, header, 257, GNU_MAGIC.length);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        writeOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private void writeSize(byte[] header, long size) {
+        if (size <= MAX_OCTAL_SIZE) {
+            writeOctal(header, 124, 12, size);
+            return;
+        }
+        header[124] = (byte) 0x80;
+        for (int i = 135; i > 124; i--) {
+            header[i] = (byte) size;
+            size >>>= 8;
+        }
+    }
+
+    /**
+     * Writes value as zero padded octal digits followed by a NUL, in a field of the given length.
+     */
+    private void writeOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        for (int i = 0; i < digits; i++) {
+            int octalIndex = octal.length() - digits + i;
+            header[offset + i] = (byte) (octalIndex < 0 ? '0' : octal.charAt(octalIndex));
+        }
+        header[offset + digits] = 0;
+    }
+
+    private void writePadding(long entrySize) throws IOException {
+        int lastRecordBytes = (int) (entrySize % RECORD_SIZE);
+        if (lastRecordBytes > 0) {
+            out.write(new byte[RECORD_SIZE - lastRecordBytes]);
+        }
+    }
+
+    private void writeZeros(long count) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        Arrays.fill(buffer, (byte) 0);
+        while (count > 0) {
+            int zeros = (int) Math.min(buffer.length, count);
+            out.write(buffer, 0, zeros);
+            count -= zeros;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.matteoveroni.javacopier.checksums;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashes of files, used to tell whether two files have the same content.
+ *
+ * @author Matteo Veroni
+ */
+public class FileChecksums {
+
+    public static final String ALGORITHM = "SHA-256";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private FileChecksums() {
+        //  PRIVATE CONSTRUCTOR
+    }
+
+    public static byte[] checksum(Path file) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * Reads the file through its channel into the given buffer, which is reused for every read. A large direct
+     * buffer lets big files be read with few system calls and no copy into the heap.
+     */
+    public static byte[] checksum(Path file, ByteBuffer buffer) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return messageDigest.digest();
+    }
+
+    public static String checksumInHex(Path file) throws IOException {
+        return toHex(checksum(file));
+    }
+
+    public static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ALGORITHM + " is required to be supported by every JVM", ex);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
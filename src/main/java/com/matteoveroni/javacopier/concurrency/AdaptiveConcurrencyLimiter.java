@@ -0,0 +1,157 @@
+package com.matteoveroni.javacopier.concurrency;
+
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConcurrencyLimiter} that finds the number of files to copy at the same time by measuring the copies, with
+ * an additive increase, multiplicative decrease (AIMD) loop.
+ * <p>
+ * The copies are measured over windows of time. At the end of a window its throughput and latency are compared
+ * with the previous ones: while neither of them gets worse the limit grows, doubling until the first congestion
+ * (slow start) and by one afterwards, and as soon as the latency grows well over the best one seen, i.e. the
+ * copies are queueing in the device, or more concurrency made the throughput drop, the limit is cut by a quarter.
+ * Every file costs at least {@link #MIN_FILE_COST_BYTES}, so the copies of small files are measured by the number
+ * of files per second rather than by their few bytes.
+ * <p>
+ * The limit always stays within minLimit and maxLimit, and every change is recorded with
+ * {@link CopyMetrics#recordConcurrency(int)}. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class AdaptiveConcurrencyLimiter implements ConcurrencyLimiter {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 250;
+    public static final long MIN_FILE_COST_BYTES = 64 * 1024;
+
+    private final static Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final int MIN_WINDOW_FILES = 8;
+    private static final double DECREASE_FACTOR = 0.75;
+    private static final double THROUGHPUT_DROP_TOLERANCE = 0.1;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    /**
+     * The best latency seen slowly gets worse, so a device that has become slower for good is not taken for
+     * congested forever.
+     */
+    private static final double MIN_LATENCY_DRIFT = 1.02;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final CopyMetrics metrics;
+    private int limit;
+    private int inFlight = 0;
+    private boolean slowStart = true;
+    private boolean lastAdjustmentIncreased = false;
+    private double previousThroughput = 0;
+    private double minLatency = Double.MAX_VALUE;
+
+    private long windowStartNanos = System.nanoTime();
+    private long windowCostBytes = 0;
+    private long windowLatencyNanos = 0;
+    private int windowFiles = 0;
+    private int windowMaxInFlight = 0;
+
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, CopyMetrics metrics) {
+        this(minLimit, maxLimit, DEFAULT_WINDOW_MILLIS, metrics);
+    }
+
+    /**
+     * @param windowMillis duration of the windows the copies are measured over, the limit changes at most once per
+     *                     window
+     */
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, long windowMillis, CopyMetrics metrics) {
+        if (minLimit < 1) {
+            throw new IllegalArgumentException("minLimit must be greater than 0");
+        }
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException("maxLimit cannot be lower than minLimit");
+        }
+        if (windowMillis < 1) {
+            throw new IllegalArgumentException("windowMillis must be greater than 0");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.metrics = metrics;
+        this.limit = minLimit;
+        metrics.recordConcurrency(limit);
+    }
+
+    @Override
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) {
+            wait();
+        }
+        inFlight++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+    }
+
+    @Override
+    public synchronized void release(long fileSize, long nanos) {
+        inFlight--;
+        long costBytes = Math.max(fileSize, MIN_FILE_COST_BYTES);
+        windowCostBytes += costBytes;
+        windowLatencyNanos += nanos;
+        windowFiles++;
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= windowNanos && windowFiles >= Math.min(limit, MIN_WINDOW_FILES)) {
+            adjustLimit(now);
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void awaitIdle() {
+        boolean interrupted = false;
+        while (inFlight > 0) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    private void adjustLimit(long now) {
+        double throughput = windowCostBytes / ((double) (now - windowStartNanos) / TimeUnit.SECONDS.toNanos(1));
+        double latency = (double) windowLatencyNanos / windowCostBytes;
+        minLatency = Math.min(latency, minLatency * MIN_LATENCY_DRIFT);
+        boolean throughputDropped = lastAdjustmentIncreased && throughput < previousThroughput * (1 - THROUGHPUT_DROP_TOLERANCE);
+        boolean congested = throughputDropped || latency > minLatency * LATENCY_TOLERANCE;
+
+        int newLimit = limit;
+        if (congested) {
+            slowStart = false;
+            newLimit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+        } else if (windowMaxInFlight >= limit) {
+            newLimit = Math.min(maxLimit, slowStart ? limit * 2 : limit + 1);
+        }
+        lastAdjustmentIncreased = newLimit > limit;
+        previousThroughput = throughput;
+        windowStartNanos = now;
+        windowCostBytes = 0;
+        windowLatencyNanos = 0;
+        windowFiles = 0;
+        windowMaxInFlight = inFlight;
+
+        if (newLimit != limit) {
+            LOG.debug("Concurrency limit changed from " + limit + " to " + newLimit + ", throughput: "
+                    + String.format("%.2f", throughput / (1024 * 1024)) + " MB/s, congested: " + congested);
+            limit = newLimit;
+            metrics.recordConcurrency(limit);
+        }
+    }
+}
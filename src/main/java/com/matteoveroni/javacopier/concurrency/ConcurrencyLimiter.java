@@ -0,0 +1,31 @@
+package com.matteoveroni.javacopier.concurrency;
+
+/**
+ * Bounds the number of files copied at the same time. Every copy acquires a permit before starting and releases it
+ * when done, reporting how it went, so an implementation can adapt the bound to what it measures. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public interface ConcurrencyLimiter {
+
+    /**
+     * Waits until one more file can be copied.
+     */
+    void acquire() throws InterruptedException;
+
+    /**
+     * @param fileSize size of the file whose copy is done
+     * @param nanos    time spent copying it
+     */
+    void release(long fileSize, long nanos);
+
+    /**
+     * Waits until no file is being copied.
+     */
+    void awaitIdle();
+
+    /**
+     * @return the number of files that can be copied at the same time now
+     */
+    int getLimit();
+}
@@ -0,0 +1,43 @@
+package com.matteoveroni.javacopier.concurrency;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link ConcurrencyLimiter} with a bound that never changes.
+ *
+ * @author Matteo Veroni
+ */
+public class FixedConcurrencyLimiter implements ConcurrencyLimiter {
+
+    private final int limit;
+    private final Semaphore permits;
+
+    public FixedConcurrencyLimiter(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be greater than 0");
+        }
+        this.limit = limit;
+        this.permits = new Semaphore(limit);
+    }
+
+    @Override
+    public void acquire() throws InterruptedException {
+        permits.acquire();
+    }
+
+    @Override
+    public void release(long fileSize, long nanos) {
+        permits.release();
+    }
+
+    @Override
+    public void awaitIdle() {
+        permits.acquireUninterruptibly(limit);
+        permits.release(limit);
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+}
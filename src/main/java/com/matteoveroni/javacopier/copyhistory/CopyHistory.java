@@ -1,68 +1,254 @@
 package com.matteoveroni.javacopier.copyhistory;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.matteoveroni.javacopier.gsonconverters.PathToGsonConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Thread safe: events can be registered concurrently by the parallel copy. The lists returned by the getters are
+ * unmodifiable snapshots of the history, see {@link #snapshot()}.
+ * <p>
+ * How much of the history is kept depends on its {@link Retention}. The counters are always exact, while the
+ * events and the lists of copied, failed and skipped files are only filled for the events retained in memory.
+ *
  * @author Matteo Veroni
  */
-public class CopyHistory {
+public class CopyHistory implements Closeable {
+
+    private final static Logger LOG = LoggerFactory.getLogger(CopyHistory.class);
+
+    private static final Gson SPILL_GSON = new GsonBuilder()
+            .registerTypeHierarchyAdapter(Path.class, new PathToGsonConverter())
+            .create();
 
+    public enum Retention {
+        /**
+         * Every event is kept in memory.
+         */
+        FULL,
+        /**
+         * Only failed events are kept in memory, successful ones are just counted.
+         */
+        FAILURES_ONLY,
+        /**
+         * No event is kept, only the counters.
+         */
+        COUNTERS_ONLY,
+        /**
+         * Every event is appended as a json line to the spill file, nothing is kept in memory.
+         */
+        SPILL_TO_DISK
+    }
+
+    private final Retention retention;
+    private final Path spillFile;
+    private transient BufferedWriter spillWriter;
     private final List<CopyHistoryEvent> history = new ArrayList<>();
     private final List<Path> copiedFiles = new ArrayList<>();
     private final List<Path> copiesFailed = new ArrayList<>();
+    private final List<Path> skippedFiles = new ArrayList<>();
+    private final List<Path> verificationFailedFiles = new ArrayList<>();
     private String lastCopyHistoryEventMessage;
     private int analyzedFiles = 0;
+    private int numberOfCopiedFiles = 0;
+    private int numberOfCopiesFailed = 0;
+    private int numberOfSkippedFiles = 0;
 
-    public final void registerCopyFailEventInHistory(Path srcPath, Path destPath, IOException ex) {
+    public CopyHistory() {
+        this(Retention.FULL, null);
+    }
+
+    /**
+     * @param spillFile file the events are appended to, required only by {@link Retention#SPILL_TO_DISK}
+     */
+    public CopyHistory(Retention retention, Path spillFile) {
+        if (retention == Retention.SPILL_TO_DISK && spillFile == null) {
+            throw new IllegalArgumentException("spillFile cannot be null with " + Retention.SPILL_TO_DISK + " retention");
+        }
+        this.retention = retention;
+        this.spillFile = (retention == Retention.SPILL_TO_DISK) ? spillFile : null;
+    }
+
+    public final synchronized void registerCopyFailEventInHistory(Path srcPath, Path destPath, IOException ex) {
         lastCopyHistoryEventMessage = "src: " + srcPath + " copy to dest: " + destPath + " failed, ex: " + ex.toString();
-        registerHistoryEvent(
-                new CopyHistoryEvent.Builder(srcPath, destPath)
-                        .setFailed(ex)
-                        .build()
-        );
+        numberOfCopiesFailed++;
+        analyzedFiles++;
+        if (retention != Retention.COUNTERS_ONLY) {
+            retainHistoryEvent(
+                    new CopyHistoryEvent.Builder(srcPath, destPath)
+                            .setFailed(ex)
+                            .build()
+            );
+        }
     }
 
-    public final void registerCopySuccessEventInHistory(Path srcPath, Path destPath) {
+    public final synchronized void registerCopySuccessEventInHistory(Path srcPath, Path destPath) {
         lastCopyHistoryEventMessage = "src: " + srcPath + " copy to dest: " + destPath + " successful";
-        registerHistoryEvent(
-                new CopyHistoryEvent.Builder(srcPath, destPath)
-                        .setSuccessful()
-                        .build()
-        );
+        numberOfCopiedFiles++;
+        analyzedFiles++;
+        if (retention == Retention.FULL || retention == Retention.SPILL_TO_DISK) {
+            retainHistoryEvent(
+                    new CopyHistoryEvent.Builder(srcPath, destPath)
+                            .setSuccessful()
+                            .build()
+            );
+        }
+    }
+
+    /**
+     * Registers a file that was not copied because dest was already up to date with src.
+     */
+    public final synchronized void registerCopySkippedEventInHistory(Path srcPath, Path destPath) {
+        lastCopyHistoryEventMessage = "src: " + srcPath + " copy to dest: " + destPath + " skipped, dest is up to date";
+        numberOfSkippedFiles++;
+        analyzedFiles++;
+        if (retention == Retention.FULL || retention == Retention.SPILL_TO_DISK) {
+            retainHistoryEvent(
+                    new CopyHistoryEvent.Builder(srcPath, destPath)
+                            .setSkipped()
+                            .build()
+            );
+        }
+    }
+
+    /**
+     * Turns a copy already registered as successful into a failure, because the content of dest turned out to be
+     * different from src when verified. The counters and the lists of copied and failed files are corrected, while
+     * the history is append only: the successful event of the copy is kept, followed by its failed event.
+     */
+    public final synchronized void registerVerificationFailEventInHistory(Path srcPath, Path destPath, IOException ex) {
+        lastCopyHistoryEventMessage = "src: " + srcPath + " copy to dest: " + destPath + " failed verification, ex: " + ex.toString();
+        numberOfCopiedFiles--;
+        numberOfCopiesFailed++;
+        if (retention != Retention.COUNTERS_ONLY) {
+            verificationFailedFiles.add(srcPath);
+            retainHistoryEvent(
+                    new CopyHistoryEvent.Builder(srcPath, destPath)
+                            .setFailed(ex)
+                            .build()
+            );
+        }
     }
 
+    /**
+     * @return the state of the history at this moment, taken in constant time and unaffected by the events
+     * registered afterwards
+     */
+    public synchronized CopyHistorySnapshot snapshot() {
+        return new CopyHistorySnapshot(this, lastCopyHistoryEventMessage, analyzedFiles, numberOfCopiedFiles, numberOfCopiesFailed, numberOfSkippedFiles,
+                history, copiedFiles, copiesFailed, skippedFiles, verificationFailedFiles);
+    }
+
+    /**
+     * @return the events kept in memory in the order they were registered, see {@link Retention}. Append only: a
+     * file failing verification has its successful event followed by a failed one, see
+     * {@link #registerVerificationFailEventInHistory(Path, Path, IOException)}
+     */
     public List<CopyHistoryEvent> getHistory() {
-        return history;
+        return snapshot().getHistory();
     }
 
-    public String getLastCopyHistoryEventMessage() {
+    public synchronized String getLastCopyHistoryEventMessage() {
         return lastCopyHistoryEventMessage;
     }
 
+    /**
+     * @return the copied files kept in memory, see {@link Retention}
+     */
     public List<Path> getCopiedFiles() {
-        return copiedFiles;
+        return snapshot().getCopiedFiles();
     }
 
+    /**
+     * @return the failed files kept in memory, see {@link Retention}
+     */
     public List<Path> getCopiesFailed() {
-        return copiesFailed;
+        return snapshot().getCopiesFailed();
+    }
+
+    /**
+     * @return the skipped files kept in memory, see {@link Retention}
+     */
+    public List<Path> getSkippedFiles() {
+        return snapshot().getSkippedFiles();
+    }
+
+    public synchronized int getNumberOfCopiedFiles() {
+        return numberOfCopiedFiles;
     }
 
-    public int getAnalyzedFiles() {
+    public synchronized int getNumberOfCopiesFailed() {
+        return numberOfCopiesFailed;
+    }
+
+    public synchronized int getNumberOfSkippedFiles() {
+        return numberOfSkippedFiles;
+    }
+
+    public synchronized int getAnalyzedFiles() {
         return analyzedFiles;
     }
 
-    private final void registerHistoryEvent(CopyHistoryEvent event) {
+    public Retention getRetention() {
+        return retention;
+    }
+
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Flushes and closes the spill file, if any.
+     */
+    @Override
+    public synchronized void close() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException ex) {
+                LOG.error("Unable to close history spill file: " + spillFile + ", ex: " + ex.toString());
+            }
+            spillWriter = null;
+        }
+    }
+
+    private void retainHistoryEvent(CopyHistoryEvent event) {
+        if (retention == Retention.SPILL_TO_DISK) {
+            spillHistoryEvent(event);
+            return;
+        }
         history.add(event);
         Path src = event.getSrc();
-        if (event.isCopySuccessful()) {
+        if (event.isCopySkipped()) {
+            skippedFiles.add(src);
+        } else if (event.isCopySuccessful()) {
             copiedFiles.add(src);
         } else {
             copiesFailed.add(src);
         }
-        analyzedFiles++;
     }
 
+    private void spillHistoryEvent(CopyHistoryEvent event) {
+        try {
+            if (spillWriter == null) {
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spillWriter.write(SPILL_GSON.toJson(event));
+            spillWriter.newLine();
+        } catch (IOException ex) {
+            LOG.error("Unable to write event " + event.getId() + " to history spill file: " + spillFile + ", ex: " + ex.toString());
+        }
+    }
 }
@@ -1,27 +1,29 @@
 package com.matteoveroni.javacopier.copyhistory;
 
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Matteo Veroni
  */
 public class CopyHistoryEvent {
 
-    private static Long CURRENT_ID = 1L;
+    private static final AtomicLong CURRENT_ID = new AtomicLong(1L);
 
     private final Long id;
     private final Path src;
     private final Path dest;
     private final boolean isCopySuccessful;
+    private final boolean isCopySkipped;
     private final String exceptionMessage;
 
-    private CopyHistoryEvent(Path src, Path dest, boolean isCopySuccessful, String exceptionMessage) {
-        this.id = CURRENT_ID;
+    private CopyHistoryEvent(Path src, Path dest, boolean isCopySuccessful, boolean isCopySkipped, String exceptionMessage) {
+        this.id = CURRENT_ID.getAndIncrement();
         this.src = src;
         this.dest = dest;
         this.isCopySuccessful = isCopySuccessful;
+        this.isCopySkipped = isCopySkipped;
         this.exceptionMessage = exceptionMessage;
-        CURRENT_ID++;
     }
 
     public static class Builder {
@@ -29,6 +31,7 @@ public class CopyHistoryEvent {
         private final Path src;
         private final Path dest;
         private boolean successful;
+        private boolean skipped;
         private String exceptionMessage = "";
 
         public Builder(Path src, Path dest) {
@@ -38,17 +41,28 @@ public class CopyHistoryEvent {
 
         public Builder setSuccessful() {
             this.successful = true;
+            this.skipped = false;
+            return this;
+        }
+
+        /**
+         * The copy was not needed because dest was already up to date with src.
+         */
+        public Builder setSkipped() {
+            this.successful = true;
+            this.skipped = true;
             return this;
         }
 
         public Builder setFailed(Exception ex) {
             this.successful = false;
+            this.skipped = false;
             this.exceptionMessage = ex.toString();
             return this;
         }
 
         public CopyHistoryEvent build() {
-            return new CopyHistoryEvent(src, dest, successful, exceptionMessage);
+            return new CopyHistoryEvent(src, dest, successful, skipped, exceptionMessage);
         }
     }
 
@@ -68,6 +82,10 @@ public class CopyHistoryEvent {
         return isCopySuccessful;
     }
 
+    public boolean isCopySkipped() {
+        return isCopySkipped;
+    }
+
     public String getExceptionMessage() {
         return exceptionMessage;
     }
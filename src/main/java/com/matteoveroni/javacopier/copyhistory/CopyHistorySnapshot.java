@@ -0,0 +1,183 @@
+package com.matteoveroni.javacopier.copyhistory;
+
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * The state of a {@link CopyHistory} at the moment {@link CopyHistory#snapshot()} was called, unaffected by the
+ * events registered afterwards. Taken in constant time: the lists of the history only grow, so the snapshot reads
+ * the part of them that existed when it was taken, holding the lock of the history for every read. Thread safe and
+ * unmodifiable.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyHistorySnapshot {
+
+    private final CopyHistory.Retention retention;
+    private final Path spillFile;
+    private final String lastCopyHistoryEventMessage;
+    private final int analyzedFiles;
+    private final int numberOfCopiedFiles;
+    private final int numberOfCopiesFailed;
+    private final int numberOfSkippedFiles;
+    private final List<CopyHistoryEvent> history;
+    private final List<Path> copiedFiles;
+    private final List<Path> copiesFailed;
+    private final List<Path> skippedFiles;
+
+    /**
+     * To be called holding the lock of the history, which the lists are appended to.
+     *
+     * @param verificationFailedFiles the copied files that later failed verification, left out of copiedFiles
+     */
+    CopyHistorySnapshot(CopyHistory copyHistory, String lastCopyHistoryEventMessage, int analyzedFiles, int numberOfCopiedFiles, int numberOfCopiesFailed, int numberOfSkippedFiles,
+                        List<CopyHistoryEvent> history, List<Path> copiedFiles, List<Path> copiesFailed, List<Path> skippedFiles, List<Path> verificationFailedFiles) {
+        this.retention = copyHistory.getRetention();
+        this.spillFile = copyHistory.getSpillFile();
+        this.lastCopyHistoryEventMessage = lastCopyHistoryEventMessage;
+        this.analyzedFiles = analyzedFiles;
+        this.numberOfCopiedFiles = numberOfCopiedFiles;
+        this.numberOfCopiesFailed = numberOfCopiesFailed;
+        this.numberOfSkippedFiles = numberOfSkippedFiles;
+        this.history = new Prefix<>(copyHistory, history);
+        this.copiedFiles = verificationFailedFiles.isEmpty()
+                ? new Prefix<>(copyHistory, copiedFiles)
+                : new PrefixWithout(copyHistory, copiedFiles, verificationFailedFiles);
+        this.copiesFailed = new Prefix<>(copyHistory, copiesFailed);
+        this.skippedFiles = new Prefix<>(copyHistory, skippedFiles);
+    }
+
+    /**
+     * @return the events kept in memory in the order they were registered, see {@link CopyHistory#getHistory()}
+     */
+    public List<CopyHistoryEvent> getHistory() {
+        return history;
+    }
+
+    public String getLastCopyHistoryEventMessage() {
+        return lastCopyHistoryEventMessage;
+    }
+
+    /**
+     * @return the copied files kept in memory, see {@link CopyHistory.Retention}
+     */
+    public List<Path> getCopiedFiles() {
+        return copiedFiles;
+    }
+
+    /**
+     * @return the failed files kept in memory, see {@link CopyHistory.Retention}
+     */
+    public List<Path> getCopiesFailed() {
+        return copiesFailed;
+    }
+
+    /**
+     * @return the skipped files kept in memory, see {@link CopyHistory.Retention}
+     */
+    public List<Path> getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    public int getNumberOfCopiedFiles() {
+        return numberOfCopiedFiles;
+    }
+
+    public int getNumberOfCopiesFailed() {
+        return numberOfCopiesFailed;
+    }
+
+    public int getNumberOfSkippedFiles() {
+        return numberOfSkippedFiles;
+    }
+
+    public int getAnalyzedFiles() {
+        return analyzedFiles;
+    }
+
+    public CopyHistory.Retention getRetention() {
+        return retention;
+    }
+
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * The first elements of a list that is only appended to, as many as it had when created.
+     */
+    private static class Prefix<E> extends AbstractList<E> implements RandomAccess {
+
+        private final Object lock;
+        private final List<E> list;
+        private final int size;
+
+        Prefix(Object lock, List<E> list) {
+            this.lock = lock;
+            this.list = list;
+            this.size = list.size();
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            synchronized (lock) {
+                return list.get(index);
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The prefix of the copied files without the ones that failed verification, computed once on first read.
+     */
+    private static class PrefixWithout extends AbstractList<Path> implements RandomAccess {
+
+        private final Object lock;
+        private final Prefix<Path> files;
+        private final Prefix<Path> excludedFiles;
+        private List<Path> remainingFiles;
+
+        PrefixWithout(Object lock, List<Path> files, List<Path> excludedFiles) {
+            this.lock = lock;
+            this.files = new Prefix<>(lock, files);
+            this.excludedFiles = new Prefix<>(lock, excludedFiles);
+        }
+
+        @Override
+        public Path get(int index) {
+            return getRemainingFiles().get(index);
+        }
+
+        @Override
+        public int size() {
+            return getRemainingFiles().size();
+        }
+
+        private List<Path> getRemainingFiles() {
+            synchronized (lock) {
+                if (remainingFiles == null) {
+                    Set<Path> excluded = new HashSet<>(excludedFiles);
+                    remainingFiles = new ArrayList<>();
+                    for (Path file : files) {
+                        if (!excluded.remove(file)) {
+                            remainingFiles.add(file);
+                        }
+                    }
+                }
+                return remainingFiles;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Base class for the strategies that move the bytes themselves through {@link FileChannel}s. It takes care of the
+ * {@link CopyOption}s like {@link Files#copy(Path, Path, CopyOption...)} does: an existing dest is only replaced with
+ * {@link StandardCopyOption#REPLACE_EXISTING}, attributes are copied with {@link StandardCopyOption#COPY_ATTRIBUTES}
+ * and symbolic links are copied as links with {@link LinkOption#NOFOLLOW_LINKS}. A partially written dest is deleted
+ * if the transfer fails.
+ *
+ * @author Matteo Veroni
+ */
+public abstract class AbstractChannelCopyStrategy implements FileCopyStrategy {
+
+    private final static Logger LOG = LoggerFactory.getLogger(AbstractChannelCopyStrategy.class);
+
+    @Override
+    public void copyFile(Path srcFile, Path destFile, CopyOption[] copyOptions, CopyChunkListener copyChunkListener) throws IOException {
+        boolean followLinks = !containsCopyOption(copyOptions, LinkOption.NOFOLLOW_LINKS);
+        BasicFileAttributes srcAttrs = followLinks
+                ? Files.readAttributes(srcFile, BasicFileAttributes.class)
+                : Files.readAttributes(srcFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!srcAttrs.isRegularFile()) {
+            LOG.debug("srcFile " + srcFile + " is not a regular file, copied with Files.copy");
+            Files.copy(srcFile, destFile, copyOptions);
+            copyChunkListener.onChunkCopied(0);
+            return;
+        }
+
+        if (Files.exists(destFile, LinkOption.NOFOLLOW_LINKS)) {
+            if (!containsCopyOption(copyOptions, StandardCopyOption.REPLACE_EXISTING)) {
+                throw new FileAlreadyExistsException(destFile.toString());
+            }
+            Files.delete(destFile);
+        }
+
+        boolean transferCompleted = false;
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destFile, destOpenOptions())) {
+            transfer(srcChannel, destChannel, srcAttrs.size(), copyChunkListener);
+            transferCompleted = true;
+        } finally {
+            if (!transferCompleted) {
+                Files.deleteIfExists(destFile);
+            }
+        }
+
+        copyAttributes(srcFile, destFile, srcAttrs, copyOptions);
+    }
+
+    /**
+     * Writes the srcSize bytes of srcChannel into the empty destChannel, notifying copyChunkListener after every chunk.
+     */
+    protected abstract void transfer(FileChannel srcChannel, FileChannel destChannel, long srcSize, CopyChunkListener copyChunkListener) throws IOException;
+
+    /**
+     * @return the options dest is opened with, it must always be created as a new file
+     */
+    protected OpenOption[] destOpenOptions() {
+        return new OpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE};
+    }
+
+    /**
+     * Copies the permissions of srcFile to destFile and, with {@link StandardCopyOption#COPY_ATTRIBUTES}, its times.
+     */
+    protected void copyAttributes(Path srcFile, Path destFile, BasicFileAttributes srcAttrs, CopyOption[] copyOptions) throws IOException {
+        FileAttributesCopier.copyAttributes(srcFile, destFile, srcAttrs, copyOptions);
+    }
+
+    protected boolean containsCopyOption(CopyOption[] copyOptions, CopyOption searchedCopyOption) {
+        return FileAttributesCopier.containsCopyOption(copyOptions, searchedCopyOption);
+    }
+}
@@ -0,0 +1,49 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import java.io.IOException;
+
+/**
+ * Notified by a {@link FileCopyStrategy} every time a chunk of a file has been copied.
+ *
+ * @author Matteo Veroni
+ */
+public interface CopyChunkListener {
+
+    CopyChunkListener NONE = chunkBytes -> {
+    };
+
+    long UNKNOWN_FILE_SIZE = -1;
+
+    /**
+     * @return the size of the file being copied when the caller already knows it, so that a strategy does not need
+     * to read it again, otherwise {@link #UNKNOWN_FILE_SIZE}
+     */
+    default long getFileSize() {
+        return UNKNOWN_FILE_SIZE;
+    }
+
+    /**
+     * @param chunkBytes number of bytes written by the last chunk
+     * @throws IOException to abort the copy of the file
+     */
+    void onChunkCopied(long chunkBytes) throws IOException;
+
+    /**
+     * Called instead of {@link #onChunkCopied(long)} for a chunk that dest already had and was not written again.
+     *
+     * @param chunkBytes number of bytes of the chunk left untouched
+     * @throws IOException to abort the copy of the file
+     */
+    default void onChunkUnchanged(long chunkBytes) throws IOException {
+    }
+
+    /**
+     * Called instead of {@link #onChunkCopied(long)} for a chunk of zeros that was not written, leaving a hole in a
+     * sparse dest.
+     *
+     * @param chunkBytes number of bytes of the chunk left as a hole
+     * @throws IOException to abort the copy of the file
+     */
+    default void onChunkSparse(long chunkBytes) throws IOException {
+    }
+}
@@ -0,0 +1,150 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Updates an existing dest file in place, rewriting only the fixed size blocks that differ from src, so a big file
+ * with few changes costs the reads of both files but only the writes of the changed blocks. The blocks left
+ * untouched are reported with {@link CopyChunkListener#onChunkUnchanged(long)}.
+ * <p>
+ * The delta transfer is used only for regular files of at least the threshold size whose dest already exists and
+ * may be replaced ({@link StandardCopyOption#REPLACE_EXISTING}), every other file is copied like
+ * {@link FileChannelCopyStrategy} does, as is a dest with other hard links. Since dest is updated in place, a delta
+ * transfer that fails leaves dest partially updated instead of deleting it.
+ *
+ * @author Matteo Veroni
+ */
+public class DeltaCopyStrategy extends FileChannelCopyStrategy {
+
+    private final static Logger LOG = LoggerFactory.getLogger(DeltaCopyStrategy.class);
+
+    public static final long DEFAULT_THRESHOLD = 64 * 1024 * 1024;
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final long threshold;
+    private final int blockSize;
+
+    public DeltaCopyStrategy() {
+        this(DEFAULT_THRESHOLD, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param threshold minimum size in bytes of the files updated with a delta transfer
+     * @param blockSize size in bytes of the blocks compared and rewritten
+     */
+    public DeltaCopyStrategy(long threshold, int blockSize) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold cannot be negative");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be greater than 0");
+        }
+        this.threshold = threshold;
+        this.blockSize = blockSize;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void copyFile(Path srcFile, Path destFile, CopyOption[] copyOptions, CopyChunkListener copyChunkListener) throws IOException {
+        BasicFileAttributes srcAttrs = containsCopyOption(copyOptions, LinkOption.NOFOLLOW_LINKS)
+                ? Files.readAttributes(srcFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                : Files.readAttributes(srcFile, BasicFileAttributes.class);
+        if (!isDeltaTransferPossible(srcFile, srcAttrs, destFile, copyOptions)) {
+            super.copyFile(srcFile, destFile, copyOptions, copyChunkListener);
+            return;
+        }
+
+        LOG.debug("srcFile " + srcFile + " copied with delta transfer into existing destFile: " + destFile);
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ);
+             FileChannel destChannel = FileChannel.open(destFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            transferDelta(srcChannel, destChannel, srcAttrs.size(), copyChunkListener);
+        }
+        copyAttributes(srcFile, destFile, srcAttrs, copyOptions);
+    }
+
+    private boolean isDeltaTransferPossible(Path srcFile, BasicFileAttributes srcAttrs, Path destFile, CopyOption[] copyOptions) throws IOException {
+        return srcAttrs.isRegularFile()
+                && srcAttrs.size() >= threshold
+                && containsCopyOption(copyOptions, StandardCopyOption.REPLACE_EXISTING)
+                && Files.isRegularFile(destFile, LinkOption.NOFOLLOW_LINKS)
+                && !Files.isSameFile(srcFile, destFile)
+                && !isHardLinked(destFile);
+    }
+
+    /**
+     * Updating in place a file with more than one hard link would change the content of all the others too.
+     */
+    private boolean isHardLinked(Path file) throws IOException {
+        try {
+            return ((Number) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS)).intValue() > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private void transferDelta(FileChannel srcChannel, FileChannel destChannel, long srcSize, CopyChunkListener copyChunkListener) throws IOException {
+        long destSize = destChannel.size();
+        ByteBuffer srcBlock = ByteBuffer.allocate(blockSize);
+        ByteBuffer destBlock = ByteBuffer.allocate(blockSize);
+        long position = 0;
+        while (position < srcSize) {
+            int length = readBlock(srcChannel, srcBlock, position, (int) Math.min(blockSize, srcSize - position));
+            if (length == 0) {
+                // the src file has been truncated while copying
+                srcSize = position;
+                break;
+            }
+            boolean blockUnchanged = position + length <= destSize
+                    && readBlock(destChannel, destBlock, position, length) == length
+                    && srcBlock.equals(destBlock);
+            if (blockUnchanged) {
+                copyChunkListener.onChunkUnchanged(length);
+            } else {
+                while (srcBlock.hasRemaining()) {
+                    destChannel.write(srcBlock, position + srcBlock.position());
+                }
+                copyChunkListener.onChunkCopied(length);
+            }
+            position += length;
+        }
+        if (destSize > srcSize) {
+            destChannel.truncate(srcSize);
+        }
+    }
+
+    /**
+     * Reads up to length bytes at position into block, which is left ready to be read.
+     *
+     * @return the number of bytes read, less than length only at the end of the file
+     */
+    private int readBlock(FileChannel channel, ByteBuffer block, long position, int length) throws IOException {
+        block.clear();
+        block.limit(length);
+        while (block.hasRemaining()) {
+            if (channel.read(block, position + block.position()) < 0) {
+                break;
+            }
+        }
+        block.flip();
+        return block.remaining();
+    }
+}
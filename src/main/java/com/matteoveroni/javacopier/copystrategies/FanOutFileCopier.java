@@ -0,0 +1,273 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies a src file into several dest files reading it only once: every chunk read is written to all the dests at
+ * the same time, one writing thread per dest, while the next chunk is read into a second buffer.
+ * <p>
+ * The dests are independent: a dest that cannot be written is abandoned and deleted, the others go on. The
+ * {@link CopyOption}s are honoured like {@link AbstractChannelCopyStrategy} does. A single thread must use it, close
+ * it to stop the writing threads.
+ *
+ * @author Matteo Veroni
+ */
+public class FanOutFileCopier implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final static Logger LOG = LoggerFactory.getLogger(FanOutFileCopier.class);
+
+    private static final String THREAD_NAME_PREFIX = "javacopier-fan-out-";
+
+    private final ExecutorService writersExecutor;
+    private final ByteBuffer[] buffers;
+    private long readBytes = 0;
+
+    /**
+     * @param destinations number of dests every file is copied to, which is the number of writing threads
+     */
+    public FanOutFileCopier(int destinations, int bufferSize) {
+        if (destinations < 1) {
+            throw new IllegalArgumentException("destinations must be greater than 0");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be greater than 0");
+        }
+        this.writersExecutor = Executors.newFixedThreadPool(destinations, newDaemonThreadFactory());
+        this.buffers = new ByteBuffer[]{ByteBuffer.allocateDirect(bufferSize), ByteBuffer.allocateDirect(bufferSize)};
+    }
+
+    /**
+     * @param copyChunkListeners one per dest, notified on the calling thread of every chunk written to its dest. An
+     *                           exception thrown by any of them aborts the copy to all the dests
+     * @return one element per dest: the exception that made its copy fail, or null if it succeeded
+     * @throws IOException if src cannot be read or a listener aborted the copy
+     */
+    public IOException[] copyFile(Path srcFile, Path[] destFiles, CopyOption[] copyOptions, CopyChunkListener[] copyChunkListeners) throws IOException {
+        IOException[] failures = new IOException[destFiles.length];
+        boolean followLinks = !FileAttributesCopier.containsCopyOption(copyOptions, LinkOption.NOFOLLOW_LINKS);
+        BasicFileAttributes srcAttrs = followLinks
+                ? Files.readAttributes(srcFile, BasicFileAttributes.class)
+                : Files.readAttributes(srcFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!srcAttrs.isRegularFile()) {
+            LOG.debug("srcFile " + srcFile + " is not a regular file, copied with Files.copy to every dest");
+            copyToEveryDestWithFilesCopy(srcFile, destFiles, copyOptions, copyChunkListeners, failures);
+            return failures;
+        }
+
+        FileChannel[] destChannels = new FileChannel[destFiles.length];
+        boolean transferCompleted = false;
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ)) {
+            for (int i = 0; i < destFiles.length; i++) {
+                try {
+                    destChannels[i] = openDestChannel(destFiles[i], copyOptions);
+                } catch (IOException ex) {
+                    failures[i] = ex;
+                }
+            }
+            transfer(srcChannel, srcAttrs.size(), destChannels, failures, copyChunkListeners);
+            transferCompleted = true;
+        } finally {
+            closeDestChannels(destFiles, destChannels, failures, transferCompleted);
+        }
+
+        for (int i = 0; i < destFiles.length; i++) {
+            if (failures[i] == null) {
+                try {
+                    FileAttributesCopier.copyAttributes(srcFile, destFiles[i], srcAttrs, copyOptions);
+                } catch (IOException ex) {
+                    failures[i] = ex;
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the bytes read from the src files so far, each of them written to every dest
+     */
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    @Override
+    public void close() {
+        writersExecutor.shutdownNow();
+    }
+
+    private void copyToEveryDestWithFilesCopy(Path srcFile, Path[] destFiles, CopyOption[] copyOptions, CopyChunkListener[] copyChunkListeners, IOException[] failures) throws IOException {
+        for (int i = 0; i < destFiles.length; i++) {
+            try {
+                Files.copy(srcFile, destFiles[i], copyOptions);
+            } catch (IOException ex) {
+                failures[i] = ex;
+                continue;
+            }
+            copyChunkListeners[i].onChunkCopied(0);
+        }
+    }
+
+    /**
+     * Reads the next chunk while the previous one is being written, then waits for its writes before handing out
+     * the buffer again.
+     */
+    private void transfer(FileChannel srcChannel, long srcSize, FileChannel[] destChannels, IOException[] failures, CopyChunkListener[] copyChunkListeners) throws IOException {
+        Future<?>[] pendingWrites = null;
+        int pendingBytes = 0;
+        long position = 0;
+        int currentBuffer = 0;
+        while (position < srcSize && hasDestsToWrite(destChannels, failures)) {
+            ByteBuffer buffer = buffers[currentBuffer];
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), srcSize - position));
+            int read = readFully(srcChannel, buffer, position);
+            awaitWrites(pendingWrites, pendingBytes, failures, copyChunkListeners);
+            pendingWrites = null;
+            if (read <= 0) {
+                // the src file has been truncated while copying
+                break;
+            }
+            readBytes += read;
+            buffer.flip();
+            pendingWrites = submitWrites(buffer, position, destChannels, failures);
+            pendingBytes = read;
+            position += read;
+            currentBuffer ^= 1;
+        }
+        awaitWrites(pendingWrites, pendingBytes, failures, copyChunkListeners);
+    }
+
+    private Future<?>[] submitWrites(ByteBuffer buffer, long position, FileChannel[] destChannels, IOException[] failures) {
+        Future<?>[] writes = new Future<?>[destChannels.length];
+        for (int i = 0; i < destChannels.length; i++) {
+            if (destChannels[i] != null && failures[i] == null) {
+                FileChannel destChannel = destChannels[i];
+                ByteBuffer destBuffer = buffer.duplicate();
+                writes[i] = writersExecutor.submit(() -> {
+                    long writePosition = position;
+                    while (destBuffer.hasRemaining()) {
+                        writePosition += destChannel.write(destBuffer, writePosition);
+                    }
+                    return null;
+                });
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * Waits for all the writes of a chunk, then notifies the listeners of the dests written successfully.
+     */
+    private void awaitWrites(Future<?>[] writes, int chunkBytes, IOException[] failures, CopyChunkListener[] copyChunkListeners) throws IOException {
+        if (writes == null) {
+            return;
+        }
+        for (int i = 0; i < writes.length; i++) {
+            if (writes[i] == null) {
+                continue;
+            }
+            try {
+                writes[i].get();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                failures[i] = (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+                LOG.warn("Unable to write dest " + i + ", it is abandoned, ex: " + failures[i].toString());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while writing the dests");
+            }
+        }
+        for (int i = 0; i < writes.length; i++) {
+            if (writes[i] != null && failures[i] == null) {
+                copyChunkListeners[i].onChunkCopied(chunkBytes);
+            }
+        }
+    }
+
+    private FileChannel openDestChannel(Path destFile, CopyOption[] copyOptions) throws IOException {
+        if (Files.exists(destFile, LinkOption.NOFOLLOW_LINKS)) {
+            if (!FileAttributesCopier.containsCopyOption(copyOptions, StandardCopyOption.REPLACE_EXISTING)) {
+                throw new FileAlreadyExistsException(destFile.toString());
+            }
+            Files.delete(destFile);
+        }
+        return FileChannel.open(destFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Closes the dest channels, deleting the dests that were created but not completely written.
+     */
+    private void closeDestChannels(Path[] destFiles, FileChannel[] destChannels, IOException[] failures, boolean transferCompleted) {
+        for (int i = 0; i < destChannels.length; i++) {
+            if (destChannels[i] == null) {
+                continue;
+            }
+            try {
+                destChannels[i].close();
+            } catch (IOException ex) {
+                if (failures[i] == null) {
+                    failures[i] = ex;
+                }
+            }
+            if (!transferCompleted || failures[i] != null) {
+                try {
+                    Files.deleteIfExists(destFiles[i]);
+                } catch (IOException ex) {
+                    LOG.warn("Unable to delete partially written dest: " + destFiles[i] + ", ex: " + ex.toString());
+                }
+            }
+        }
+    }
+
+    private boolean hasDestsToWrite(FileChannel[] destChannels, IOException[] failures) {
+        for (int i = 0; i < destChannels.length; i++) {
+            if (destChannels[i] != null && failures[i] == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int readFully(FileChannel srcChannel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int bytes = srcChannel.read(buffer, position + read);
+            if (bytes < 0) {
+                break;
+            }
+            read += bytes;
+        }
+        return read;
+    }
+
+    private static ThreadFactory newDaemonThreadFactory() {
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * Copies the attributes of a file whose content has been written by JavaCopier itself, following the
+ * {@link CopyOption}s like {@link Files#copy(Path, Path, CopyOption...)} does.
+ *
+ * @author Matteo Veroni
+ */
+public class FileAttributesCopier {
+
+    private FileAttributesCopier() {
+        //  PRIVATE CONSTRUCTOR
+    }
+
+    /**
+     * Copies the permissions of srcFile to destFile and, with {@link StandardCopyOption#COPY_ATTRIBUTES}, its times.
+     */
+    public static void copyAttributes(Path srcFile, Path destFile, BasicFileAttributes srcAttrs, CopyOption[] copyOptions) throws IOException {
+        copyPermissions(srcFile, destFile);
+        if (containsCopyOption(copyOptions, StandardCopyOption.COPY_ATTRIBUTES)) {
+            Files.getFileAttributeView(destFile, BasicFileAttributeView.class)
+                    .setTimes(srcAttrs.lastModifiedTime(), srcAttrs.lastAccessTime(), srcAttrs.creationTime());
+        }
+    }
+
+    public static boolean containsCopyOption(CopyOption[] copyOptions, CopyOption searchedCopyOption) {
+        for (CopyOption copyOption : copyOptions) {
+            if (copyOption.equals(searchedCopyOption)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void copyPermissions(Path srcFile, Path destFile) throws IOException {
+        PosixFileAttributeView srcPosixView = Files.getFileAttributeView(srcFile, PosixFileAttributeView.class);
+        PosixFileAttributeView destPosixView = Files.getFileAttributeView(destFile, PosixFileAttributeView.class);
+        if (srcPosixView != null && destPosixView != null) {
+            destPosixView.setPermissions(srcPosixView.readAttributes().permissions());
+        }
+    }
+}
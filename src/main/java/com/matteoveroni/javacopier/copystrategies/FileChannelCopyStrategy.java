@@ -0,0 +1,47 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies a file with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets
+ * the operating system move the bytes without copying them into the JVM (sendfile/copy_file_range on Linux).
+ * The file is transferred in chunks of a configurable size and progress is reported after each of them.
+ *
+ * @author Matteo Veroni
+ */
+public class FileChannelCopyStrategy extends AbstractChannelCopyStrategy {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final long chunkSize;
+
+    public FileChannelCopyStrategy() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public FileChannelCopyStrategy(long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    protected void transfer(FileChannel srcChannel, FileChannel destChannel, long srcSize, CopyChunkListener copyChunkListener) throws IOException {
+        long position = 0;
+        while (position < srcSize) {
+            long transferred = srcChannel.transferTo(position, Math.min(chunkSize, srcSize - position), destChannel);
+            if (transferred <= 0) {
+                // the src file has been truncated while copying
+                break;
+            }
+            position += transferred;
+            copyChunkListener.onChunkCopied(transferred);
+        }
+    }
+}
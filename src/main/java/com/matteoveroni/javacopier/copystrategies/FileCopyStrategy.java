@@ -0,0 +1,16 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+
+/**
+ * Copies the content of a single file. Implementations must honour the same {@link CopyOption}s of
+ * {@link java.nio.file.Files#copy(Path, Path, CopyOption...)} and must be thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public interface FileCopyStrategy {
+
+    void copyFile(Path srcFile, Path destFile, CopyOption[] copyOptions, CopyChunkListener copyChunkListener) throws IOException;
+}
@@ -0,0 +1,26 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Default strategy: delegates to {@link Files#copy(Path, Path, CopyOption...)}, so the whole file is a single chunk.
+ *
+ * @author Matteo Veroni
+ */
+public class FilesCopyStrategy implements FileCopyStrategy {
+
+    @Override
+    public void copyFile(Path srcFile, Path destFile, CopyOption[] copyOptions, CopyChunkListener copyChunkListener) throws IOException {
+        Files.copy(srcFile, destFile, copyOptions);
+        long fileSize = copyChunkListener.getFileSize();
+        if (fileSize == CopyChunkListener.UNKNOWN_FILE_SIZE) {
+            fileSize = Files.readAttributes(destFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size();
+        }
+        copyChunkListener.onChunkCopied(fileSize);
+    }
+}
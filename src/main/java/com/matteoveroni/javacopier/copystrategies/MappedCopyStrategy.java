@@ -0,0 +1,66 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copies a file through memory mapped windows: a region of src and the same region of dest are mapped and the bytes
+ * are moved between the two mappings, so the copy goes from page cache to page cache without read and write calls.
+ * Progress is reported after each window.
+ * <p>
+ * Meant for files from a few MB to a few hundred MB on local disks: smaller files do not repay the cost of mapping
+ * and bigger ones are better served by {@link FileChannelCopyStrategy}, see {@link SizeBasedCopyStrategy}. The JDK
+ * has no public way to unmap a buffer, the windows are released when garbage collected, so their size bounds the
+ * address space held by every file in flight.
+ *
+ * @author Matteo Veroni
+ */
+public class MappedCopyStrategy extends AbstractChannelCopyStrategy {
+
+    public static final long DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final long windowSize;
+
+    public MappedCopyStrategy() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedCopyStrategy(long windowSize) {
+        if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("windowSize must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.windowSize = windowSize;
+    }
+
+    public long getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * A read-write mapping of dest requires its channel to be readable too.
+     */
+    @Override
+    protected OpenOption[] destOpenOptions() {
+        return new OpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE};
+    }
+
+    @Override
+    protected void transfer(FileChannel srcChannel, FileChannel destChannel, long srcSize, CopyChunkListener copyChunkListener) throws IOException {
+        long position = 0;
+        while (position < srcSize) {
+            // mapping a region beyond the end of src would fail on access, so a truncated src ends the copy
+            long windowLength = Math.min(windowSize, Math.min(srcSize, srcChannel.size()) - position);
+            if (windowLength <= 0) {
+                break;
+            }
+            MappedByteBuffer srcWindow = srcChannel.map(FileChannel.MapMode.READ_ONLY, position, windowLength);
+            MappedByteBuffer destWindow = destChannel.map(FileChannel.MapMode.READ_WRITE, position, windowLength);
+            destWindow.put(srcWindow);
+            position += windowLength;
+            copyChunkListener.onChunkCopied(windowLength);
+        }
+    }
+}
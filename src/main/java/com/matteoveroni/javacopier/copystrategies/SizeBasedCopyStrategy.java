@@ -0,0 +1,96 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Picks the strategy of every file by its size: each strategy copies the files from its minimum size up to the
+ * minimum size of the next one. Use the {@link Builder} to create it, or {@link #newDefault()} for thresholds
+ * that suit local disks. Files that are not regular files are copied by the strategy of the smallest files.
+ *
+ * @author Matteo Veroni
+ */
+public class SizeBasedCopyStrategy implements FileCopyStrategy {
+
+    public static final long DEFAULT_MAPPED_THRESHOLD = 4 * 1024 * 1024;
+    public static final long DEFAULT_FILE_CHANNEL_THRESHOLD = 512 * 1024 * 1024;
+
+    private final static Logger LOG = LoggerFactory.getLogger(SizeBasedCopyStrategy.class);
+
+    private final TreeMap<Long, FileCopyStrategy> strategiesByMinSize;
+
+    private SizeBasedCopyStrategy(Builder builder) {
+        this.strategiesByMinSize = new TreeMap<>(builder.strategiesByMinSize);
+    }
+
+    /**
+     * @return {@link FilesCopyStrategy} for the files smaller than {@link #DEFAULT_MAPPED_THRESHOLD},
+     * {@link MappedCopyStrategy} up to {@link #DEFAULT_FILE_CHANNEL_THRESHOLD} and {@link FileChannelCopyStrategy}
+     * for the bigger ones
+     */
+    public static SizeBasedCopyStrategy newDefault() {
+        return new Builder(new FilesCopyStrategy())
+                .setStrategyFromSize(DEFAULT_MAPPED_THRESHOLD, new MappedCopyStrategy())
+                .setStrategyFromSize(DEFAULT_FILE_CHANNEL_THRESHOLD, new FileChannelCopyStrategy())
+                .build();
+    }
+
+    public static class Builder {
+
+        private final Map<Long, FileCopyStrategy> strategiesByMinSize = new TreeMap<>();
+
+        /**
+         * @param smallFilesStrategy strategy of the files smaller than every threshold
+         */
+        public Builder(FileCopyStrategy smallFilesStrategy) {
+            if (smallFilesStrategy == null) {
+                throw new IllegalArgumentException("smallFilesStrategy cannot be null");
+            }
+            strategiesByMinSize.put(0L, smallFilesStrategy);
+        }
+
+        /**
+         * Copies the files of at least minSize bytes with strategy, unless a bigger threshold applies to them.
+         */
+        public Builder setStrategyFromSize(long minSize, FileCopyStrategy strategy) {
+            if (minSize < 1) {
+                throw new IllegalArgumentException("minSize must be greater than 0");
+            }
+            if (strategy == null) {
+                throw new IllegalArgumentException("strategy cannot be null");
+            }
+            strategiesByMinSize.put(minSize, strategy);
+            return this;
+        }
+
+        public SizeBasedCopyStrategy build() {
+            return new SizeBasedCopyStrategy(this);
+        }
+    }
+
+    @Override
+    public void copyFile(Path srcFile, Path destFile, CopyOption[] copyOptions, CopyChunkListener copyChunkListener) throws IOException {
+        BasicFileAttributes srcAttrs = Files.readAttributes(srcFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        FileCopyStrategy strategy = srcAttrs.isRegularFile()
+                ? getStrategyForSize(srcAttrs.size())
+                : strategiesByMinSize.firstEntry().getValue();
+        LOG.debug("srcFile " + srcFile + " of " + srcAttrs.size() + " bytes copied with " + strategy.getClass().getSimpleName());
+        strategy.copyFile(srcFile, destFile, copyOptions, copyChunkListener);
+    }
+
+    /**
+     * @return the strategy that copies the files of the given size
+     */
+    public FileCopyStrategy getStrategyForSize(long size) {
+        return strategiesByMinSize.floorEntry(Math.max(0, size)).getValue();
+    }
+}
@@ -0,0 +1,140 @@
+package com.matteoveroni.javacopier.copystrategies;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies a file keeping it sparse: src is read in chunks and every block made only of zeros is skipped instead of
+ * being written, so on file systems that support sparse files it becomes a hole in dest that costs neither writes
+ * nor space. The other blocks are written with positional writes, merged when contiguous. The blocks skipped are
+ * reported with {@link CopyChunkListener#onChunkSparse(long)}.
+ * <p>
+ * Holes are detected from the content, so src does not need to be sparse itself: any run of zero blocks is
+ * skipped. Dest gets its final length even when src ends with zeros.
+ *
+ * @author Matteo Veroni
+ */
+public class SparseCopyStrategy extends AbstractChannelCopyStrategy {
+
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024;
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final int blockSize;
+    private final int chunkSize;
+
+    public SparseCopyStrategy() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param blockSize size in bytes of the blocks checked for zeros, best if equal to the block size of the dest
+     *                  file system
+     * @param chunkSize size in bytes of the reads, rounded down to a multiple of blockSize
+     */
+    public SparseCopyStrategy(int blockSize, int chunkSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be greater than 0");
+        }
+        if (chunkSize < blockSize) {
+            throw new IllegalArgumentException("chunkSize cannot be smaller than blockSize");
+        }
+        this.blockSize = blockSize;
+        this.chunkSize = chunkSize - chunkSize % blockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    protected void transfer(FileChannel srcChannel, FileChannel destChannel, long srcSize, CopyChunkListener copyChunkListener) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+        long position = 0;
+        while (position < srcSize) {
+            chunk.clear();
+            chunk.limit((int) Math.min(chunkSize, srcSize - position));
+            int read = readFully(srcChannel, chunk, position);
+            if (read <= 0) {
+                // the src file has been truncated while copying
+                break;
+            }
+            long holeBytes = writeDataBlocks(chunk, read, destChannel, position);
+            position += read;
+            if (holeBytes > 0) {
+                copyChunkListener.onChunkSparse(holeBytes);
+            }
+            if (read - holeBytes > 0) {
+                copyChunkListener.onChunkCopied(read - holeBytes);
+            }
+        }
+        if (destChannel.size() < position) {
+            // src ends with a hole: writing its last byte gives dest the final length
+            destChannel.write(ByteBuffer.wrap(new byte[1]), position - 1);
+        }
+    }
+
+    /**
+     * @return the bytes of the zero blocks skipped
+     */
+    private long writeDataBlocks(ByteBuffer chunk, int length, FileChannel destChannel, long chunkPosition) throws IOException {
+        long holeBytes = 0;
+        int dataStart = -1;
+        for (int blockStart = 0; blockStart < length; blockStart += blockSize) {
+            int blockEnd = Math.min(blockStart + blockSize, length);
+            if (isZeroBlock(chunk, blockStart, blockEnd)) {
+                holeBytes += blockEnd - blockStart;
+                if (dataStart >= 0) {
+                    writeRange(chunk, dataStart, blockStart, destChannel, chunkPosition);
+                    dataStart = -1;
+                }
+            } else if (dataStart < 0) {
+                dataStart = blockStart;
+            }
+        }
+        if (dataStart >= 0) {
+            writeRange(chunk, dataStart, length, destChannel, chunkPosition);
+        }
+        return holeBytes;
+    }
+
+    private void writeRange(ByteBuffer chunk, int start, int end, FileChannel destChannel, long chunkPosition) throws IOException {
+        ByteBuffer range = chunk.duplicate();
+        range.limit(end).position(start);
+        long position = chunkPosition + start;
+        while (range.hasRemaining()) {
+            position += destChannel.write(range, position);
+        }
+    }
+
+    private boolean isZeroBlock(ByteBuffer chunk, int start, int end) {
+        int i = start;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            if (chunk.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (chunk.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readFully(FileChannel srcChannel, ByteBuffer chunk, long position) throws IOException {
+        int read = 0;
+        while (chunk.hasRemaining()) {
+            int bytes = srcChannel.read(chunk, position + read);
+            if (bytes < 0) {
+                break;
+            }
+            read += bytes;
+        }
+        return read;
+    }
+}
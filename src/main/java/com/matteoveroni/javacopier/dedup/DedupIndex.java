@@ -0,0 +1,89 @@
+package com.matteoveroni.javacopier.dedup;
+
+import com.matteoveroni.javacopier.checksums.FileChecksums;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the files already copied by a job, used to find the ones with the same content of a file to copy.
+ * <p>
+ * Files are grouped by size and hashed lazily: a file is hashed only when another one with its very size shows up,
+ * so a tree without duplicates costs a map lookup per file and no extra read. Thread safe, files of different sizes
+ * are compared concurrently.
+ *
+ * @author Matteo Veroni
+ */
+public class DedupIndex {
+
+    private final Map<Long, List<CopiedFile>> copiedFilesBySize = new ConcurrentHashMap<>();
+
+    /**
+     * @return the dest of an already copied file with the same content of srcFile, or null if there is none
+     * @throws IOException if srcFile cannot be read
+     */
+    public Path findDuplicate(Path srcFile, long size) throws IOException {
+        List<CopiedFile> sameSizeFiles = copiedFilesBySize.get(size);
+        if (sameSizeFiles == null) {
+            return null;
+        }
+        byte[] checksum = null;
+        for (CopiedFile copiedFile : snapshotOf(sameSizeFiles)) {
+            if (checksum == null) {
+                checksum = FileChecksums.checksum(srcFile);
+            }
+            byte[] copiedFileChecksum = copiedFile.getChecksum();
+            if (copiedFileChecksum != null && Arrays.equals(checksum, copiedFileChecksum)) {
+                return copiedFile.destFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a file whose copy is completed, so its dest can be linked by its duplicates.
+     */
+    public void register(long size, Path destFile) {
+        List<CopiedFile> sameSizeFiles = copiedFilesBySize.computeIfAbsent(size, key -> new ArrayList<>());
+        synchronized (sameSizeFiles) {
+            sameSizeFiles.add(new CopiedFile(destFile));
+        }
+    }
+
+    private List<CopiedFile> snapshotOf(List<CopiedFile> sameSizeFiles) {
+        synchronized (sameSizeFiles) {
+            return new ArrayList<>(sameSizeFiles);
+        }
+    }
+
+    private static class CopiedFile {
+
+        private final Path destFile;
+        private byte[] checksum;
+        private boolean checksumUnavailable = false;
+
+        CopiedFile(Path destFile) {
+            this.destFile = destFile;
+        }
+
+        /**
+         * @return the checksum of the copied content, computed the first time it is needed, or null if it cannot
+         * be read
+         */
+        synchronized byte[] getChecksum() {
+            if (checksum == null && !checksumUnavailable) {
+                try {
+                    checksum = FileChecksums.checksum(destFile);
+                } catch (IOException ex) {
+                    checksumUnavailable = true;
+                }
+            }
+            return checksum;
+        }
+    }
+}
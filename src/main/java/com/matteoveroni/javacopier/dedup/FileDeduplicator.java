@@ -0,0 +1,76 @@
+package com.matteoveroni.javacopier.dedup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Replaces the copy of a file with a hard link to the dest of an already copied file with the same content, found
+ * in its {@link DedupIndex}. Only regular files of at least a minimum size are considered, smaller ones are always
+ * copied. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class FileDeduplicator {
+
+    private final static Logger LOG = LoggerFactory.getLogger(FileDeduplicator.class);
+
+    private final DedupIndex dedupIndex = new DedupIndex();
+    private final long minSize;
+    private final boolean replaceExisting;
+
+    /**
+     * @param replaceExisting whether an existing destFile can be replaced by the link, otherwise linking it fails
+     */
+    public FileDeduplicator(long minSize, boolean replaceExisting) {
+        this.minSize = minSize;
+        this.replaceExisting = replaceExisting;
+    }
+
+    /**
+     * @return true if destFile has been created as a hard link to the dest of a file with the same content, false
+     * if srcFile has to be copied
+     * @throws FileAlreadyExistsException if destFile exists and cannot be replaced
+     */
+    public boolean linkToDuplicateIfAny(Path srcFile, Path destFile, BasicFileAttributes attrs) throws IOException {
+        if (!isDeduplicationCandidate(attrs)) {
+            return false;
+        }
+        Path duplicateDestFile = dedupIndex.findDuplicate(srcFile, attrs.size());
+        if (duplicateDestFile == null) {
+            return false;
+        }
+        if (Files.exists(destFile, LinkOption.NOFOLLOW_LINKS)) {
+            if (!replaceExisting) {
+                throw new FileAlreadyExistsException(destFile.toString());
+            }
+            Files.delete(destFile);
+        }
+        try {
+            Files.createLink(destFile, duplicateDestFile);
+        } catch (IOException | UnsupportedOperationException ex) {
+            LOG.warn("Unable to link destFile: " + destFile + " to its duplicate: " + duplicateDestFile + ", copying it. ex: " + ex.toString());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a file whose copy is completed, so its dest can be linked by its duplicates.
+     */
+    public void registerCopiedFile(Path destFile, BasicFileAttributes attrs) {
+        if (isDeduplicationCandidate(attrs)) {
+            dedupIndex.register(attrs.size(), destFile);
+        }
+    }
+
+    private boolean isDeduplicationCandidate(BasicFileAttributes attrs) {
+        return attrs.isRegularFile() && attrs.size() >= minSize;
+    }
+}
@@ -0,0 +1,55 @@
+package com.matteoveroni.javacopier.executors;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors that copy one file per task.
+ * <p>
+ * This is the implementation for the JVMs without virtual threads: the tasks run on a bounded pool of daemon
+ * platform threads. On Java 21+ the multi-release jar replaces it with the one in src/main/java21, which starts
+ * a virtual thread per file.
+ *
+ * @author Matteo Veroni
+ */
+public class FileCopyExecutors {
+
+    /**
+     * Upper bound of the platform threads per available processor, since each of them costs a native stack.
+     */
+    public static final int MAX_PLATFORM_THREADS_PER_PROCESSOR = 8;
+
+    private static final String THREAD_NAME_PREFIX = "javacopier-file-copy-";
+
+    private FileCopyExecutors() {
+        //  PRIVATE CONSTRUCTOR
+    }
+
+    /**
+     * @return true if the executors run every file on its own virtual thread
+     */
+    public static boolean isVirtualThreadPerFile() {
+        return false;
+    }
+
+    /**
+     * @param maxFilesInFlight number of files copied at the same time by the caller, used to size the pool
+     */
+    public static ExecutorService newFileCopyExecutor(int maxFilesInFlight) {
+        int poolSize = Math.max(1, Math.min(maxFilesInFlight, Runtime.getRuntime().availableProcessors() * MAX_PLATFORM_THREADS_PER_PROCESSOR));
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), newDaemonThreadFactory());
+    }
+
+    private static ThreadFactory newDaemonThreadFactory() {
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
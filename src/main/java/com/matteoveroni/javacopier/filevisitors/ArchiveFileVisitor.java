@@ -0,0 +1,268 @@
+package com.matteoveroni.javacopier.filevisitors;
+
+import com.matteoveroni.javacopier.CopyCancelledException;
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.CopyControl;
+import com.matteoveroni.javacopier.CopyListener;
+import com.matteoveroni.javacopier.CopyProgress;
+import com.matteoveroni.javacopier.CopyProgressNotifier;
+import com.matteoveroni.javacopier.archives.ParallelGzipOutputStream;
+import com.matteoveroni.javacopier.archives.TarArchiveWriter;
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.filters.CopyFilter;
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+import com.matteoveroni.javacopier.paths.RelativePaths;
+import com.matteoveroni.javacopier.throttling.CopyThrottle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+/**
+ * Streams the src dir tree into a tar.gz dest file, without temporary files. The walking thread reads the files
+ * and writes them in the tar stream, which is compressed by several threads and written to dest by another one,
+ * see {@link ParallelGzipOutputStream}. The entries are named after the src dir, as if archived from its parent.
+ * <p>
+ * The archive is a single sequential stream, so the walk must be sequential too. A cancelled job, or one that could
+ * not write dest, does not leave an archive that looks complete but misses files or ends with a truncated one: the
+ * archive is aborted and dest deleted.
+ *
+ * @author Matteo Veroni
+ */
+public class ArchiveFileVisitor implements FileVisitor<Path> {
+
+    private final static Logger LOG = LoggerFactory.getLogger(ArchiveFileVisitor.class);
+
+    private final Path rootSrc;
+    private final Path rootDest;
+    private final String rootEntryName;
+    private final ParallelGzipOutputStream gzipOutputStream;
+    private final TarArchiveWriter tarArchiveWriter;
+    private final CopyProgress copyProgress;
+    private final CopyHistory copyHistory;
+    private final CopyControl copyControl;
+    private final CopyMetrics metrics;
+    private final CopyFilter filter;
+    private final CopyThrottle throttle;
+    private final CopyProgressNotifier progressNotifier;
+
+    public ArchiveFileVisitor(Path rootSrc, Path destFile, CopyConfiguration configuration, CopyProgress copyProgress, CopyHistory copyHistory, CopyControl copyControl, CopyListener copyListener, CopyOption[] copyOptions) throws IOException {
+        this.rootSrc = rootSrc;
+        this.rootDest = destFile;
+        this.rootEntryName = (rootSrc.getFileName() == null) ? "" : rootSrc.getFileName().toString();
+        this.copyProgress = copyProgress;
+        this.copyHistory = copyHistory;
+        this.copyControl = copyControl;
+        this.metrics = configuration.getMetrics();
+        this.filter = configuration.getFilter();
+        this.throttle = configuration.getThrottle();
+        this.progressNotifier = new CopyProgressNotifier(rootSrc, destFile, configuration.getProgressNotificationPolicy(), copyProgress, copyHistory, copyListener, metrics, copyOptions);
+        this.gzipOutputStream = new ParallelGzipOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(destFile)),
+                configuration.getCompressionThreads(),
+                configuration.getCompressionLevel(),
+                ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+        this.tarArchiveWriter = new TarArchiveWriter(gzipOutputStream);
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path srcDir, BasicFileAttributes attrs) {
+        LOG.debug("+++ | pre visit srcDir: " + srcDir);
+        if (isCopyCancelled()) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsDirectory(rootSrc, srcDir)) {
+            LOG.debug("srcDir " + srcDir + " excluded by filter");
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+        try {
+            tarArchiveWriter.putDirectory(calculateEntryName(srcDir), readMode(srcDir, TarArchiveWriter.DEFAULT_DIR_MODE), attrs.lastModifiedTime().toMillis());
+            copyHistory.registerCopySuccessEventInHistory(srcDir, rootDest);
+            notifyCopyStatusProgressEventToListener();
+            return FileVisitResult.CONTINUE;
+        } catch (IOException ex) {
+            return registerFailure(srcDir, ex);
+        }
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path srcFile, BasicFileAttributes attrs) {
+        LOG.debug("*** | visit srcFile: " + srcFile);
+        if (isCopyCancelled()) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsFile(rootSrc, srcFile, attrs)) {
+            LOG.debug("srcFile " + srcFile + " excluded by filter");
+            return FileVisitResult.CONTINUE;
+        }
+        if (srcFile.equals(rootDest)) {
+            LOG.debug("srcFile " + srcFile + " skipped, it is the archive being written");
+            return FileVisitResult.CONTINUE;
+        }
+        long transferStartNanos = System.nanoTime();
+        try {
+            if (throttle != null) {
+                registerThrottledNanos(throttle.acquireFile(copyControl));
+            }
+            String entryName = calculateEntryName(srcFile);
+            long lastModifiedMillis = attrs.lastModifiedTime().toMillis();
+            if (attrs.isSymbolicLink()) {
+                tarArchiveWriter.putSymbolicLink(entryName, Files.readSymbolicLink(srcFile).toString(), lastModifiedMillis);
+            } else if (attrs.isRegularFile()) {
+                tarArchiveWriter.putFile(entryName, srcFile, attrs.size(), readMode(srcFile, TarArchiveWriter.DEFAULT_FILE_MODE), lastModifiedMillis, this::registerArchivedChunk);
+            } else {
+                throw new IOException("unsupported file type: " + srcFile);
+            }
+            metrics.recordFileCopied(attrs.size(), System.nanoTime() - transferStartNanos);
+            copyHistory.registerCopySuccessEventInHistory(srcFile, rootDest);
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Archiving of srcFile: " + srcFile + " cancelled");
+            return FileVisitResult.TERMINATE;
+        } catch (IOException ex) {
+            return registerFailure(srcFile, ex);
+        } finally {
+            metrics.recordPhase(CopyPhase.FILE_TRANSFER, System.nanoTime() - transferStartNanos);
+        }
+        notifyCopyStatusProgressEventToListener();
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path srcPath, IOException ex) {
+        LOG.debug("xxx | visit srcFile: " + srcPath + " failed");
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsUnreadableEntry(rootSrc, srcPath)) {
+            LOG.debug("srcPath " + srcPath + " excluded by filter");
+            return FileVisitResult.CONTINUE;
+        }
+        if (ex instanceof FileSystemLoopException) {
+            LOG.warn("Cycle detected: " + srcPath);
+        }
+        return registerFailure(srcPath, ex);
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path srcDir, IOException ex) {
+        LOG.debug("--- | post visit srcDir: " + srcDir);
+        if (ex != null) {
+            LOG.error("Post visit directory exception: " + ex.toString());
+            copyHistory.registerCopyFailEventInHistory(srcDir, rootDest, ex);
+            metrics.recordFileFailed();
+            notifyCopyStatusProgressEventToListener();
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * To be called once the walk is over: ends the archive, waiting until all of it is compressed and written to
+     * dest. If the job was cancelled the archive is aborted, see {@link #abortArchive()}. If dest could not be
+     * written the archive is aborted too and the whole src is registered as failed.
+     */
+    public void completeArchive() {
+        if (copyControl.isCancelled()) {
+            abortArchive();
+            return;
+        }
+        try {
+            tarArchiveWriter.close();
+            LOG.debug("Archive " + rootDest + " written");
+        } catch (IOException ex) {
+            LOG.error("Unable to complete archive: " + rootDest + ", ex: " + ex.toString());
+            copyHistory.registerCopyFailEventInHistory(rootSrc, rootDest, ex);
+            metrics.recordFileFailed();
+            deletePartialArchive();
+        }
+    }
+
+    /**
+     * To be called instead of {@link #completeArchive()} if the walk failed: stops the compression without ending
+     * the archive and deletes dest, which would be a well formed archive missing part of src otherwise.
+     */
+    public void abortArchive() {
+        gzipOutputStream.abort();
+        LOG.debug("Archive " + rootDest + " aborted");
+        deletePartialArchive();
+    }
+
+    private void deletePartialArchive() {
+        try {
+            Files.deleteIfExists(rootDest);
+        } catch (IOException ex) {
+            LOG.error("Unable to delete partial archive: " + rootDest + ", ex: " + ex.toString());
+        }
+    }
+
+    /**
+     * Failures reading src are recorded and the walk goes on, since the archive stays consistent. A failure writing
+     * dest leaves the archive unusable instead, so the walk stops.
+     */
+    private FileVisitResult registerFailure(Path srcPath, IOException ex) {
+        LOG.error("Unable to archive: " + srcPath + ", ex: " + ex.toString());
+        copyHistory.registerCopyFailEventInHistory(srcPath, rootDest, ex);
+        metrics.recordFileFailed();
+        notifyCopyStatusProgressEventToListener();
+        return gzipOutputStream.hasWriteFailed() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+    }
+
+    private void registerArchivedChunk(long chunkBytes) throws CopyCancelledException {
+        copyProgress.registerCopiedBytes(chunkBytes);
+        if (throttle != null) {
+            registerThrottledNanos(throttle.acquireBytes(chunkBytes, copyControl));
+        }
+        notifyCopyStatusProgressEventToListener();
+        copyControl.checkpoint();
+    }
+
+    private void registerThrottledNanos(long throttledNanos) {
+        if (throttledNanos > 0) {
+            copyProgress.registerThrottledNanos(throttledNanos);
+            metrics.recordPhase(CopyPhase.THROTTLING, throttledNanos);
+        }
+    }
+
+    private String calculateEntryName(Path srcPath) {
+        String relativePath = RelativePaths.toRelativePath(rootSrc, srcPath);
+        if (rootEntryName.isEmpty()) {
+            return relativePath.isEmpty() ? "./" : relativePath;
+        }
+        return relativePath.isEmpty() ? rootEntryName : rootEntryName + "/" + relativePath;
+    }
+
+    private int readMode(Path srcPath, int defaultMode) {
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(srcPath, LinkOption.NOFOLLOW_LINKS);
+            int mode = 0;
+            for (PosixFilePermission permission : permissions) {
+                mode |= 1 << (8 - permission.ordinal());
+            }
+            return mode;
+        } catch (IOException | UnsupportedOperationException ex) {
+            return defaultMode;
+        }
+    }
+
+    private boolean isCopyCancelled() {
+        try {
+            copyControl.checkpoint();
+            return false;
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Copy cancelled");
+            return true;
+        }
+    }
+
+    private void notifyCopyStatusProgressEventToListener() {
+        progressNotifier.onProgressEvent();
+    }
+}
@@ -1,20 +1,36 @@
 package com.matteoveroni.javacopier.filevisitors;
 
 import java.io.IOException;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.CopyOption;
 import java.nio.file.FileSystemLoopException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 
+import com.matteoveroni.javacopier.CopyCancelledException;
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.CopyControl;
 import com.matteoveroni.javacopier.CopyListener;
+import com.matteoveroni.javacopier.CopyProgress;
+import com.matteoveroni.javacopier.CopyProgressNotifier;
 import com.matteoveroni.javacopier.copyhistory.CopyHistoryEvent;
-import com.matteoveroni.javacopier.CopyStatusReport;
 import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.copystrategies.CopyChunkListener;
+import com.matteoveroni.javacopier.copystrategies.FileCopyStrategy;
+import com.matteoveroni.javacopier.dedup.FileDeduplicator;
+import com.matteoveroni.javacopier.filters.CopyFilter;
+import com.matteoveroni.javacopier.incremental.CopySkipPolicy;
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+import com.matteoveroni.javacopier.recording.CopyRecorder;
+import com.matteoveroni.javacopier.throttling.CopyThrottle;
+import com.matteoveroni.javacopier.verification.CopyVerifier;
 
 import java.nio.file.FileAlreadyExistsException;
 
@@ -22,6 +38,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Copies the files of a src tree to its dest, retrying the failed copies and throttling them if configured. Which
+ * files need no copy is decided by a {@link CopySkipPolicy}, the links to the duplicates of the files already copied
+ * are made by a {@link FileDeduplicator} and what is done with every file is recorded by a {@link CopyRecorder}.
+ *
  * @author Matteo Veroni
  */
 public class CopyDirsFileVisitor implements FileVisitor<Path> {
@@ -29,26 +49,66 @@ public class CopyDirsFileVisitor implements FileVisitor<Path> {
     private final static Logger LOG = LoggerFactory.getLogger(CopyDirsFileVisitor.class);
     private final Path rootSrc;
     private final Path rootDest;
-    private final int totalFiles;
+    private final CopyProgress copyProgress;
     private final CopyHistory copyHistory;
-    private final CopyListener copyListener;
+    private final CopyControl copyControl;
     private final CopyOption[] copyOptions;
+    private final FileCopyStrategy fileCopyStrategy;
+    private final CopyMetrics metrics;
+    private final int maxRetries;
+    private final CopyFilter filter;
+    private final CopySkipPolicy skipPolicy;
+    private final FileDeduplicator deduplicator;
+    private final CopyRecorder recorder;
+    private final CopyThrottle throttle;
+    private final CopyProgressNotifier progressNotifier;
 
     public CopyDirsFileVisitor(Path rootSrc, Path destSrc, int totalFiles, CopyHistory copyHistory, CopyListener copyListener, CopyOption[] copyOptions) {
+        this(rootSrc, destSrc, new CopyProgress(totalFiles), copyHistory, copyListener, copyOptions);
+    }
+
+    public CopyDirsFileVisitor(Path rootSrc, Path destSrc, CopyProgress copyProgress, CopyHistory copyHistory, CopyListener copyListener, CopyOption[] copyOptions) {
+        this(rootSrc, destSrc, CopyConfiguration.DEFAULT, copyProgress, copyHistory, copyListener, copyOptions);
+    }
+
+    public CopyDirsFileVisitor(Path rootSrc, Path destSrc, CopyConfiguration configuration, CopyProgress copyProgress, CopyHistory copyHistory, CopyListener copyListener, CopyOption[] copyOptions) {
+        this(rootSrc, destSrc, configuration, copyProgress, copyHistory, new CopyControl(), copyListener, copyOptions);
+    }
+
+    public CopyDirsFileVisitor(Path rootSrc, Path destSrc, CopyConfiguration configuration, CopyProgress copyProgress, CopyHistory copyHistory, CopyControl copyControl, CopyListener copyListener, CopyOption[] copyOptions) {
         this.rootSrc = rootSrc;
         this.rootDest = destSrc;
-        this.totalFiles = totalFiles;
+        this.copyProgress = copyProgress;
         this.copyHistory = copyHistory;
+        this.copyControl = copyControl;
         this.copyOptions = copyOptions;
-        this.copyListener = copyListener;
+        this.fileCopyStrategy = configuration.getFileCopyStrategy();
+        this.metrics = configuration.getMetrics();
+        this.maxRetries = configuration.getMaxRetries();
+        this.filter = configuration.getFilter();
+        this.skipPolicy = new CopySkipPolicy(rootSrc, destSrc, configuration);
+        this.deduplicator = configuration.isDeduplication()
+                ? new FileDeduplicator(configuration.getDeduplicationMinSize(), containsCopyOption(StandardCopyOption.REPLACE_EXISTING))
+                : null;
+        CopyVerifier verifier = configuration.isVerification() ? new CopyVerifier(configuration, copyProgress, copyHistory, copyControl) : null;
+        this.recorder = new CopyRecorder(rootSrc, destSrc, configuration, skipPolicy.getPreviousManifest(), verifier);
+        this.throttle = configuration.getThrottle();
+        this.progressNotifier = new CopyProgressNotifier(rootSrc, destSrc, configuration.getProgressNotificationPolicy(), copyProgress, copyHistory, copyListener, metrics, copyOptions);
     }
 
     @Override
     public FileVisitResult preVisitDirectory(Path srcDir, BasicFileAttributes attrs) {
         LOG.debug("+++ | pre visit srcDir: " + srcDir);
+        if (isCopyCancelled()) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsDirectory(rootSrc, srcDir)) {
+            LOG.debug("srcDir " + srcDir + " excluded by filter");
+            return FileVisitResult.SKIP_SUBTREE;
+        }
         Path destDir = calculateDestPath(srcDir);
         try {
-            Files.createDirectory(destDir);
+            createDestDir(destDir);
             LOG.debug("destDir: " + destDir + " created");
             copyHistory.registerCopySuccessEventInHistory(srcDir, destDir);
             notifyCopyStatusProgressEventToListener();
@@ -61,6 +121,7 @@ public class CopyDirsFileVisitor implements FileVisitor<Path> {
         } catch (IOException ioe) {
             LOG.error("Unable to create destDir: " + destDir + ", ex: " + ioe.toString());
             copyHistory.registerCopyFailEventInHistory(srcDir, destDir, ioe);
+            metrics.recordFileFailed();
             notifyCopyStatusProgressEventToListener();
             return FileVisitResult.SKIP_SUBTREE;
         }
@@ -69,14 +130,51 @@ public class CopyDirsFileVisitor implements FileVisitor<Path> {
     @Override
     public FileVisitResult visitFile(Path srcFile, BasicFileAttributes attrs) {
         LOG.debug("*** | visit srcFile: " + srcFile);
+        if (isCopyCancelled()) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsFile(rootSrc, srcFile, attrs)) {
+            LOG.debug("srcFile " + srcFile + " excluded by filter");
+            return FileVisitResult.CONTINUE;
+        }
         Path destFile = calculateDestPath(srcFile);
+        CopySkipPolicy.Decision decision = skipPolicy.decide(srcFile, attrs, destFile);
+        if (decision != CopySkipPolicy.Decision.COPY) {
+            if (decision == CopySkipPolicy.Decision.SKIP_COMPLETED_BY_PREVIOUS_RUN) {
+                LOG.debug("srcFile " + srcFile + " skipped, already copied by the resumed job");
+                recorder.onFileCompletedByPreviousRun(srcFile, attrs);
+            } else {
+                LOG.debug("srcFile " + srcFile + " skipped, destFile: " + destFile + " is up to date");
+                recorder.onFileUpToDate(srcFile, attrs);
+            }
+            copyHistory.registerCopySkippedEventInHistory(srcFile, destFile);
+            copyProgress.registerSkippedBytes(attrs.size());
+            metrics.recordFileSkipped(attrs.size());
+            notifyCopyStatusProgressEventToListener();
+            return FileVisitResult.CONTINUE;
+        }
         try {
-            Files.copy(srcFile, destFile, copyOptions);
-            LOG.debug("srcFile " + srcFile + " visited and copied to destFile: " + destFile);
+            throttleFile();
+            if (deduplicator != null && deduplicator.linkToDuplicateIfAny(srcFile, destFile, attrs)) {
+                LOG.debug("srcFile " + srcFile + " visited and deduplicated into destFile: " + destFile);
+                copyProgress.registerDeduplicatedFile(attrs.size());
+                metrics.recordFileDeduplicated(attrs.size());
+            } else {
+                copyFileWithRetries(srcFile, destFile, attrs);
+                LOG.debug("srcFile " + srcFile + " visited and copied to destFile: " + destFile);
+                if (deduplicator != null) {
+                    deduplicator.registerCopiedFile(destFile, attrs);
+                }
+            }
             copyHistory.registerCopySuccessEventInHistory(srcFile, destFile);
+            recorder.onFileCopied(srcFile, destFile, attrs);
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Copy of srcFile: " + srcFile + " cancelled");
+            return FileVisitResult.TERMINATE;
         } catch (IOException ioe) {
             LOG.error("Unable to copy: " + srcFile + ", ex: " + ioe.toString());
             copyHistory.registerCopyFailEventInHistory(srcFile, destFile, ioe);
+            metrics.recordFileFailed();
         }
         notifyCopyStatusProgressEventToListener();
         return FileVisitResult.CONTINUE;
@@ -85,6 +183,10 @@ public class CopyDirsFileVisitor implements FileVisitor<Path> {
     @Override
     public FileVisitResult visitFileFailed(Path srcPath, IOException ex) {
         LOG.debug("xxx | visit srcFile: " + srcPath + " failed");
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsUnreadableEntry(rootSrc, srcPath)) {
+            LOG.debug("srcPath " + srcPath + " excluded by filter");
+            return FileVisitResult.CONTINUE;
+        }
         Path destPath = calculateDestPath(srcPath);
         if (ex instanceof FileSystemLoopException) {
             LOG.warn("Cycle detected: " + srcPath);
@@ -92,6 +194,7 @@ public class CopyDirsFileVisitor implements FileVisitor<Path> {
             LOG.warn("Unable to access: " + srcPath + ", ex: " + ex.toString());
         }
         copyHistory.registerCopyFailEventInHistory(srcPath, destPath, ex);
+        metrics.recordFileFailed();
         notifyCopyStatusProgressEventToListener();
         return FileVisitResult.CONTINUE;
     }
@@ -100,17 +203,180 @@ public class CopyDirsFileVisitor implements FileVisitor<Path> {
     public FileVisitResult postVisitDirectory(Path srcDir, IOException exc) {
         LOG.debug("--- | post visit srcDir: " + srcDir);
         if (exc == null && containsCopyOption(StandardCopyOption.COPY_ATTRIBUTES)) {
+            long attributesCopyStartNanos = System.nanoTime();
             copyAllAttributesFromSrcToDestDirIfNeeded(srcDir);
+            metrics.recordPhase(CopyPhase.ATTRIBUTES_COPY, System.nanoTime() - attributesCopyStartNanos);
         }
         return FileVisitResult.CONTINUE;
     }
 
+    private void createDestDir(Path destDir) throws IOException {
+        long creationStartNanos = System.nanoTime();
+        try {
+            Files.createDirectory(destDir);
+        } finally {
+            metrics.recordPhase(CopyPhase.DIRECTORY_CREATION, System.nanoTime() - creationStartNanos);
+        }
+    }
+
+    /**
+     * Copies srcFile trying again up to maxRetries times after the errors that may be transient. The bytes of a
+     * failed attempt are removed from the progress before the next one.
+     */
+    private void copyFileWithRetries(Path srcFile, Path destFile, BasicFileAttributes attrs) throws IOException {
+        long transferStartNanos = System.nanoTime();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                FileCopyChunkListener fileCopyChunkListener = new FileCopyChunkListener(attrs.size());
+                try {
+                    fileCopyStrategy.copyFile(srcFile, destFile, copyOptions, fileCopyChunkListener);
+                    metrics.recordFileCopied(attrs.size(), System.nanoTime() - transferStartNanos);
+                    return;
+                } catch (CopyCancelledException ex) {
+                    throw ex;
+                } catch (IOException ex) {
+                    if (attempt >= maxRetries || !isRetryable(ex)) {
+                        throw ex;
+                    }
+                    LOG.warn("Unable to copy: " + srcFile + ", retry " + (attempt + 1) + " of " + maxRetries + ", ex: " + ex.toString());
+                    fileCopyChunkListener.discardRegisteredBytes();
+                    metrics.recordRetry();
+                }
+            }
+        } finally {
+            metrics.recordPhase(CopyPhase.FILE_TRANSFER, System.nanoTime() - transferStartNanos);
+        }
+    }
+
+    /**
+     * Waits until the throttle, if any, allows to copy one more file.
+     */
+    private void throttleFile() throws CopyCancelledException {
+        if (throttle != null) {
+            registerThrottledNanos(throttle.acquireFile(copyControl));
+        }
+    }
+
+    /**
+     * Waits until the throttle, if any, allows the bytes just copied.
+     */
+    private void throttleBytes(long bytes) throws CopyCancelledException {
+        if (throttle != null) {
+            registerThrottledNanos(throttle.acquireBytes(bytes, copyControl));
+        }
+    }
+
+    private void registerThrottledNanos(long throttledNanos) {
+        if (throttledNanos > 0) {
+            copyProgress.registerThrottledNanos(throttledNanos);
+            metrics.recordPhase(CopyPhase.THROTTLING, throttledNanos);
+        }
+    }
+
+    private boolean isRetryable(IOException ex) {
+        return !(ex instanceof FileAlreadyExistsException
+                || ex instanceof NoSuchFileException
+                || ex instanceof AccessDeniedException);
+    }
+
+    /**
+     * Waits while the copy is paused.
+     *
+     * @return true if the copy has been cancelled and the walk must stop
+     */
+    private boolean isCopyCancelled() {
+        try {
+            copyControl.checkpoint();
+            return false;
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Copy cancelled");
+            return true;
+        }
+    }
+
     private void notifyCopyStatusProgressEventToListener() {
-        if (copyListener != null) {
-            copyListener.onCopyProgress(
-                    new CopyStatusReport(rootSrc, rootDest, CopyStatusReport.CopyState.RUNNING, totalFiles, copyHistory, copyOptions)
-            );
+        progressNotifier.onProgressEvent();
+    }
+
+    /**
+     * Counts the copied bytes of a file and notifies the progress of every chunk but the last one, which is
+     * notified with the rest of the file visit.
+     */
+    private class FileCopyChunkListener implements CopyChunkListener {
+
+        private final long fileSize;
+        private long fileProcessedBytes = 0;
+        private long fileSavedBytes = 0;
+        private long fileSparseBytes = 0;
+
+        FileCopyChunkListener(long fileSize) {
+            this.fileSize = fileSize;
+        }
+
+        @Override
+        public long getFileSize() {
+            return fileSize;
         }
+
+        @Override
+        public void onChunkCopied(long chunkBytes) throws CopyCancelledException {
+            fileProcessedBytes += chunkBytes;
+            copyProgress.registerCopiedBytes(chunkBytes);
+            throttleBytes(chunkBytes);
+            if (fileProcessedBytes < fileSize) {
+                notifyCopyStatusProgressEventToListener();
+                copyControl.checkpoint();
+            }
+        }
+
+        @Override
+        public void onChunkUnchanged(long chunkBytes) throws CopyCancelledException {
+            fileProcessedBytes += chunkBytes;
+            fileSavedBytes += chunkBytes;
+            copyProgress.registerSavedBytes(chunkBytes);
+            if (fileProcessedBytes < fileSize) {
+                notifyCopyStatusProgressEventToListener();
+                copyControl.checkpoint();
+            }
+        }
+
+        @Override
+        public void onChunkSparse(long chunkBytes) throws CopyCancelledException {
+            fileProcessedBytes += chunkBytes;
+            fileSparseBytes += chunkBytes;
+            copyProgress.registerSparseBytes(chunkBytes);
+            if (fileProcessedBytes < fileSize) {
+                notifyCopyStatusProgressEventToListener();
+                copyControl.checkpoint();
+            }
+        }
+
+        void discardRegisteredBytes() {
+            copyProgress.registerCopiedBytes(-(fileProcessedBytes - fileSavedBytes - fileSparseBytes));
+            copyProgress.registerSavedBytes(-fileSavedBytes);
+            copyProgress.registerSparseBytes(-fileSparseBytes);
+            fileProcessedBytes = 0;
+            fileSavedBytes = 0;
+            fileSparseBytes = 0;
+        }
+    }
+
+    /**
+     * To be called once the walk is over, if verification is enabled: compares the content of the files copied
+     * with their src, see {@link CopyVerifier}.
+     */
+    public void verifyCopiedFiles() {
+        if (!copyControl.isCancelled()) {
+            recorder.verifyCopiedFiles();
+        }
+    }
+
+    /**
+     * To be called once the walk is over: writes the manifest of the files copied or skipped and closes the
+     * journal, if enabled, see {@link CopyRecorder#complete(boolean)}.
+     */
+    public void completeCopy() {
+        recorder.complete(copyHistory.getNumberOfCopiesFailed() > 0);
     }
 
     private void copyAllAttributesFromSrcToDestDirIfNeeded(Path srcDir) {
@@ -124,7 +390,10 @@ public class CopyDirsFileVisitor implements FileVisitor<Path> {
         }
     }
 
-    private Path calculateDestPath(Path srcPath) {
+    /**
+     * @return the path srcPath is copied to
+     */
+    public Path calculateDestPath(Path srcPath) {
         return rootDest.resolve(rootSrc.relativize(srcPath));
     }
 
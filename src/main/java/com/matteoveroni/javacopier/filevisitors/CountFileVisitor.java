@@ -1,11 +1,15 @@
 package com.matteoveroni.javacopier.filevisitors;
 
+import com.matteoveroni.javacopier.CopyProgress;
+import com.matteoveroni.javacopier.filters.CopyFilter;
+
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Matteo Veroni
@@ -13,26 +17,68 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class CountFileVisitor implements FileVisitor<Path> {
 
     private final AtomicInteger fileCounter = new AtomicInteger(0);
+    private final AtomicLong filesSizeCounter = new AtomicLong(0);
+    private final CopyProgress copyProgress;
+    private final Path root;
+    private final CopyFilter filter;
+
+    public CountFileVisitor() {
+        this(null);
+    }
+
+    /**
+     * @param copyProgress if not null every counted file is also published to it, so a copy running
+     *                     alongside the count can refine its estimated total
+     */
+    public CountFileVisitor(CopyProgress copyProgress) {
+        this(copyProgress, null, CopyFilter.ACCEPT_ALL);
+    }
+
+    /**
+     * @param root   root of the tree walked, which the filter patterns are relative to
+     * @param filter entries not accepted are not counted and excluded directories are not walked
+     */
+    public CountFileVisitor(CopyProgress copyProgress, Path root, CopyFilter filter) {
+        this.copyProgress = copyProgress;
+        this.root = root;
+        this.filter = filter;
+    }
 
     public Integer getFilesCount() {
         return fileCounter.get();
     }
 
+    /**
+     * @return the sum of the sizes of the regular files counted
+     */
+    public long getFilesSize() {
+        return filesSizeCounter.get();
+    }
+
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-        fileCounter.getAndIncrement();
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsDirectory(root, dir)) {
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+        countFile(0);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-        fileCounter.getAndIncrement();
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsFile(root, file, attrs)) {
+            return FileVisitResult.CONTINUE;
+        }
+        countFile(attrs.isRegularFile() ? attrs.size() : 0);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException ex) {
-        fileCounter.getAndIncrement();
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsUnreadableEntry(root, file)) {
+            return FileVisitResult.CONTINUE;
+        }
+        countFile(0);
         return FileVisitResult.CONTINUE;
     }
 
@@ -40,4 +86,12 @@ public class CountFileVisitor implements FileVisitor<Path> {
     public FileVisitResult postVisitDirectory(Path dir, IOException ex)  {
         return FileVisitResult.CONTINUE;
     }
+
+    private void countFile(long fileSize) {
+        fileCounter.getAndIncrement();
+        filesSizeCounter.getAndAdd(fileSize);
+        if (copyProgress != null) {
+            copyProgress.registerDiscoveredFile(fileSize);
+        }
+    }
 }
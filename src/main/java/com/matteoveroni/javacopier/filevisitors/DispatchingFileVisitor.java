@@ -0,0 +1,235 @@
+package com.matteoveroni.javacopier.filevisitors;
+
+import com.matteoveroni.javacopier.concurrency.ConcurrencyLimiter;
+import com.matteoveroni.javacopier.concurrency.FixedConcurrencyLimiter;
+import com.matteoveroni.javacopier.scheduling.DeviceIoScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decorates a thread safe {@link FileVisitor} running every visitFile on an {@link Executor}, so the walk goes on
+ * while the files are being visited, as many at the same time as its {@link ConcurrencyLimiter} allows. Directories
+ * are visited on the walking thread: the preVisitDirectory of a directory happens before its files are dispatched
+ * and its postVisitDirectory is delayed until all of them are done, whichever thread completes last.
+ * <p>
+ * With a {@link DeviceIoScheduler} the files are handed to it instead of straight to the executor, so that they are
+ * also limited per device. The {@link ConcurrencyLimiter} is then asked for a permit once the scheduler starts a
+ * file, not while it waits for its devices: the files queued for a slow device do not hold the permits the files on
+ * the other devices need.
+ * <p>
+ * {@link #awaitCompletion()} must be called after the walk to wait for the files still in flight.
+ *
+ * @author Matteo Veroni
+ */
+public class DispatchingFileVisitor implements FileVisitor<Path> {
+
+    private final static Logger LOG = LoggerFactory.getLogger(DispatchingFileVisitor.class);
+
+    private final FileVisitor<Path> visitor;
+    private final Executor executor;
+    private final ConcurrencyLimiter filesInFlight;
+    private final DeviceIoScheduler deviceIoScheduler;
+    private final Map<Path, PendingDirectory> pendingDirectories = new ConcurrentHashMap<>();
+    private final Object dispatchedFilesLock = new Object();
+    private int dispatchedFiles = 0;
+    private volatile boolean terminated = false;
+    private volatile RuntimeException visitException;
+
+    public DispatchingFileVisitor(FileVisitor<Path> visitor, Executor executor, int maxFilesInFlight) {
+        this(visitor, executor, new FixedConcurrencyLimiter(maxFilesInFlight));
+    }
+
+    /**
+     * @param filesInFlight told the size and the visit time of every file, so it can adapt the files in flight
+     */
+    public DispatchingFileVisitor(FileVisitor<Path> visitor, Executor executor, ConcurrencyLimiter filesInFlight) {
+        this(visitor, executor, filesInFlight, null);
+    }
+
+    /**
+     * @param filesInFlight     bounds the files being visited, not the ones waiting for their devices
+     * @param deviceIoScheduler runs the files limiting the ones on each device, when null the files go straight to
+     *                          the executor
+     */
+    public DispatchingFileVisitor(FileVisitor<Path> visitor, Executor executor, ConcurrencyLimiter filesInFlight, DeviceIoScheduler deviceIoScheduler) {
+        this.visitor = visitor;
+        this.executor = executor;
+        this.filesInFlight = filesInFlight;
+        this.deviceIoScheduler = deviceIoScheduler;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        if (terminated) {
+            return FileVisitResult.TERMINATE;
+        }
+        FileVisitResult result = visitor.preVisitDirectory(dir, attrs);
+        if (result == FileVisitResult.CONTINUE) {
+            pendingDirectories.put(dir, new PendingDirectory());
+        }
+        return result;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        if (terminated) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (deviceIoScheduler == null) {
+            try {
+                filesInFlight.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                terminated = true;
+                return FileVisitResult.TERMINATE;
+            }
+        }
+        PendingDirectory parentDirectory = pendingDirectories.get(file.getParent());
+        if (parentDirectory != null) {
+            parentDirectory.pendingEntries.incrementAndGet();
+        }
+        synchronized (dispatchedFilesLock) {
+            dispatchedFiles++;
+        }
+        // the time waiting for a thread counts as well, since it is a cost of the files in flight too
+        long dispatchNanos = System.nanoTime();
+        try {
+            if (deviceIoScheduler != null) {
+                deviceIoScheduler.execute(file, () -> visitScheduledFile(file, attrs));
+            } else {
+                executor.execute(() -> visitDispatchedFile(file, attrs, dispatchNanos));
+            }
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("File visit rejected by the executor, visiting it on the walking thread: " + file);
+            visitDispatchedFile(file, attrs, dispatchNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            terminated = true;
+            completeDispatchedFile(file);
+        }
+        return terminated ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException {
+        if (terminated) {
+            return FileVisitResult.TERMINATE;
+        }
+        return visitor.visitFileFailed(file, ex);
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException ex) {
+        PendingDirectory directory = pendingDirectories.get(dir);
+        if (directory != null) {
+            directory.postVisitException = ex;
+            completeDirectoryEntry(dir);
+        }
+        return terminated ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Waits for the files dispatched and not visited yet.
+     *
+     * @throws RuntimeException thrown by the decorated visitor while visiting a file
+     */
+    public void awaitCompletion() {
+        boolean interrupted = false;
+        synchronized (dispatchedFilesLock) {
+            while (dispatchedFiles > 0) {
+                try {
+                    dispatchedFilesLock.wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (visitException != null) {
+            throw visitException;
+        }
+    }
+
+    /**
+     * Visits a file started by the {@link DeviceIoScheduler}, once {@link #filesInFlight} allows it.
+     */
+    private void visitScheduledFile(Path file, BasicFileAttributes attrs) {
+        try {
+            filesInFlight.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            terminated = true;
+            completeDispatchedFile(file);
+            return;
+        }
+        visitDispatchedFile(file, attrs, System.nanoTime());
+    }
+
+    /**
+     * Visits a file holding a permit of {@link #filesInFlight}, acquired at startNanos.
+     */
+    private void visitDispatchedFile(Path file, BasicFileAttributes attrs, long startNanos) {
+        try {
+            if (!terminated && visitor.visitFile(file, attrs) == FileVisitResult.TERMINATE) {
+                terminated = true;
+            }
+        } catch (IOException ex) {
+            LOG.error("Unable to visit file: " + file + ", ex: " + ex.toString());
+        } catch (RuntimeException ex) {
+            visitException = ex;
+            terminated = true;
+        } finally {
+            filesInFlight.release(attrs.size(), System.nanoTime() - startNanos);
+            completeDispatchedFile(file);
+        }
+    }
+
+    private void completeDispatchedFile(Path file) {
+        completeDirectoryEntry(file.getParent());
+        synchronized (dispatchedFilesLock) {
+            if (--dispatchedFiles == 0) {
+                dispatchedFilesLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Releases one entry of dir, the last one releasing it calls the delayed postVisitDirectory.
+     */
+    private void completeDirectoryEntry(Path dir) {
+        PendingDirectory directory = pendingDirectories.get(dir);
+        if (directory == null || directory.pendingEntries.decrementAndGet() > 0) {
+            return;
+        }
+        pendingDirectories.remove(dir);
+        try {
+            if (visitor.postVisitDirectory(dir, directory.postVisitException) == FileVisitResult.TERMINATE) {
+                terminated = true;
+            }
+        } catch (IOException ex) {
+            LOG.error("Unable to post visit dir: " + dir + ", ex: " + ex.toString());
+        }
+    }
+
+    private static class PendingDirectory {
+
+        /**
+         * The files in flight, plus one for the walk of the directory itself.
+         */
+        private final AtomicInteger pendingEntries = new AtomicInteger(1);
+        private volatile IOException postVisitException;
+    }
+}
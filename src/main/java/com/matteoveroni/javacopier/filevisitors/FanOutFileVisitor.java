@@ -0,0 +1,278 @@
+package com.matteoveroni.javacopier.filevisitors;
+
+import com.matteoveroni.javacopier.CopyCancelledException;
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.CopyControl;
+import com.matteoveroni.javacopier.CopyListener;
+import com.matteoveroni.javacopier.CopyProgress;
+import com.matteoveroni.javacopier.CopyProgressNotifier;
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.copystrategies.CopyChunkListener;
+import com.matteoveroni.javacopier.copystrategies.FanOutFileCopier;
+import com.matteoveroni.javacopier.filters.CopyFilter;
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Copies the src dir tree into several dest dirs walking and reading src only once, see {@link FanOutFileCopier}.
+ * Every dest has its own {@link CopyProgress}, {@link CopyHistory} and progress notifications, so a dest that fails
+ * does not affect the others.
+ * <p>
+ * The files are read by the walking thread, so the walk must be sequential.
+ *
+ * @author Matteo Veroni
+ */
+public class FanOutFileVisitor implements FileVisitor<Path>, Closeable {
+
+    private final static Logger LOG = LoggerFactory.getLogger(FanOutFileVisitor.class);
+
+    private final Path rootSrc;
+    private final Path[] rootDests;
+    private final CopyProgress[] copyProgresses;
+    private final CopyHistory[] copyHistories;
+    private final CopyProgressNotifier[] progressNotifiers;
+    private final CopyControl copyControl;
+    private final CopyOption[] copyOptions;
+    private final CopyMetrics metrics;
+    private final CopyFilter filter;
+    private final FanOutFileCopier fanOutFileCopier;
+
+    /**
+     * @param rootDests    the dests, the progress and the history of each of them are at the same index
+     * @param copyListener notified of the progress of every dest, each report has its own dest
+     */
+    public FanOutFileVisitor(Path rootSrc, Path[] rootDests, CopyConfiguration configuration, CopyProgress[] copyProgresses, CopyHistory[] copyHistories, CopyControl copyControl, CopyListener copyListener, CopyOption[] copyOptions) {
+        this.rootSrc = rootSrc;
+        this.rootDests = rootDests;
+        this.copyProgresses = copyProgresses;
+        this.copyHistories = copyHistories;
+        this.copyControl = copyControl;
+        this.copyOptions = copyOptions;
+        this.metrics = configuration.getMetrics();
+        this.filter = configuration.getFilter();
+        this.progressNotifiers = new CopyProgressNotifier[rootDests.length];
+        for (int i = 0; i < rootDests.length; i++) {
+            progressNotifiers[i] = new CopyProgressNotifier(rootSrc, rootDests[i], configuration.getProgressNotificationPolicy(), copyProgresses[i], copyHistories[i], copyListener, metrics, copyOptions);
+        }
+        this.fanOutFileCopier = new FanOutFileCopier(rootDests.length, FanOutFileCopier.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path srcDir, BasicFileAttributes attrs) {
+        LOG.debug("+++ | pre visit srcDir: " + srcDir);
+        if (isCopyCancelled()) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsDirectory(rootSrc, srcDir)) {
+            LOG.debug("srcDir " + srcDir + " excluded by filter");
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+        boolean createdInAnyDest = false;
+        for (int i = 0; i < rootDests.length; i++) {
+            Path destDir = calculateDestPath(srcDir, i);
+            try {
+                createDestDir(destDir);
+                copyHistories[i].registerCopySuccessEventInHistory(srcDir, destDir);
+                createdInAnyDest = true;
+            } catch (IOException ex) {
+                LOG.error("Unable to create destDir: " + destDir + ", ex: " + ex.toString());
+                copyHistories[i].registerCopyFailEventInHistory(srcDir, destDir, ex);
+                metrics.recordFileFailed();
+            }
+            progressNotifiers[i].onProgressEvent();
+        }
+        return createdInAnyDest ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path srcFile, BasicFileAttributes attrs) {
+        LOG.debug("*** | visit srcFile: " + srcFile);
+        if (isCopyCancelled()) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsFile(rootSrc, srcFile, attrs)) {
+            LOG.debug("srcFile " + srcFile + " excluded by filter");
+            return FileVisitResult.CONTINUE;
+        }
+        Path[] destFiles = new Path[rootDests.length];
+        CopyChunkListener[] copyChunkListeners = new CopyChunkListener[rootDests.length];
+        for (int i = 0; i < rootDests.length; i++) {
+            destFiles[i] = calculateDestPath(srcFile, i);
+            copyChunkListeners[i] = new DestCopyChunkListener(i, attrs.size());
+        }
+        long transferStartNanos = System.nanoTime();
+        try {
+            IOException[] failures = fanOutFileCopier.copyFile(srcFile, destFiles, copyOptions, copyChunkListeners);
+            for (int i = 0; i < rootDests.length; i++) {
+                if (failures[i] == null) {
+                    LOG.debug("srcFile " + srcFile + " visited and copied to destFile: " + destFiles[i]);
+                    copyHistories[i].registerCopySuccessEventInHistory(srcFile, destFiles[i]);
+                    metrics.recordFileCopied(attrs.size(), System.nanoTime() - transferStartNanos);
+                } else {
+                    registerFailure(srcFile, destFiles[i], i, failures[i]);
+                }
+            }
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Copy of srcFile: " + srcFile + " cancelled");
+            return FileVisitResult.TERMINATE;
+        } catch (IOException ex) {
+            for (int i = 0; i < rootDests.length; i++) {
+                registerFailure(srcFile, destFiles[i], i, ex);
+            }
+        } finally {
+            metrics.recordPhase(CopyPhase.FILE_TRANSFER, System.nanoTime() - transferStartNanos);
+        }
+        notifyCopyStatusProgressEventToListeners();
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path srcPath, IOException ex) {
+        LOG.debug("xxx | visit srcFile: " + srcPath + " failed");
+        if (filter != CopyFilter.ACCEPT_ALL && !filter.acceptsUnreadableEntry(rootSrc, srcPath)) {
+            LOG.debug("srcPath " + srcPath + " excluded by filter");
+            return FileVisitResult.CONTINUE;
+        }
+        if (ex instanceof FileSystemLoopException) {
+            LOG.warn("Cycle detected: " + srcPath);
+        }
+        for (int i = 0; i < rootDests.length; i++) {
+            registerFailure(srcPath, calculateDestPath(srcPath, i), i, ex);
+        }
+        notifyCopyStatusProgressEventToListeners();
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path srcDir, IOException exc) {
+        LOG.debug("--- | post visit srcDir: " + srcDir);
+        if (exc == null && containsCopyOption(StandardCopyOption.COPY_ATTRIBUTES)) {
+            long attributesCopyStartNanos = System.nanoTime();
+            copyLastModifiedTimeToDestDirs(srcDir);
+            metrics.recordPhase(CopyPhase.ATTRIBUTES_COPY, System.nanoTime() - attributesCopyStartNanos);
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * @return the bytes read from src, each of them written to every dest
+     */
+    public long getReadBytes() {
+        return fanOutFileCopier.getReadBytes();
+    }
+
+    @Override
+    public void close() {
+        fanOutFileCopier.close();
+    }
+
+    /**
+     * An existing dest dir is fine, since files are merged into it, but anything else in its place is not.
+     */
+    private void createDestDir(Path destDir) throws IOException {
+        long creationStartNanos = System.nanoTime();
+        try {
+            Files.createDirectory(destDir);
+        } catch (FileAlreadyExistsException ex) {
+            if (!Files.isDirectory(destDir)) {
+                throw new NotDirectoryException(destDir.toString());
+            }
+        } finally {
+            metrics.recordPhase(CopyPhase.DIRECTORY_CREATION, System.nanoTime() - creationStartNanos);
+        }
+    }
+
+    private void registerFailure(Path srcPath, Path destPath, int dest, IOException ex) {
+        LOG.error("Unable to copy: " + srcPath + " to: " + destPath + ", ex: " + ex.toString());
+        copyHistories[dest].registerCopyFailEventInHistory(srcPath, destPath, ex);
+        metrics.recordFileFailed();
+    }
+
+    private void copyLastModifiedTimeToDestDirs(Path srcDir) {
+        FileTime time;
+        try {
+            time = Files.getLastModifiedTime(srcDir);
+        } catch (IOException ex) {
+            LOG.warn("Unable to read the attributes of srcDir: " + srcDir + ", ex: " + ex.toString());
+            return;
+        }
+        for (int i = 0; i < rootDests.length; i++) {
+            Path destDir = calculateDestPath(srcDir, i);
+            try {
+                Files.setLastModifiedTime(destDir, time);
+            } catch (IOException ex) {
+                LOG.warn("Unable to copy all attributes to: " + destDir + ", ex: " + ex.toString());
+            }
+        }
+    }
+
+    private boolean isCopyCancelled() {
+        try {
+            copyControl.checkpoint();
+            return false;
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Copy cancelled");
+            return true;
+        }
+    }
+
+    private void notifyCopyStatusProgressEventToListeners() {
+        for (CopyProgressNotifier progressNotifier : progressNotifiers) {
+            progressNotifier.onProgressEvent();
+        }
+    }
+
+    private Path calculateDestPath(Path srcPath, int dest) {
+        return rootDests[dest].resolve(rootSrc.relativize(srcPath));
+    }
+
+    private boolean containsCopyOption(StandardCopyOption searchedCopyOption) {
+        for (CopyOption copyOption : copyOptions) {
+            if (copyOption.equals(searchedCopyOption)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the bytes written to one dest, notifying its progress of every chunk but the last one.
+     */
+    private class DestCopyChunkListener implements CopyChunkListener {
+
+        private final int dest;
+        private final long fileSize;
+        private long fileCopiedBytes = 0;
+
+        DestCopyChunkListener(int dest, long fileSize) {
+            this.dest = dest;
+            this.fileSize = fileSize;
+        }
+
+        @Override
+        public void onChunkCopied(long chunkBytes) throws CopyCancelledException {
+            fileCopiedBytes += chunkBytes;
+            copyProgresses[dest].registerCopiedBytes(chunkBytes);
+            if (fileCopiedBytes < fileSize) {
+                progressNotifiers[dest].onProgressEvent();
+                copyControl.checkpoint();
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.matteoveroni.javacopier.filevisitors;
 
+import com.matteoveroni.javacopier.CopyConfiguration;
 import com.matteoveroni.javacopier.CopyListener;
-import com.matteoveroni.javacopier.CopyStatusReport;
+import com.matteoveroni.javacopier.CopyProgress;
+import com.matteoveroni.javacopier.CopyProgressNotifier;
 import com.matteoveroni.javacopier.copyhistory.CopyHistory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,22 +24,24 @@ public class PrintFileVisitor implements FileVisitor<Path> {
 
     private final static Logger LOG = LoggerFactory.getLogger(PrintFileVisitor.class);
 
-    private final Path rootSrc;
     private final Path rootDest;
     private final PrintWriter printWriter;
-    private final int totalFiles;
     private final CopyHistory copyHistory;
-    private final CopyListener copyListener;
-    private final CopyOption[] copyOptions;
+    private final CopyProgressNotifier progressNotifier;
 
     public PrintFileVisitor(Path rootSrc, Path destSrc, OutputStream outputStream, int totalFiles, CopyHistory copyHistory, CopyListener copyListener, CopyOption[] copyOptions) {
-        this.rootSrc = rootSrc;
+        this(rootSrc, destSrc, outputStream, new CopyProgress(totalFiles), copyHistory, copyListener, copyOptions);
+    }
+
+    public PrintFileVisitor(Path rootSrc, Path destSrc, OutputStream outputStream, CopyProgress copyProgress, CopyHistory copyHistory, CopyListener copyListener, CopyOption[] copyOptions) {
+        this(rootSrc, destSrc, outputStream, CopyConfiguration.DEFAULT, copyProgress, copyHistory, copyListener, copyOptions);
+    }
+
+    public PrintFileVisitor(Path rootSrc, Path destSrc, OutputStream outputStream, CopyConfiguration configuration, CopyProgress copyProgress, CopyHistory copyHistory, CopyListener copyListener, CopyOption[] copyOptions) {
         this.rootDest = destSrc;
         this.printWriter = new PrintWriter(outputStream, true);
-        this.totalFiles = totalFiles;
         this.copyHistory = copyHistory;
-        this.copyOptions = copyOptions;
-        this.copyListener = copyListener;
+        this.progressNotifier = new CopyProgressNotifier(rootSrc, destSrc, configuration.getProgressNotificationPolicy(), copyProgress, copyHistory, copyListener, configuration.getMetrics(), copyOptions);
     }
 
     @Override
@@ -86,10 +90,6 @@ public class PrintFileVisitor implements FileVisitor<Path> {
     }
 
     private void notifyCopyStatusProgressEventToListener() {
-        if (copyListener != null) {
-            copyListener.onCopyProgress(
-                    new CopyStatusReport(rootSrc, rootDest, CopyStatusReport.CopyState.RUNNING, totalFiles, copyHistory, copyOptions)
-            );
-        }
+        progressNotifier.onProgressEvent();
     }
 }
@@ -0,0 +1,221 @@
+package com.matteoveroni.javacopier.filewalkers;
+
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Walks a file tree like {@link Files#walkFileTree(Path, FileVisitor)} but reads all the entries of a directory and
+ * sorts them, following an {@link Order}, before visiting them. On rotational media visiting the entries by inode
+ * number follows their position on the disk, turning the random seeks of a directory of small files into a mostly
+ * sequential read.
+ * <p>
+ * The time spent planning every directory, i.e. extracting the sort keys of its entries and sorting them, is recorded
+ * as {@link CopyPhase#TRAVERSAL_PLANNING}. Reading the entries and their attributes is not part of it, since
+ * {@link Files#walkFileTree(Path, FileVisitor)} reads them too. Symbolic links are not followed, except for the start
+ * path.
+ *
+ * @author Matteo Veroni
+ */
+public class OrderedFileTreeWalker {
+
+    /**
+     * The order the entries of a directory are visited in.
+     */
+    public enum Order {
+        /**
+         * As returned by the directory, like {@link Files#walkFileTree(Path, FileVisitor)}.
+         */
+        NATURAL,
+        /**
+         * By inode number, best effort: the file key of {@link BasicFileAttributes#fileKey()} has no specified
+         * format, the inode number is parsed from its string on the default file system of Unix. A directory with
+         * an entry whose file key is null or does not match, e.g. on file systems without inodes, is visited by
+         * name instead, logging it at debug level. The entries whose attributes cannot be read are visited last.
+         */
+        INODE,
+        /**
+         * By file name.
+         */
+        NAME,
+        /**
+         * By size, the smallest first.
+         */
+        SIZE
+    }
+
+    private final static Logger LOG = LoggerFactory.getLogger(OrderedFileTreeWalker.class);
+
+    /**
+     * The inode number in the string of the file key of the default file system on Unix, e.g. "(dev=803,ino=1234)".
+     */
+    private static final Pattern INODE_PATTERN = Pattern.compile("ino=(\\d+)");
+    private static final long NO_INODE = Long.MAX_VALUE;
+
+    private final Order order;
+    private final CopyMetrics metrics;
+    private long planningNanos = 0;
+    private int plannedDirs = 0;
+
+    public OrderedFileTreeWalker(Order order, CopyMetrics metrics) {
+        this.order = order;
+        this.metrics = metrics;
+    }
+
+    public void walkFileTree(Path start, FileVisitor<Path> visitor) throws IOException {
+        BasicFileAttributes startAttrs;
+        try {
+            startAttrs = Files.readAttributes(start, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            visitor.visitFileFailed(start, ex);
+            return;
+        }
+        if (!startAttrs.isDirectory()) {
+            visitor.visitFile(start, startAttrs);
+            return;
+        }
+        walkDirectory(start, startAttrs, visitor);
+        LOG.debug("Walk of " + start + " in " + order + " order planned " + plannedDirs + " dirs in "
+                + TimeUnit.NANOSECONDS.toMillis(planningNanos) + " ms");
+    }
+
+    /**
+     * @return the time spent extracting the sort keys of the entries of the directories walked and sorting them
+     */
+    public long getPlanningNanos() {
+        return planningNanos;
+    }
+
+    private FileVisitResult walkDirectory(Path dir, BasicFileAttributes dirAttrs, FileVisitor<Path> visitor) throws IOException {
+        FileVisitResult preVisitResult = visitor.preVisitDirectory(dir, dirAttrs);
+        if (preVisitResult != FileVisitResult.CONTINUE) {
+            return preVisitResult == FileVisitResult.SKIP_SUBTREE ? FileVisitResult.CONTINUE : preVisitResult;
+        }
+
+        IOException dirException = null;
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> dirEntries = Files.newDirectoryStream(dir)) {
+            for (Path dirEntry : dirEntries) {
+                entries.add(readEntry(dirEntry));
+            }
+        } catch (IOException ex) {
+            LOG.debug("Unable to read entries of dir: " + dir + ", ex: " + ex.toString());
+            dirException = ex;
+        }
+        long planningStartNanos = System.nanoTime();
+        if (order != Order.NATURAL) {
+            entries.sort(newEntryComparator(dir, entries));
+        }
+        long dirPlanningNanos = System.nanoTime() - planningStartNanos;
+        planningNanos += dirPlanningNanos;
+        plannedDirs++;
+        metrics.recordPhase(CopyPhase.TRAVERSAL_PLANNING, dirPlanningNanos);
+
+        for (Entry entry : entries) {
+            FileVisitResult result;
+            if (entry.attrsException != null) {
+                result = visitor.visitFileFailed(entry.path, entry.attrsException);
+            } else if (entry.attrs.isDirectory()) {
+                result = walkDirectory(entry.path, entry.attrs, visitor);
+            } else {
+                result = visitor.visitFile(entry.path, entry.attrs);
+            }
+            if (result == FileVisitResult.TERMINATE) {
+                return result;
+            } else if (result == FileVisitResult.SKIP_SIBLINGS) {
+                break;
+            }
+        }
+
+        FileVisitResult postVisitResult = visitor.postVisitDirectory(dir, dirException);
+        return postVisitResult == FileVisitResult.TERMINATE ? postVisitResult : FileVisitResult.CONTINUE;
+    }
+
+    private Entry readEntry(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return new Entry(path, attrs, null);
+        } catch (IOException ex) {
+            return new Entry(path, null, ex);
+        }
+    }
+
+    private Comparator<Entry> newEntryComparator(Path dir, List<Entry> entries) {
+        Comparator<Entry> byName = Comparator.comparing(entry -> entry.path.getFileName().toString());
+        switch (order) {
+            case INODE:
+                Entry entryWithoutInode = readInodes(entries);
+                if (entryWithoutInode != null) {
+                    LOG.debug("Inode number not found in the file key: " + entryWithoutInode.attrs.fileKey() + " of: " + entryWithoutInode.path
+                            + ", entries of dir: " + dir + " visited by name");
+                    return byName;
+                }
+                return Comparator.<Entry>comparingLong(entry -> entry.inode).thenComparing(byName);
+            case SIZE:
+                return Comparator.<Entry>comparingLong(entry -> entry.attrs == null ? Long.MAX_VALUE : entry.attrs.size()).thenComparing(byName);
+            default:
+                return byName;
+        }
+    }
+
+    /**
+     * @return the first entry whose inode number cannot be read, null if all of them have it
+     */
+    private static Entry readInodes(List<Entry> entries) {
+        for (Entry entry : entries) {
+            if (entry.attrs != null) {
+                entry.inode = readInode(entry.attrs);
+                if (entry.inode == NO_INODE) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long readInode(BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        if (fileKey == null) {
+            return NO_INODE;
+        }
+        Matcher inodeMatcher = INODE_PATTERN.matcher(fileKey.toString());
+        if (!inodeMatcher.find()) {
+            return NO_INODE;
+        }
+        try {
+            return Long.parseLong(inodeMatcher.group(1));
+        } catch (NumberFormatException ex) {
+            return NO_INODE;
+        }
+    }
+
+    private static class Entry {
+
+        private final Path path;
+        private final BasicFileAttributes attrs;
+        private final IOException attrsException;
+        private long inode = NO_INODE;
+
+        Entry(Path path, BasicFileAttributes attrs, IOException attrsException) {
+            this.path = path;
+            this.attrs = attrs;
+            this.attrsException = attrsException;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.matteoveroni.javacopier.filewalkers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Walks a file tree like {@link Files#walkFileTree(Path, FileVisitor)} but visits every directory in its own
+ * fork/join task, so sibling subtrees are processed concurrently by a work-stealing pool.
+ * <p>
+ * The visitor must be thread safe. For each directory preVisitDirectory is always invoked before its entries
+ * are visited and postVisitDirectory after all of them (subdirectories included) are done. Symbolic links are
+ * not followed, except for the start path.
+ *
+ * @author Matteo Veroni
+ */
+public class ParallelFileTreeWalker {
+
+    private final static Logger LOG = LoggerFactory.getLogger(ParallelFileTreeWalker.class);
+
+    private final int parallelism;
+    private final AtomicBoolean terminated = new AtomicBoolean(false);
+
+    public ParallelFileTreeWalker(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void walkFileTree(Path start, FileVisitor<Path> visitor) throws IOException {
+        BasicFileAttributes startAttrs;
+        try {
+            startAttrs = Files.readAttributes(start, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            visitor.visitFileFailed(start, ex);
+            return;
+        }
+        if (!startAttrs.isDirectory()) {
+            visitor.visitFile(start, startAttrs);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DirectoryTask(start, startAttrs, visitor));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final BasicFileAttributes dirAttrs;
+        private final FileVisitor<Path> visitor;
+
+        DirectoryTask(Path dir, BasicFileAttributes dirAttrs, FileVisitor<Path> visitor) {
+            this.dir = dir;
+            this.dirAttrs = dirAttrs;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                walkDirectory();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private void walkDirectory() throws IOException {
+            if (terminated.get()) {
+                return;
+            }
+            FileVisitResult preVisitResult = visitor.preVisitDirectory(dir, dirAttrs);
+            if (preVisitResult == FileVisitResult.TERMINATE) {
+                terminated.set(true);
+                return;
+            } else if (preVisitResult != FileVisitResult.CONTINUE) {
+                return;
+            }
+
+            List<DirectoryTask> subDirTasks = new ArrayList<>();
+            IOException dirException = null;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (terminated.get() || !visitEntry(entry, subDirTasks)) {
+                        break;
+                    }
+                }
+            } catch (IOException ex) {
+                LOG.debug("Unable to read entries of dir: " + dir + ", ex: " + ex.toString());
+                dirException = ex;
+            }
+
+            for (DirectoryTask subDirTask : subDirTasks) {
+                subDirTask.join();
+            }
+
+            if (!terminated.get() && visitor.postVisitDirectory(dir, dirException) == FileVisitResult.TERMINATE) {
+                terminated.set(true);
+            }
+        }
+
+        /**
+         * @return false if the remaining entries of the directory must not be visited
+         */
+        private boolean visitEntry(Path entry, List<DirectoryTask> subDirTasks) throws IOException {
+            BasicFileAttributes attrs = null;
+            IOException attrsException = null;
+            try {
+                attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException ex) {
+                attrsException = ex;
+            }
+
+            FileVisitResult result;
+            if (attrsException != null) {
+                result = visitor.visitFileFailed(entry, attrsException);
+            } else if (attrs.isDirectory()) {
+                DirectoryTask subDirTask = new DirectoryTask(entry, attrs, visitor);
+                subDirTask.fork();
+                subDirTasks.add(subDirTask);
+                return true;
+            } else {
+                result = visitor.visitFile(entry, attrs);
+            }
+
+            if (result == FileVisitResult.TERMINATE) {
+                terminated.set(true);
+                return false;
+            }
+            return result != FileVisitResult.SKIP_SIBLINGS;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.matteoveroni.javacopier.filters;
+
+import com.matteoveroni.javacopier.paths.RelativePaths;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable set of rules telling which entries of a tree are copied. Use the {@link Builder} to create it.
+ * <p>
+ * Patterns are globs, or regexes when prefixed by "regex:". A glob without '/' is matched against the name of every
+ * entry at any depth (e.g. "node_modules", "*.tmp"), otherwise against its path relative to the root of the tree
+ * (e.g. "build/**"). Regexes are always matched against the relative path, with '/' as separator.
+ * <p>
+ * An excluded directory is pruned with all its content. Includes, sizes and last modified times only select
+ * files, so directories are never pruned by them.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyFilter {
+
+    public static final CopyFilter ACCEPT_ALL = new CopyFilter.Builder().build();
+
+    private static final String REGEX_PREFIX = "regex:";
+    private static final String GLOB_PREFIX = "glob:";
+
+    private final List<EntryMatcher> includes;
+    private final List<EntryMatcher> excludes;
+    private final long minSize;
+    private final long maxSize;
+    private final FileTime modifiedAfter;
+    private final FileTime modifiedBefore;
+
+    private CopyFilter(Builder builder) {
+        this.includes = Collections.unmodifiableList(new ArrayList<>(builder.includes));
+        this.excludes = Collections.unmodifiableList(new ArrayList<>(builder.excludes));
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+        this.modifiedAfter = builder.modifiedAfter;
+        this.modifiedBefore = builder.modifiedBefore;
+    }
+
+    public static class Builder {
+
+        private final List<EntryMatcher> includes = new ArrayList<>();
+        private final List<EntryMatcher> excludes = new ArrayList<>();
+        private long minSize = 0;
+        private long maxSize = Long.MAX_VALUE;
+        private FileTime modifiedAfter;
+        private FileTime modifiedBefore;
+
+        /**
+         * Once an include is set, only the files matching at least one include are copied.
+         */
+        public Builder include(String pattern) {
+            includes.add(EntryMatcher.of(pattern));
+            return this;
+        }
+
+        /**
+         * Files and directories matching an exclude are not copied, excluded directories are not even opened.
+         */
+        public Builder exclude(String pattern) {
+            excludes.add(EntryMatcher.of(pattern));
+            return this;
+        }
+
+        /**
+         * Regular files smaller than minSize bytes are not copied.
+         */
+        public Builder setMinSize(long minSize) {
+            if (minSize < 0) {
+                throw new IllegalArgumentException("minSize cannot be negative");
+            }
+            this.minSize = minSize;
+            return this;
+        }
+
+        /**
+         * Regular files bigger than maxSize bytes are not copied.
+         */
+        public Builder setMaxSize(long maxSize) {
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("maxSize cannot be negative");
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Files last modified before modifiedAfter are not copied.
+         */
+        public Builder setModifiedAfter(FileTime modifiedAfter) {
+            this.modifiedAfter = modifiedAfter;
+            return this;
+        }
+
+        /**
+         * Files last modified after modifiedBefore are not copied.
+         */
+        public Builder setModifiedBefore(FileTime modifiedBefore) {
+            this.modifiedBefore = modifiedBefore;
+            return this;
+        }
+
+        public CopyFilter build() {
+            if (minSize > maxSize) {
+                throw new IllegalArgumentException("minSize cannot be greater than maxSize");
+            }
+            return new CopyFilter(this);
+        }
+    }
+
+    /**
+     * @return true if dir and its content must be walked, the root is always accepted
+     */
+    public boolean acceptsDirectory(Path root, Path dir) {
+        if (excludes.isEmpty() || root.equals(dir)) {
+            return true;
+        }
+        return !matchesAny(excludes, root, dir);
+    }
+
+    /**
+     * @return true if file must be copied, a root that is a file is always accepted
+     */
+    public boolean acceptsFile(Path root, Path file, BasicFileAttributes attrs) {
+        if (this == ACCEPT_ALL || root.equals(file)) {
+            return true;
+        }
+        if (attrs.isRegularFile() && (attrs.size() < minSize || attrs.size() > maxSize)) {
+            return false;
+        }
+        if (modifiedAfter != null && attrs.lastModifiedTime().compareTo(modifiedAfter) < 0) {
+            return false;
+        }
+        if (modifiedBefore != null && attrs.lastModifiedTime().compareTo(modifiedBefore) > 0) {
+            return false;
+        }
+        if (!excludes.isEmpty() && matchesAny(excludes, root, file)) {
+            return false;
+        }
+        return includes.isEmpty() || matchesAny(includes, root, file);
+    }
+
+    /**
+     * @return true if entry, whose attributes could not be read, must be reported as failed. Without attributes it
+     * is not known whether it is a file or a directory, nor its size or last modified time, so only the excludes
+     * apply: an entry excluded is ignored like any other, whichever its type.
+     */
+    public boolean acceptsUnreadableEntry(Path root, Path entry) {
+        if (excludes.isEmpty() || root.equals(entry)) {
+            return true;
+        }
+        return !matchesAny(excludes, root, entry);
+    }
+
+    private boolean matchesAny(List<EntryMatcher> matchers, Path root, Path entry) {
+        for (EntryMatcher matcher : matchers) {
+            if (matcher.matches(root, entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class EntryMatcher {
+
+        private final PathMatcher globMatcher;
+        private final boolean fileNameOnly;
+        private final Pattern regex;
+
+        private EntryMatcher(PathMatcher globMatcher, boolean fileNameOnly, Pattern regex) {
+            this.globMatcher = globMatcher;
+            this.fileNameOnly = fileNameOnly;
+            this.regex = regex;
+        }
+
+        static EntryMatcher of(String pattern) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("pattern cannot be empty");
+            }
+            if (pattern.startsWith(REGEX_PREFIX)) {
+                return new EntryMatcher(null, false, Pattern.compile(pattern.substring(REGEX_PREFIX.length())));
+            }
+            String glob = pattern.startsWith(GLOB_PREFIX) ? pattern.substring(GLOB_PREFIX.length()) : pattern;
+            return new EntryMatcher(FileSystems.getDefault().getPathMatcher(GLOB_PREFIX + glob), glob.indexOf('/') < 0, null);
+        }
+
+        boolean matches(Path root, Path entry) {
+            if (regex != null) {
+                return regex.matcher(RelativePaths.toRelativePath(root, entry)).matches();
+            }
+            Path matchedPath = fileNameOnly ? entry.getFileName() : root.relativize(entry);
+            return matchedPath != null && globMatcher.matches(matchedPath);
+        }
+    }
+}
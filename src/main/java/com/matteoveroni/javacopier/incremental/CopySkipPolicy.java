@@ -0,0 +1,122 @@
+package com.matteoveroni.javacopier.incremental;
+
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.checksums.FileChecksums;
+import com.matteoveroni.javacopier.journal.CopyJournal;
+import com.matteoveroni.javacopier.manifest.CopyManifest;
+import com.matteoveroni.javacopier.paths.RelativePaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Tells which files of a job need no copy: the ones completed by the job being resumed, listed in its
+ * {@link CopyJournal}, and, for an incremental copy, the ones whose dest is up to date. A dest is compared with the
+ * {@link CopyManifest} written by the previous job when it lists the file, otherwise with the dest file itself, by
+ * size and last modified time and optionally by content hash. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class CopySkipPolicy {
+
+    private final static Logger LOG = LoggerFactory.getLogger(CopySkipPolicy.class);
+
+    public enum Decision {
+        COPY,
+        SKIP_COMPLETED_BY_PREVIOUS_RUN,
+        SKIP_UP_TO_DATE
+    }
+
+    private final Path rootSrc;
+    private final boolean incrementalCopy;
+    private final boolean contentHashComparison;
+    private final CopyManifest previousManifest;
+    private final Set<String> entriesCompletedByPreviousRun;
+
+    /**
+     * Loads the manifest and the journal of the previous job from rootDest, if the configuration enables them.
+     */
+    public CopySkipPolicy(Path rootSrc, Path rootDest, CopyConfiguration configuration) {
+        this.rootSrc = rootSrc;
+        this.incrementalCopy = configuration.isIncrementalCopy();
+        this.contentHashComparison = configuration.isContentHashComparison();
+        this.previousManifest = (configuration.isManifestEnabled() && incrementalCopy)
+                ? CopyManifest.load(rootDest.resolve(configuration.getManifestFileName()))
+                : CopyManifest.empty();
+        this.entriesCompletedByPreviousRun = (configuration.isJournalEnabled() && configuration.isResume())
+                ? CopyJournal.loadCompletedEntries(rootDest.resolve(configuration.getJournalFileName()))
+                : Collections.<String>emptySet();
+    }
+
+    public Decision decide(Path srcFile, BasicFileAttributes srcAttrs, Path destFile) {
+        if (isCompletedByPreviousRun(srcFile)) {
+            return Decision.SKIP_COMPLETED_BY_PREVIOUS_RUN;
+        }
+        if (incrementalCopy && isDestFileUpToDate(srcFile, srcAttrs, destFile)) {
+            return Decision.SKIP_UP_TO_DATE;
+        }
+        return Decision.COPY;
+    }
+
+    /**
+     * @return the manifest written by the previous job, empty if the copy is not incremental or there is none
+     */
+    public CopyManifest getPreviousManifest() {
+        return previousManifest;
+    }
+
+    private boolean isCompletedByPreviousRun(Path srcFile) {
+        return !entriesCompletedByPreviousRun.isEmpty()
+                && entriesCompletedByPreviousRun.contains(RelativePaths.toRelativePath(rootSrc, srcFile));
+    }
+
+    private boolean isDestFileUpToDate(Path srcFile, BasicFileAttributes srcAttrs, Path destFile) {
+        if (!srcAttrs.isRegularFile()) {
+            return false;
+        }
+        CopyManifest.Entry manifestEntry = (previousManifest.size() > 0) ? previousManifest.get(RelativePaths.toRelativePath(rootSrc, srcFile)) : null;
+        if (manifestEntry != null && (!contentHashComparison || manifestEntry.getChecksum() != null)) {
+            return isManifestEntryUpToDate(srcFile, srcAttrs, manifestEntry);
+        }
+        try {
+            BasicFileAttributes destAttrs = Files.readAttributes(destFile, BasicFileAttributes.class);
+            if (!destAttrs.isRegularFile()
+                    || destAttrs.size() != srcAttrs.size()
+                    || destAttrs.lastModifiedTime().toMillis() != srcAttrs.lastModifiedTime().toMillis()) {
+                return false;
+            }
+            return !contentHashComparison || Arrays.equals(FileChecksums.checksum(srcFile), FileChecksums.checksum(destFile));
+        } catch (NoSuchFileException ex) {
+            return false;
+        } catch (IOException ex) {
+            LOG.warn("Unable to compare srcFile: " + srcFile + " with destFile: " + destFile + ", ex: " + ex.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Compares src with what the previous job copied, without touching dest.
+     */
+    private boolean isManifestEntryUpToDate(Path srcFile, BasicFileAttributes srcAttrs, CopyManifest.Entry manifestEntry) {
+        if (manifestEntry.getSize() != srcAttrs.size() || manifestEntry.getLastModifiedMillis() != srcAttrs.lastModifiedTime().toMillis()) {
+            return false;
+        }
+        if (!contentHashComparison) {
+            return true;
+        }
+        try {
+            return manifestEntry.getChecksum().equals(FileChecksums.checksumInHex(srcFile));
+        } catch (IOException ex) {
+            LOG.warn("Unable to compute checksum of srcFile: " + srcFile + ", ex: " + ex.toString());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.matteoveroni.javacopier.journal;
+
+import com.matteoveroni.javacopier.paths.RelativePaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only checkpoint journal of the entries completed by a copy job, so a job killed halfway can be resumed
+ * without copying again what was already done.
+ * <p>
+ * Entries are written in batches and the file is fsynced at most every sync interval, trading a few recopied
+ * files after a crash for far less I/O than a sync per file. A torn last line, left by a crash in the middle of a
+ * write, is ignored when the journal is loaded. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyJournal implements Closeable {
+
+    public static final String DEFAULT_FILE_NAME = ".javacopier-journal";
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+    private final static Logger LOG = LoggerFactory.getLogger(CopyJournal.class);
+
+    private final Path journalFile;
+    private final FileChannel journalChannel;
+    private final int batchSize;
+    private final long syncIntervalNanos;
+    private final StringBuilder batch = new StringBuilder();
+    private int batchEntries = 0;
+    private long lastSyncNanos;
+
+    /**
+     * @param append true to keep the entries of the previous run of the job, false to start a new journal
+     */
+    public CopyJournal(Path journalFile, boolean append, int batchSize, long syncIntervalMillis) throws IOException {
+        this.journalFile = journalFile;
+        this.journalChannel = append
+                ? FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.batchSize = batchSize;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.lastSyncNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the relative paths of the entries completed by the previous runs, empty if there is no journal
+     */
+    public static Set<String> loadCompletedEntries(Path journalFile) {
+        Set<String> completedEntries = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n') {
+                    completedEntries.add(RelativePaths.unescape(line.toString()));
+                    line.setLength(0);
+                } else {
+                    line.append((char) c);
+                }
+            }
+            if (line.length() > 0) {
+                LOG.warn("Ignored torn last entry of journal: " + journalFile);
+            }
+        } catch (NoSuchFileException ex) {
+            LOG.debug("No journal to resume found: " + journalFile);
+        } catch (IOException ex) {
+            LOG.warn("Unable to read journal: " + journalFile + ", resuming from the entries read so far. ex: " + ex.toString());
+        }
+        LOG.debug("Journal " + journalFile + " loaded, completed entries: " + completedEntries.size());
+        return completedEntries;
+    }
+
+    public synchronized void registerCompletedEntry(String relativePath) throws IOException {
+        batch.append(RelativePaths.escape(relativePath)).append('\n');
+        batchEntries++;
+        if (batchEntries >= batchSize) {
+            writeBatch();
+        }
+        if (System.nanoTime() - lastSyncNanos >= syncIntervalNanos) {
+            writeBatch();
+            sync();
+        }
+    }
+
+    public Path getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Writes and syncs the pending entries, then closes the journal.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!journalChannel.isOpen()) {
+            return;
+        }
+        try {
+            writeBatch();
+            sync();
+        } finally {
+            journalChannel.close();
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        if (batchEntries == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journalChannel.write(buffer);
+        }
+        batch.setLength(0);
+        batchEntries = 0;
+    }
+
+    private void sync() throws IOException {
+        journalChannel.force(false);
+        lastSyncNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,112 @@
+package com.matteoveroni.javacopier.manifest;
+
+import com.matteoveroni.javacopier.paths.RelativePaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Index of the files written to a dest dir by the previous copy job: relative path, size and last modified time of
+ * the src file and, optionally, its content hash. Comparing the src walk against it tells which files changed
+ * without touching the dest tree.
+ * <p>
+ * The manifest is a gzipped text file: a header line followed by one tab separated line per file.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyManifest {
+
+    public static final String DEFAULT_FILE_NAME = ".javacopier-manifest.gz";
+
+    static final String HEADER = "javacopier-manifest\t1";
+    static final String NO_CHECKSUM = "-";
+
+    private final static Logger LOG = LoggerFactory.getLogger(CopyManifest.class);
+
+    private final Map<String, Entry> entries;
+
+    private CopyManifest(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static CopyManifest empty() {
+        return new CopyManifest(Collections.<String, Entry>emptyMap());
+    }
+
+    /**
+     * @return the manifest stored in manifestFile, or an empty one if it doesn't exist or cannot be read
+     */
+    public static CopyManifest load(Path manifestFile) {
+        Map<String, Entry> entries = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(manifestFile)), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                LOG.warn("Unknown manifest format: " + manifestFile + ", ignored");
+                return empty();
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                String checksum = NO_CHECKSUM.equals(fields[2]) ? null : fields[2];
+                entries.put(RelativePaths.unescape(fields[3]), new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), checksum));
+            }
+        } catch (NoSuchFileException ex) {
+            LOG.debug("No manifest found: " + manifestFile);
+            return empty();
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Unable to read manifest: " + manifestFile + ", ignored. ex: " + ex.toString());
+            return empty();
+        }
+        LOG.debug("Manifest " + manifestFile + " loaded, entries: " + entries.size());
+        return new CopyManifest(entries);
+    }
+
+    /**
+     * @return the entry of the file, or null if the file is not in the manifest
+     */
+    public Entry get(String relativePath) {
+        return entries.get(relativePath);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static class Entry {
+
+        private final long size;
+        private final long lastModifiedMillis;
+        private final String checksum;
+
+        public Entry(long size, long lastModifiedMillis, String checksum) {
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.checksum = checksum;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModifiedMillis() {
+            return lastModifiedMillis;
+        }
+
+        /**
+         * @return the hex content hash, or null if it was not computed
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+}
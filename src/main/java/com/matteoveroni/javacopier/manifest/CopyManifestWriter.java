@@ -0,0 +1,75 @@
+package com.matteoveroni.javacopier.manifest;
+
+import com.matteoveroni.javacopier.paths.RelativePaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the entries of a new {@link CopyManifest} to a temporary file next to the manifest, which replaces the
+ * previous manifest only when {@link #commit()} is called. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyManifestWriter implements Closeable {
+
+    private final static Logger LOG = LoggerFactory.getLogger(CopyManifestWriter.class);
+
+    private final Path manifestFile;
+    private final Path tempManifestFile;
+    private final BufferedWriter writer;
+
+    public CopyManifestWriter(Path manifestFile) throws IOException {
+        this.manifestFile = manifestFile;
+        this.tempManifestFile = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        this.writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(tempManifestFile)), StandardCharsets.UTF_8));
+        this.writer.write(CopyManifest.HEADER);
+        this.writer.newLine();
+    }
+
+    /**
+     * @param checksum the hex content hash, or null if not computed
+     */
+    public synchronized void write(String relativePath, long size, long lastModifiedMillis, String checksum) throws IOException {
+        writer.write(Long.toString(size));
+        writer.write('\t');
+        writer.write(Long.toString(lastModifiedMillis));
+        writer.write('\t');
+        writer.write(checksum == null ? CopyManifest.NO_CHECKSUM : checksum);
+        writer.write('\t');
+        writer.write(RelativePaths.escape(relativePath));
+        writer.newLine();
+    }
+
+    /**
+     * Closes the new manifest and replaces the previous one with it.
+     */
+    public synchronized void commit() throws IOException {
+        writer.close();
+        try {
+            Files.move(tempManifestFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tempManifestFile, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        LOG.debug("Manifest " + manifestFile + " written");
+    }
+
+    /**
+     * Discards the new manifest, leaving the previous one untouched.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        Files.deleteIfExists(tempManifestFile);
+    }
+}
@@ -0,0 +1,58 @@
+package com.matteoveroni.javacopier.metrics;
+
+/**
+ * Instrumentation SPI of the copy pipeline, set with
+ * {@link com.matteoveroni.javacopier.CopyConfiguration.Builder#setMetrics(CopyMetrics)}.
+ * <p>
+ * Implementations must be thread safe and cheap, since they are called for every file by the copying threads.
+ * {@link InMemoryCopyMetrics} keeps everything in memory and {@link JmxCopyMetrics} also exports it over JMX.
+ *
+ * @author Matteo Veroni
+ */
+public interface CopyMetrics {
+
+    CopyMetrics NONE = new CopyMetrics() {
+    };
+
+    /**
+     * @param nanos time spent in one execution of phase
+     */
+    default void recordPhase(CopyPhase phase, long nanos) {
+    }
+
+    /**
+     * @param fileSize size of the file copied
+     * @param nanos    time spent copying it, retries included
+     */
+    default void recordFileCopied(long fileSize, long nanos) {
+    }
+
+    /**
+     * @param fileSize size of the file not copied because dest was already up to date
+     */
+    default void recordFileSkipped(long fileSize) {
+    }
+
+    /**
+     * @param fileSize size of the file not copied because dest was linked to an identical file already copied, see
+     *                 {@link com.matteoveroni.javacopier.CopyConfiguration.Builder#setDeduplication(boolean)}
+     */
+    default void recordFileDeduplicated(long fileSize) {
+    }
+
+    default void recordFileFailed() {
+    }
+
+    /**
+     * Records a failed attempt to copy a file that is going to be tried again.
+     */
+    default void recordRetry() {
+    }
+
+    /**
+     * Records the number of files copied at the same time chosen by the adaptive concurrency, see
+     * {@link com.matteoveroni.javacopier.concurrency.AdaptiveConcurrencyLimiter}, every time it changes.
+     */
+    default void recordConcurrency(int concurrency) {
+    }
+}
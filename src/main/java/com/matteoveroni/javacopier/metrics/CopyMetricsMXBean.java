@@ -0,0 +1,48 @@
+package com.matteoveroni.javacopier.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics exported by {@link JmxCopyMetrics}. Maps are keyed by {@link CopyPhase} or
+ * {@link FileSizeBucket} name.
+ *
+ * @author Matteo Veroni
+ */
+public interface CopyMetricsMXBean {
+
+    long getCopiedFiles();
+
+    long getCopiedBytes();
+
+    long getSkippedFiles();
+
+    long getSkippedBytes();
+
+    long getDeduplicatedFiles();
+
+    long getDeduplicatedBytes();
+
+    long getFailedFiles();
+
+    long getRetries();
+
+    int getConcurrency();
+
+    /**
+     * @return the concurrency chosen by the adaptive concurrency, keyed by the milliseconds since the metrics were
+     * created
+     */
+    Map<String, Integer> getConcurrencyTimeline();
+
+    Map<String, Long> getPhaseCounts();
+
+    Map<String, Long> getPhaseTotalMillis();
+
+    Map<String, Long> getFileCopyCounts();
+
+    Map<String, Double> getFileCopyMeanMillis();
+
+    Map<String, Double> getFileCopyP99Millis();
+
+    Map<String, Double> getFileCopyMaxMillis();
+}
@@ -0,0 +1,44 @@
+package com.matteoveroni.javacopier.metrics;
+
+/**
+ * The phases of a copy job timed by {@link CopyMetrics}.
+ *
+ * @author Matteo Veroni
+ */
+public enum CopyPhase {
+    /**
+     * Walk counting the files and bytes to copy.
+     */
+    FILES_DISCOVERY,
+    /**
+     * Extraction of the sort keys of the entries of a directory and their sorting before copying them, see
+     * {@link com.matteoveroni.javacopier.CopyConfiguration.Builder#setTraversalOrder}.
+     */
+    TRAVERSAL_PLANNING,
+    /**
+     * Creation of a dest directory.
+     */
+    DIRECTORY_CREATION,
+    /**
+     * Copy of the content of a file, retries included.
+     */
+    FILE_TRANSFER,
+    /**
+     * Copy of the attributes of a directory once all its entries are copied.
+     */
+    ATTRIBUTES_COPY,
+    /**
+     * Comparison of the checksums of a copied file and of its src, see
+     * {@link com.matteoveroni.javacopier.CopyConfiguration.Builder#setVerification(boolean)}.
+     */
+    VERIFICATION,
+    /**
+     * Waits to stay within the limits of the throttle, see
+     * {@link com.matteoveroni.javacopier.CopyConfiguration.Builder#setThrottle}.
+     */
+    THROTTLING,
+    /**
+     * Time spent inside the {@link com.matteoveroni.javacopier.CopyListener} callbacks.
+     */
+    LISTENER_CALLBACK
+}
@@ -0,0 +1,38 @@
+package com.matteoveroni.javacopier.metrics;
+
+/**
+ * Size ranges of the files whose copy latencies are recorded separately by {@link CopyMetrics}, since the latency
+ * of a 1KB file and of a 1GB file have nothing in common.
+ *
+ * @author Matteo Veroni
+ */
+public enum FileSizeBucket {
+
+    UP_TO_4KB(4L * 1024),
+    UP_TO_64KB(64L * 1024),
+    UP_TO_1MB(1024L * 1024),
+    UP_TO_16MB(16L * 1024 * 1024),
+    UP_TO_256MB(256L * 1024 * 1024),
+    OVER_256MB(Long.MAX_VALUE);
+
+    private static final FileSizeBucket[] BUCKETS = values();
+
+    private final long maxSize;
+
+    FileSizeBucket(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public static FileSizeBucket of(long fileSize) {
+        for (FileSizeBucket bucket : BUCKETS) {
+            if (fileSize <= bucket.maxSize) {
+                return bucket;
+            }
+        }
+        return OVER_256MB;
+    }
+}
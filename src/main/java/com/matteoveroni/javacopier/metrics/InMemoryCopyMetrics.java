@@ -0,0 +1,167 @@
+package com.matteoveroni.javacopier.metrics;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link CopyMetrics} accumulated in memory, for tests or to be read by the application. Thread safe and lock free.
+ *
+ * @author Matteo Veroni
+ */
+public class InMemoryCopyMetrics implements CopyMetrics {
+
+    /**
+     * Number of concurrency changes kept, the oldest ones are dropped.
+     */
+    public static final int MAX_CONCURRENCY_HISTORY = 1024;
+
+    private final Map<CopyPhase, LatencyHistogram> phaseTimers = new EnumMap<>(CopyPhase.class);
+    private final Map<FileSizeBucket, LatencyHistogram> fileCopyLatencies = new EnumMap<>(FileSizeBucket.class);
+    private final LongAdder copiedFiles = new LongAdder();
+    private final LongAdder copiedBytes = new LongAdder();
+    private final LongAdder skippedFiles = new LongAdder();
+    private final LongAdder skippedBytes = new LongAdder();
+    private final LongAdder deduplicatedFiles = new LongAdder();
+    private final LongAdder deduplicatedBytes = new LongAdder();
+    private final LongAdder failedFiles = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final long creationNanos = System.nanoTime();
+    private volatile int concurrency = 0;
+    private final Queue<ConcurrencySample> concurrencyHistory = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger concurrencyHistorySize = new AtomicInteger(0);
+
+    public InMemoryCopyMetrics() {
+        for (CopyPhase phase : CopyPhase.values()) {
+            phaseTimers.put(phase, new LatencyHistogram());
+        }
+        for (FileSizeBucket bucket : FileSizeBucket.values()) {
+            fileCopyLatencies.put(bucket, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public void recordPhase(CopyPhase phase, long nanos) {
+        phaseTimers.get(phase).record(nanos);
+    }
+
+    @Override
+    public void recordFileCopied(long fileSize, long nanos) {
+        copiedFiles.increment();
+        copiedBytes.add(fileSize);
+        fileCopyLatencies.get(FileSizeBucket.of(fileSize)).record(nanos);
+    }
+
+    @Override
+    public void recordFileSkipped(long fileSize) {
+        skippedFiles.increment();
+        skippedBytes.add(fileSize);
+    }
+
+    @Override
+    public void recordFileDeduplicated(long fileSize) {
+        deduplicatedFiles.increment();
+        deduplicatedBytes.add(fileSize);
+    }
+
+    @Override
+    public void recordFileFailed() {
+        failedFiles.increment();
+    }
+
+    @Override
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    @Override
+    public void recordConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        concurrencyHistory.add(new ConcurrencySample(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - creationNanos), concurrency));
+        if (concurrencyHistorySize.incrementAndGet() > MAX_CONCURRENCY_HISTORY && concurrencyHistory.poll() != null) {
+            concurrencyHistorySize.decrementAndGet();
+        }
+    }
+
+    public LatencyHistogram getPhaseTimer(CopyPhase phase) {
+        return phaseTimers.get(phase);
+    }
+
+    public LatencyHistogram getFileCopyLatency(FileSizeBucket bucket) {
+        return fileCopyLatencies.get(bucket);
+    }
+
+    public long getCopiedFiles() {
+        return copiedFiles.sum();
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes.sum();
+    }
+
+    public long getSkippedFiles() {
+        return skippedFiles.sum();
+    }
+
+    public long getSkippedBytes() {
+        return skippedBytes.sum();
+    }
+
+    public long getDeduplicatedFiles() {
+        return deduplicatedFiles.sum();
+    }
+
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.sum();
+    }
+
+    public long getFailedFiles() {
+        return failedFiles.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return the last number of files copied at the same time chosen by the adaptive concurrency, 0 if never used
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the last {@link #MAX_CONCURRENCY_HISTORY} changes of the adaptive concurrency, oldest first
+     */
+    public List<ConcurrencySample> getConcurrencyHistory() {
+        return new ArrayList<>(concurrencyHistory);
+    }
+
+    public static class ConcurrencySample {
+
+        private final long elapsedMillis;
+        private final int concurrency;
+
+        ConcurrencySample(long elapsedMillis, int concurrency) {
+            this.elapsedMillis = elapsedMillis;
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * @return the milliseconds since the metrics were created
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.matteoveroni.javacopier.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InMemoryCopyMetrics} exported as the {@link CopyMetricsMXBean} named
+ * com.matteoveroni.javacopier:type=CopyMetrics,name=&lt;name&gt; on the platform MBean server until closed.
+ *
+ * @author Matteo Veroni
+ */
+public class JmxCopyMetrics extends InMemoryCopyMetrics implements CopyMetricsMXBean, Closeable {
+
+    private final static Logger LOG = LoggerFactory.getLogger(JmxCopyMetrics.class);
+
+    public static final String OBJECT_NAME_PREFIX = "com.matteoveroni.javacopier:type=CopyMetrics,name=";
+
+    private static final double NANOS_IN_MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ObjectName objectName;
+
+    /**
+     * @throws IllegalArgumentException if the name is not valid or already registered
+     */
+    public JmxCopyMetrics(String name) {
+        try {
+            this.objectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException ex) {
+            throw new IllegalArgumentException("Unable to register copy metrics: " + name + " on JMX, ex: " + ex.toString(), ex);
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public Map<String, Integer> getConcurrencyTimeline() {
+        Map<String, Integer> concurrencyTimeline = new LinkedHashMap<>();
+        for (ConcurrencySample sample : getConcurrencyHistory()) {
+            concurrencyTimeline.put(String.valueOf(sample.getElapsedMillis()), sample.getConcurrency());
+        }
+        return concurrencyTimeline;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        Map<String, Long> phaseCounts = new LinkedHashMap<>();
+        for (CopyPhase phase : CopyPhase.values()) {
+            phaseCounts.put(phase.name(), getPhaseTimer(phase).getCount());
+        }
+        return phaseCounts;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseTotalMillis() {
+        Map<String, Long> phaseTotalMillis = new LinkedHashMap<>();
+        for (CopyPhase phase : CopyPhase.values()) {
+            phaseTotalMillis.put(phase.name(), TimeUnit.NANOSECONDS.toMillis(getPhaseTimer(phase).getTotalNanos()));
+        }
+        return phaseTotalMillis;
+    }
+
+    @Override
+    public Map<String, Long> getFileCopyCounts() {
+        Map<String, Long> fileCopyCounts = new LinkedHashMap<>();
+        for (FileSizeBucket bucket : FileSizeBucket.values()) {
+            fileCopyCounts.put(bucket.name(), getFileCopyLatency(bucket).getCount());
+        }
+        return fileCopyCounts;
+    }
+
+    @Override
+    public Map<String, Double> getFileCopyMeanMillis() {
+        Map<String, Double> fileCopyMeanMillis = new LinkedHashMap<>();
+        for (FileSizeBucket bucket : FileSizeBucket.values()) {
+            fileCopyMeanMillis.put(bucket.name(), getFileCopyLatency(bucket).getMeanMillis());
+        }
+        return fileCopyMeanMillis;
+    }
+
+    @Override
+    public Map<String, Double> getFileCopyP99Millis() {
+        Map<String, Double> fileCopyP99Millis = new LinkedHashMap<>();
+        for (FileSizeBucket bucket : FileSizeBucket.values()) {
+            fileCopyP99Millis.put(bucket.name(), getFileCopyLatency(bucket).getPercentileNanos(99) / NANOS_IN_MILLISECOND);
+        }
+        return fileCopyP99Millis;
+    }
+
+    @Override
+    public Map<String, Double> getFileCopyMaxMillis() {
+        Map<String, Double> fileCopyMaxMillis = new LinkedHashMap<>();
+        for (FileSizeBucket bucket : FileSizeBucket.values()) {
+            fileCopyMaxMillis.put(bucket.name(), getFileCopyLatency(bucket).getMaxNanos() / NANOS_IN_MILLISECOND);
+        }
+        return fileCopyMaxMillis;
+    }
+
+    /**
+     * Unregisters the metrics from the MBean server.
+     */
+    @Override
+    public void close() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException ex) {
+            LOG.warn("Unable to unregister copy metrics: " + objectName + " from JMX, ex: " + ex.toString());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.matteoveroni.javacopier.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of latencies with power of two buckets: recording a value is a couple of atomic increments
+ * and the percentiles are precise within a factor of two, which is enough to tell a slow file system call from a
+ * fast one.
+ *
+ * @author Matteo Veroni
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong(0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        bucketCounts.incrementAndGet(bucketOf(value));
+        count.increment();
+        totalNanos.add(value);
+        long max;
+        while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value)) {
+            // retry until value is stored or a greater one is found
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanMillis() {
+        long samples = count.sum();
+        return samples == 0 ? 0.0 : (double) totalNanos.sum() / samples / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long samples = count.sum();
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(samples * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += bucketCounts.get(bucket);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBoundOf(bucket), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    private static int bucketOf(long nanos) {
+        return nanos == 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos) - 1;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        return bucket >= 62 ? Long.MAX_VALUE : (2L << bucket) - 1;
+    }
+}
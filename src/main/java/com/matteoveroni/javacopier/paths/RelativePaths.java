@@ -0,0 +1,51 @@
+package com.matteoveroni.javacopier.paths;
+
+import java.nio.file.Path;
+
+/**
+ * Portable text form of the paths of a tree relative to its root, used by the files that JavaCopier writes in the
+ * dest dir to remember what it did.
+ *
+ * @author Matteo Veroni
+ */
+public class RelativePaths {
+
+    private RelativePaths() {
+        //  PRIVATE CONSTRUCTOR
+    }
+
+    /**
+     * @return the path relative to root, with '/' as separator whatever the file system is
+     */
+    public static String toRelativePath(Path root, Path path) {
+        StringBuilder relativePath = new StringBuilder();
+        for (Path name : root.relativize(path)) {
+            if (relativePath.length() > 0) {
+                relativePath.append('/');
+            }
+            relativePath.append(name.toString());
+        }
+        return relativePath.toString();
+    }
+
+    /**
+     * @return the relative path with backslashes, tabs and line breaks escaped, so it fits in a single text field
+     */
+    public static String escape(String relativePath) {
+        return relativePath.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    public static String unescape(String escapedRelativePath) {
+        StringBuilder relativePath = new StringBuilder(escapedRelativePath.length());
+        for (int i = 0; i < escapedRelativePath.length(); i++) {
+            char c = escapedRelativePath.charAt(i);
+            if (c == '\\' && i + 1 < escapedRelativePath.length()) {
+                char escaped = escapedRelativePath.charAt(++i);
+                relativePath.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else {
+                relativePath.append(c);
+            }
+        }
+        return relativePath.toString();
+    }
+}
@@ -0,0 +1,197 @@
+package com.matteoveroni.javacopier.recording;
+
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.checksums.FileChecksums;
+import com.matteoveroni.javacopier.journal.CopyJournal;
+import com.matteoveroni.javacopier.manifest.CopyManifest;
+import com.matteoveroni.javacopier.manifest.CopyManifestWriter;
+import com.matteoveroni.javacopier.paths.RelativePaths;
+import com.matteoveroni.javacopier.verification.CopyVerifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Records what a job did with each file once it is done with it: the files copied are queued for the
+ * {@link CopyVerifier}, and the files copied or skipped are written to the new {@link CopyManifest} and to the
+ * {@link CopyJournal}, whichever of them are enabled. Both files are opened with the first file recorded and
+ * completed by {@link #complete(boolean)}. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyRecorder {
+
+    private final static Logger LOG = LoggerFactory.getLogger(CopyRecorder.class);
+
+    private final Path rootSrc;
+    private final boolean contentHashComparison;
+    private final Path manifestFile;
+    private final CopyManifest previousManifest;
+    private CopyManifestWriter manifestWriter;
+    private final Path journalFile;
+    private final boolean resume;
+    private final int journalBatchSize;
+    private final long journalSyncIntervalMillis;
+    private CopyJournal journal;
+    private final CopyVerifier verifier;
+    private volatile boolean verificationFailed = false;
+
+    /**
+     * @param previousManifest the manifest written by the previous job, whose checksums are reused for the files
+     *                         skipped as up to date
+     * @param verifier         null if verification is disabled
+     */
+    public CopyRecorder(Path rootSrc, Path rootDest, CopyConfiguration configuration, CopyManifest previousManifest, CopyVerifier verifier) {
+        this.rootSrc = rootSrc;
+        this.contentHashComparison = configuration.isContentHashComparison();
+        this.manifestFile = configuration.isManifestEnabled() ? rootDest.resolve(configuration.getManifestFileName()) : null;
+        this.previousManifest = previousManifest;
+        this.journalFile = configuration.isJournalEnabled() ? rootDest.resolve(configuration.getJournalFileName()) : null;
+        this.resume = configuration.isResume();
+        this.journalBatchSize = configuration.getJournalBatchSize();
+        this.journalSyncIntervalMillis = configuration.getJournalSyncIntervalMillis();
+        this.verifier = verifier;
+    }
+
+    public void onFileCopied(Path srcFile, Path destFile, BasicFileAttributes srcAttrs) {
+        if (verifier != null && srcAttrs.isRegularFile()) {
+            verifier.registerCopiedFile(srcFile, destFile, srcAttrs.size());
+        }
+        recordFileInManifest(srcFile, srcAttrs, false);
+        recordFileInJournal(srcFile);
+    }
+
+    /**
+     * Records a file skipped since its dest is up to date, already listed in the journal if the job is resumed.
+     */
+    public void onFileUpToDate(Path srcFile, BasicFileAttributes srcAttrs) {
+        recordFileInManifest(srcFile, srcAttrs, true);
+        recordFileInJournal(srcFile);
+    }
+
+    /**
+     * Records a file skipped since the job being resumed had already copied it, so it is in the journal already.
+     */
+    public void onFileCompletedByPreviousRun(Path srcFile, BasicFileAttributes srcAttrs) {
+        recordFileInManifest(srcFile, srcAttrs, false);
+    }
+
+    /**
+     * To be called once the walk is over, if verification is enabled: compares the content of the files copied
+     * with their src, see {@link CopyVerifier}.
+     */
+    public void verifyCopiedFiles() {
+        if (verifier != null && verifier.verifyCopiedFiles() > 0) {
+            verificationFailed = true;
+        }
+    }
+
+    /**
+     * To be called once the walk is over: writes the manifest and closes the journal, deleting it if nothing
+     * failed.
+     * <p>
+     * If a file failed verification neither of them can be trusted, since they list it as copied: the manifest is
+     * deleted and the journal too, so the next job compares src with what is actually in dest.
+     *
+     * @param copiesFailed whether some file of the job failed, so the journal is kept to resume it
+     */
+    public synchronized void complete(boolean copiesFailed) {
+        if (verificationFailed) {
+            discardManifestAndJournal();
+            return;
+        }
+        if (manifestWriter != null) {
+            try {
+                manifestWriter.commit();
+            } catch (IOException ex) {
+                LOG.error("Unable to write manifest: " + manifestFile + ", ex: " + ex.toString());
+            }
+            manifestWriter = null;
+        }
+        if (journalFile != null) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                    journal = null;
+                }
+                if (!copiesFailed) {
+                    Files.deleteIfExists(journalFile);
+                }
+            } catch (IOException ex) {
+                LOG.error("Unable to complete journal: " + journalFile + ", ex: " + ex.toString());
+            }
+        }
+    }
+
+    private void discardManifestAndJournal() {
+        try {
+            if (manifestWriter != null) {
+                manifestWriter.close();
+                manifestWriter = null;
+            }
+            if (manifestFile != null) {
+                Files.deleteIfExists(manifestFile);
+            }
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            if (journalFile != null) {
+                Files.deleteIfExists(journalFile);
+            }
+        } catch (IOException ex) {
+            LOG.error("Unable to discard manifest and journal after a failed verification, ex: " + ex.toString());
+        }
+    }
+
+    private void recordFileInJournal(Path srcFile) {
+        if (journalFile == null) {
+            return;
+        }
+        try {
+            openJournalIfNeeded().registerCompletedEntry(RelativePaths.toRelativePath(rootSrc, srcFile));
+        } catch (IOException ex) {
+            LOG.warn("Unable to record srcFile: " + srcFile + " in journal, ex: " + ex.toString());
+        }
+    }
+
+    private synchronized CopyJournal openJournalIfNeeded() throws IOException {
+        if (journal == null) {
+            journal = new CopyJournal(journalFile, resume, journalBatchSize, journalSyncIntervalMillis);
+        }
+        return journal;
+    }
+
+    private void recordFileInManifest(Path srcFile, BasicFileAttributes srcAttrs, boolean upToDate) {
+        if (manifestFile == null || !srcAttrs.isRegularFile()) {
+            return;
+        }
+        String relativePath = RelativePaths.toRelativePath(rootSrc, srcFile);
+        try {
+            String checksum = null;
+            if (contentHashComparison) {
+                CopyManifest.Entry previousEntry = previousManifest.get(relativePath);
+                checksum = (upToDate && previousEntry != null && previousEntry.getChecksum() != null)
+                        ? previousEntry.getChecksum()
+                        : FileChecksums.checksumInHex(srcFile);
+            }
+            CopyManifestWriter writer = openManifestWriterIfNeeded();
+            if (writer != null) {
+                writer.write(relativePath, srcAttrs.size(), srcAttrs.lastModifiedTime().toMillis(), checksum);
+            }
+        } catch (IOException ex) {
+            LOG.warn("Unable to record srcFile: " + srcFile + " in manifest, ex: " + ex.toString());
+        }
+    }
+
+    private synchronized CopyManifestWriter openManifestWriterIfNeeded() throws IOException {
+        if (manifestWriter == null) {
+            manifestWriter = new CopyManifestWriter(manifestFile);
+        }
+        return manifestWriter;
+    }
+}
@@ -0,0 +1,251 @@
+package com.matteoveroni.javacopier.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Runs the copies of the files on an {@link Executor} limiting the copies running on each device, so that several
+ * devices work in parallel while none of them gets more concurrent requests than it can serve.
+ * <p>
+ * The device of a path is its {@link FileStore}, resolved once per directory. A copy reads from the device of its
+ * src and writes to the device of its dest, so it runs only when both have a free slot. Copies waiting for their
+ * devices are queued by pair of devices and the queues are served round robin, a new queue being served next: a
+ * slow device makes its own copies wait without holding back the copies on the other ones, and the pairs sharing a
+ * device take turns on it. A queue can be bounded, making the caller wait while it is full. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class DeviceIoScheduler {
+
+    private final static Logger LOG = LoggerFactory.getLogger(DeviceIoScheduler.class);
+
+    private static final Object UNKNOWN_DEVICE = "unknown device";
+
+    private final Executor executor;
+    private final int maxTasksPerDevice;
+    private final int maxQueuedTasksPerDevicePair;
+    private final Function<Path, Path> destPathResolver;
+    private final Function<Path, Object> deviceResolver;
+    private final Map<Path, Object> devicesByDirectory = new ConcurrentHashMap<>();
+    private final Map<DevicePair, Queue<Runnable>> queues = new HashMap<>();
+    private final List<DevicePair> queuesOrder = new ArrayList<>();
+    private int nextQueue = 0;
+    private final Map<Object, Integer> runningTasksByDevice = new HashMap<>();
+
+    /**
+     * @param maxTasksPerDevice maximum number of copies reading or writing each device at the same time
+     * @param destPathResolver  gives the dest path of a src file
+     */
+    public DeviceIoScheduler(Executor executor, int maxTasksPerDevice, Function<Path, Path> destPathResolver) {
+        this(executor, maxTasksPerDevice, destPathResolver, null);
+    }
+
+    /**
+     * @param deviceResolver gives the device of a directory, compared with equals, when null it is its
+     *                       {@link FileStore}
+     */
+    public DeviceIoScheduler(Executor executor, int maxTasksPerDevice, Function<Path, Path> destPathResolver, Function<Path, Object> deviceResolver) {
+        this(executor, maxTasksPerDevice, Integer.MAX_VALUE, destPathResolver, deviceResolver);
+    }
+
+    /**
+     * @param maxQueuedTasksPerDevicePair maximum number of copies waiting for each pair of devices, beyond which
+     *                                    {@link #execute(Path, Runnable)} waits
+     */
+    public DeviceIoScheduler(Executor executor, int maxTasksPerDevice, int maxQueuedTasksPerDevicePair, Function<Path, Path> destPathResolver, Function<Path, Object> deviceResolver) {
+        if (maxTasksPerDevice < 1) {
+            throw new IllegalArgumentException("maxTasksPerDevice must be greater than 0");
+        }
+        if (maxQueuedTasksPerDevicePair < 1) {
+            throw new IllegalArgumentException("maxQueuedTasksPerDevicePair must be greater than 0");
+        }
+        this.executor = executor;
+        this.maxTasksPerDevice = maxTasksPerDevice;
+        this.maxQueuedTasksPerDevicePair = maxQueuedTasksPerDevicePair;
+        this.destPathResolver = destPathResolver;
+        this.deviceResolver = deviceResolver != null ? deviceResolver : DeviceIoScheduler::readDevice;
+    }
+
+    /**
+     * Queues the copy of srcFile, which runs as soon as the devices of srcFile and of its dest have a free slot.
+     * Waits while the queue of the devices is full.
+     */
+    public void execute(Path srcFile, Runnable copyTask) throws InterruptedException {
+        DevicePair devices = new DevicePair(resolveDevice(srcFile), resolveDevice(destPathResolver.apply(srcFile)));
+        List<Runnable> startedTasks;
+        synchronized (this) {
+            Queue<Runnable> queue = queues.get(devices);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(devices, queue);
+                queuesOrder.add(nextQueue, devices);
+            }
+            while (queue.size() >= maxQueuedTasksPerDevicePair) {
+                wait();
+            }
+            queue.add(copyTask);
+            startedTasks = dispatch();
+        }
+        submit(startedTasks);
+    }
+
+    /**
+     * @return the number of devices seen so far
+     */
+    public synchronized int getDevicesCount() {
+        return runningTasksByDevice.size();
+    }
+
+    /**
+     * Starts the queued copies whose devices have a free slot, taking one copy per queue in turn from where the
+     * previous dispatch stopped, until a whole round of the queues starts nothing.
+     *
+     * @return the copies started, to be handed to the executor by {@link #submit(List)}
+     */
+    private List<Runnable> dispatch() {
+        List<Runnable> startedTasks = new ArrayList<>();
+        int queuesWithoutStart = 0;
+        while (queuesWithoutStart < queuesOrder.size()) {
+            DevicePair devices = queuesOrder.get(nextQueue);
+            nextQueue = (nextQueue + 1) % queuesOrder.size();
+            Queue<Runnable> queue = queues.get(devices);
+            if (!queue.isEmpty() && hasFreeSlots(devices)) {
+                startedTasks.add(start(devices, queue.poll()));
+                queuesWithoutStart = 0;
+            } else {
+                queuesWithoutStart++;
+            }
+        }
+        if (!startedTasks.isEmpty()) {
+            // wakes up the callers waiting for room in a queue
+            notifyAll();
+        }
+        return startedTasks;
+    }
+
+    private Runnable start(DevicePair devices, Runnable copyTask) {
+        for (Object device : devices.distinctDevices()) {
+            runningTasksByDevice.merge(device, 1, Integer::sum);
+        }
+        return () -> {
+            try {
+                copyTask.run();
+            } finally {
+                complete(devices);
+            }
+        };
+    }
+
+    /**
+     * Hands the started copies to the executor. Called without holding the monitor, since a copy rejected by the
+     * executor runs on the calling thread and its completion takes the monitor again.
+     */
+    private void submit(List<Runnable> startedTasks) {
+        for (Runnable startedTask : startedTasks) {
+            try {
+                executor.execute(startedTask);
+            } catch (RejectedExecutionException ex) {
+                LOG.warn("Copy rejected by the executor, running it on the calling thread");
+                startedTask.run();
+            }
+        }
+    }
+
+    private void complete(DevicePair devices) {
+        List<Runnable> startedTasks;
+        synchronized (this) {
+            for (Object device : devices.distinctDevices()) {
+                runningTasksByDevice.merge(device, -1, Integer::sum);
+            }
+            startedTasks = dispatch();
+        }
+        submit(startedTasks);
+    }
+
+    private boolean hasFreeSlots(DevicePair devices) {
+        for (Object device : devices.distinctDevices()) {
+            if (runningTasksByDevice.getOrDefault(device, 0) >= maxTasksPerDevice) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the device of the directory of path, or of its nearest existing ancestor
+     */
+    private Object resolveDevice(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null) {
+            return UNKNOWN_DEVICE;
+        }
+        Object device = devicesByDirectory.get(directory);
+        if (device == null) {
+            device = deviceResolver.apply(directory);
+            devicesByDirectory.put(directory, device);
+        }
+        return device;
+    }
+
+    private static Object readDevice(Path directory) {
+        for (Path existing = directory; existing != null; existing = existing.getParent()) {
+            if (Files.exists(existing)) {
+                try {
+                    return Files.getFileStore(existing);
+                } catch (IOException ex) {
+                    LOG.warn("Unable to resolve the file store of: " + existing + ", ex: " + ex.toString());
+                    return UNKNOWN_DEVICE;
+                }
+            }
+        }
+        return UNKNOWN_DEVICE;
+    }
+
+    private static class DevicePair {
+
+        private final Object srcDevice;
+        private final Object destDevice;
+
+        DevicePair(Object srcDevice, Object destDevice) {
+            this.srcDevice = srcDevice;
+            this.destDevice = destDevice;
+        }
+
+        Object[] distinctDevices() {
+            return srcDevice.equals(destDevice) ? new Object[]{srcDevice} : new Object[]{srcDevice, destDevice};
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof DevicePair)) {
+                return false;
+            }
+            DevicePair devicePair = (DevicePair) other;
+            return srcDevice.equals(devicePair.srcDevice) && destDevice.equals(devicePair.destDevice);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(srcDevice, destDevice);
+        }
+    }
+}
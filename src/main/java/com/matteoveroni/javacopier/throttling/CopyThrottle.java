@@ -0,0 +1,150 @@
+package com.matteoveroni.javacopier.throttling;
+
+import com.matteoveroni.javacopier.CopyCancelledException;
+import com.matteoveroni.javacopier.CopyControl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the bytes and the files per second copied by the jobs using it, with two token buckets. Each bucket holds
+ * up to one second of its rate, so a job can burst after being idle, and a request bigger than what is available
+ * is granted at once and paid back by waiting, so chunks bigger than the rate are allowed.
+ * <p>
+ * The limits can be changed while the jobs run: waiting jobs see the new limits at once. A limit of
+ * {@link #UNLIMITED} disables its bucket. Thread safe, several jobs sharing a throttle share its limits.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyThrottle {
+
+    public static final long UNLIMITED = 0;
+
+    private static final long MAX_WAIT_MILLIS = 100;
+
+    private final TokenBucket bytesBucket;
+    private final TokenBucket filesBucket;
+
+    /**
+     * @param maxBytesPerSecond bytes copied per second, or {@link #UNLIMITED}
+     * @param maxFilesPerSecond files copied per second, or {@link #UNLIMITED}
+     */
+    public CopyThrottle(long maxBytesPerSecond, long maxFilesPerSecond) {
+        validateLimit(maxBytesPerSecond, "maxBytesPerSecond");
+        validateLimit(maxFilesPerSecond, "maxFilesPerSecond");
+        this.bytesBucket = new TokenBucket(maxBytesPerSecond);
+        this.filesBucket = new TokenBucket(maxFilesPerSecond);
+    }
+
+    public static CopyThrottle unlimited() {
+        return new CopyThrottle(UNLIMITED, UNLIMITED);
+    }
+
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        validateLimit(maxBytesPerSecond, "maxBytesPerSecond");
+        bytesBucket.setRate(maxBytesPerSecond);
+    }
+
+    public long getMaxBytesPerSecond() {
+        return bytesBucket.getRate();
+    }
+
+    public void setMaxFilesPerSecond(long maxFilesPerSecond) {
+        validateLimit(maxFilesPerSecond, "maxFilesPerSecond");
+        filesBucket.setRate(maxFilesPerSecond);
+    }
+
+    public long getMaxFilesPerSecond() {
+        return filesBucket.getRate();
+    }
+
+    public boolean isUnlimited() {
+        return bytesBucket.getRate() == UNLIMITED && filesBucket.getRate() == UNLIMITED;
+    }
+
+    /**
+     * Waits until bytes can be copied without exceeding the bytes limit.
+     *
+     * @return the nanoseconds waited
+     * @throws CopyCancelledException if the job has been cancelled while waiting
+     */
+    public long acquireBytes(long bytes, CopyControl copyControl) throws CopyCancelledException {
+        return bytesBucket.acquire(bytes, copyControl);
+    }
+
+    /**
+     * Waits until a file can be copied without exceeding the files limit.
+     *
+     * @return the nanoseconds waited
+     * @throws CopyCancelledException if the job has been cancelled while waiting
+     */
+    public long acquireFile(CopyControl copyControl) throws CopyCancelledException {
+        return filesBucket.acquire(1, copyControl);
+    }
+
+    private static void validateLimit(long limit, String name) {
+        if (limit < 0) {
+            throw new IllegalArgumentException(name + " cannot be negative");
+        }
+    }
+
+    private static class TokenBucket {
+
+        private long rate;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(long rate) {
+            this.rate = rate;
+            this.tokens = rate;
+        }
+
+        synchronized long getRate() {
+            return rate;
+        }
+
+        /**
+         * The tokens gained with the old rate are kept, within the capacity of the new one.
+         */
+        synchronized void setRate(long rate) {
+            refill();
+            this.rate = rate;
+            tokens = (rate == UNLIMITED) ? 0 : Math.min(tokens, rate);
+            notifyAll();
+        }
+
+        synchronized long acquire(long permits, CopyControl copyControl) throws CopyCancelledException {
+            if (rate == UNLIMITED || permits <= 0) {
+                return 0;
+            }
+            refill();
+            tokens -= permits;
+            if (tokens >= 0) {
+                return 0;
+            }
+            long waitStartNanos = System.nanoTime();
+            while (rate != UNLIMITED && tokens < 0) {
+                if (copyControl.isCancelled()) {
+                    throw new CopyCancelledException();
+                }
+                long waitMillis = (long) Math.ceil(-tokens * 1000 / rate);
+                try {
+                    wait(Math.max(1, Math.min(waitMillis, MAX_WAIT_MILLIS)));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    copyControl.cancel();
+                    throw new CopyCancelledException();
+                }
+                refill();
+            }
+            return System.nanoTime() - waitStartNanos;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            if (rate != UNLIMITED) {
+                tokens = Math.min(rate, tokens + (double) (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+            }
+            lastRefillNanos = now;
+        }
+    }
+}
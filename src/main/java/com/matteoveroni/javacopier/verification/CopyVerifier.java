@@ -0,0 +1,207 @@
+package com.matteoveroni.javacopier.verification;
+
+import com.matteoveroni.javacopier.CopyCancelledException;
+import com.matteoveroni.javacopier.CopyConfiguration;
+import com.matteoveroni.javacopier.CopyControl;
+import com.matteoveroni.javacopier.CopyProgress;
+import com.matteoveroni.javacopier.checksums.FileChecksums;
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.metrics.CopyMetrics;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verification of the files copied by a job: they are queued while it runs and read again from src and dest by
+ * several threads, each with its own large direct buffer, comparing their checksums. The threads start with the
+ * first file queued and verify while the copy goes on. At most {@link #MAX_QUEUED_FILES} files wait in the queue,
+ * when it is full the copy waits for the verification to catch up, so the memory used does not grow with the job.
+ * <p>
+ * A file whose checksums differ is registered as failed in the {@link CopyHistory} and its dest is deleted, since
+ * its content cannot be trusted. Files that cannot be read are registered as failed too, but their dest is kept.
+ * The verified files and bytes are counted in the {@link CopyProgress}, which times the verification apart from
+ * the copy. Thread safe.
+ *
+ * @author Matteo Veroni
+ */
+public class CopyVerifier {
+
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int MAX_QUEUED_FILES = 10000;
+
+    private final static Logger LOG = LoggerFactory.getLogger(CopyVerifier.class);
+
+    private static final String THREAD_NAME_PREFIX = "javacopier-verification-";
+    private static final long POLL_MILLIS = 100;
+
+    private final int parallelism;
+    private final int bufferSize;
+    private final CopyProgress copyProgress;
+    private final CopyHistory copyHistory;
+    private final CopyControl copyControl;
+    private final CopyMetrics metrics;
+    private final BlockingQueue<CopiedFile> copiedFiles = new LinkedBlockingQueue<>(MAX_QUEUED_FILES);
+    private final AtomicInteger failedFiles = new AtomicInteger(0);
+    private volatile ExecutorService verificationExecutor;
+    private volatile boolean copyCompleted = false;
+
+    public CopyVerifier(CopyConfiguration configuration, CopyProgress copyProgress, CopyHistory copyHistory, CopyControl copyControl) {
+        this.parallelism = configuration.getVerificationParallelism();
+        this.bufferSize = configuration.getVerificationBufferSize();
+        this.copyProgress = copyProgress;
+        this.copyHistory = copyHistory;
+        this.copyControl = copyControl;
+        this.metrics = configuration.getMetrics();
+    }
+
+    /**
+     * Queues a regular file copied successfully to be verified, starting the verification threads with the first
+     * one. Waits while the queue is full, unless the job is cancelled.
+     */
+    public void registerCopiedFile(Path srcFile, Path destFile, long fileSize) {
+        startVerification();
+        CopiedFile copiedFile = new CopiedFile(srcFile, destFile, fileSize);
+        try {
+            while (!copiedFiles.offer(copiedFile, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (copyControl.isCancelled()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            LOG.warn("Interrupted while queueing: " + destFile + " for verification, it will not be verified");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * To be called once the copy is over: waits for the verification of all the files registered, returning once
+     * all of them are verified or the job is cancelled.
+     *
+     * @return the number of files that failed the verification
+     */
+    public int verifyCopiedFiles() {
+        copyCompleted = true;
+        ExecutorService executor = verificationExecutor;
+        if (executor == null) {
+            return failedFiles.get();
+        }
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            LOG.warn("Interrupted while verifying the copied files");
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            copyProgress.completeVerification();
+        }
+        LOG.debug("Verification completed, verified files: " + copyProgress.getVerifiedFiles() + ", failed: " + failedFiles.get()
+                + ", throughput: " + String.format("%.2f", copyProgress.getVerificationThroughput()) + " MB/s");
+        return failedFiles.get();
+    }
+
+    private void startVerification() {
+        if (verificationExecutor != null) {
+            return;
+        }
+        synchronized (this) {
+            if (verificationExecutor == null) {
+                LOG.debug("Verification started, threads: " + parallelism);
+                copyProgress.startVerification();
+                ExecutorService executor = Executors.newFixedThreadPool(parallelism, newDaemonThreadFactory());
+                for (int i = 0; i < parallelism; i++) {
+                    executor.execute(this::verifyUntilCopyIsCompleted);
+                }
+                // the threads end by themselves once the copy is completed or cancelled
+                executor.shutdown();
+                verificationExecutor = executor;
+            }
+        }
+    }
+
+    private void verifyUntilCopyIsCompleted() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        try {
+            while (!(copyCompleted && copiedFiles.isEmpty())) {
+                copyControl.checkpoint();
+                CopiedFile copiedFile = copiedFiles.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (copiedFile != null) {
+                    verifyCopiedFile(copiedFile, buffer);
+                }
+            }
+        } catch (CopyCancelledException ex) {
+            LOG.debug("Verification cancelled");
+        } catch (InterruptedException ex) {
+            LOG.debug("Verification interrupted");
+        }
+    }
+
+    private void verifyCopiedFile(CopiedFile copiedFile, ByteBuffer buffer) {
+        long verificationStartNanos = System.nanoTime();
+        try {
+            byte[] srcChecksum = FileChecksums.checksum(copiedFile.srcFile, buffer);
+            byte[] destChecksum = FileChecksums.checksum(copiedFile.destFile, buffer);
+            if (MessageDigest.isEqual(srcChecksum, destChecksum)) {
+                copyProgress.registerVerifiedFile(copiedFile.fileSize);
+            } else {
+                VerificationFailedException ex = new VerificationFailedException(copiedFile.srcFile, copiedFile.destFile);
+                registerFailedFile(copiedFile, ex);
+                deleteUntrustedDestFile(copiedFile.destFile);
+            }
+        } catch (IOException ex) {
+            registerFailedFile(copiedFile, ex);
+        } finally {
+            metrics.recordPhase(CopyPhase.VERIFICATION, System.nanoTime() - verificationStartNanos);
+        }
+    }
+
+    private void registerFailedFile(CopiedFile copiedFile, IOException ex) {
+        LOG.error("Unable to verify: " + copiedFile.destFile + ", ex: " + ex.toString());
+        failedFiles.incrementAndGet();
+        copyHistory.registerVerificationFailEventInHistory(copiedFile.srcFile, copiedFile.destFile, ex);
+        metrics.recordFileFailed();
+    }
+
+    private void deleteUntrustedDestFile(Path destFile) {
+        try {
+            Files.deleteIfExists(destFile);
+        } catch (IOException ex) {
+            LOG.error("Unable to delete destFile: " + destFile + " which failed verification, ex: " + ex.toString());
+        }
+    }
+
+    private static ThreadFactory newDaemonThreadFactory() {
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class CopiedFile {
+
+        private final Path srcFile;
+        private final Path destFile;
+        private final long fileSize;
+
+        CopiedFile(Path srcFile, Path destFile, long fileSize) {
+            this.srcFile = srcFile;
+            this.destFile = destFile;
+            this.fileSize = fileSize;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.matteoveroni.javacopier.verification;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Registered in the {@link com.matteoveroni.javacopier.copyhistory.CopyHistory} as the failure of a file whose dest
+ * content is different from its src once copied.
+ *
+ * @author Matteo Veroni
+ */
+public class VerificationFailedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public VerificationFailedException(Path srcFile, Path destFile) {
+        super("checksum of dest: " + destFile + " differs from the one of src: " + srcFile);
+    }
+}
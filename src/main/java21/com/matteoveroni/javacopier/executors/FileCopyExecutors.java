@@ -0,0 +1,40 @@
+package com.matteoveroni.javacopier.executors;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors that copy one file per task.
+ * <p>
+ * This is the implementation for Java 21+, packed in META-INF/versions/21 of the multi-release jar: every file gets
+ * its own virtual thread, so thousands of blocking copies can be in flight without sizing a pool.
+ *
+ * @author Matteo Veroni
+ */
+public class FileCopyExecutors {
+
+    /**
+     * Upper bound of the platform threads per available processor, used only by the pre Java 21 implementation.
+     */
+    public static final int MAX_PLATFORM_THREADS_PER_PROCESSOR = 8;
+
+    private static final String THREAD_NAME_PREFIX = "javacopier-file-copy-";
+
+    private FileCopyExecutors() {
+        //  PRIVATE CONSTRUCTOR
+    }
+
+    /**
+     * @return true if the executors run every file on its own virtual thread
+     */
+    public static boolean isVirtualThreadPerFile() {
+        return true;
+    }
+
+    /**
+     * @param maxFilesInFlight number of files copied at the same time by the caller, not needed by virtual threads
+     */
+    public static ExecutorService newFileCopyExecutor(int maxFilesInFlight) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory());
+    }
+}
@@ -1,21 +1,68 @@
 package com.matteoveroni.javacopier;
 
+import com.matteoveroni.javacopier.copyhistory.CopyHistory;
+import com.matteoveroni.javacopier.copystrategies.DeltaCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.FileChannelCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.FilesCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.MappedCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.SizeBasedCopyStrategy;
+import com.matteoveroni.javacopier.copystrategies.SparseCopyStrategy;
+import com.matteoveroni.javacopier.concurrency.FixedConcurrencyLimiter;
+import com.matteoveroni.javacopier.dedup.FileDeduplicator;
+import com.matteoveroni.javacopier.filevisitors.CountFileVisitor;
+import com.matteoveroni.javacopier.filevisitors.DispatchingFileVisitor;
+import com.matteoveroni.javacopier.filewalkers.OrderedFileTreeWalker;
+import com.matteoveroni.javacopier.filters.CopyFilter;
+import com.matteoveroni.javacopier.incremental.CopySkipPolicy;
+import com.matteoveroni.javacopier.journal.CopyJournal;
+import com.matteoveroni.javacopier.manifest.CopyManifest;
+import com.matteoveroni.javacopier.metrics.CopyPhase;
+import com.matteoveroni.javacopier.metrics.FileSizeBucket;
+import com.matteoveroni.javacopier.metrics.InMemoryCopyMetrics;
+import com.matteoveroni.javacopier.metrics.JmxCopyMetrics;
+import com.matteoveroni.javacopier.scheduling.DeviceIoScheduler;
+import com.matteoveroni.javacopier.throttling.CopyThrottle;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * @author Matteo Veroni
@@ -207,6 +254,1166 @@ public class JavaCopierTest {
         srcFile2.delete();
     }
 
+    @Test
+    public void parallelCopySrcDirTreeIntoNotExistentDestDir() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 3, 4);
+        CopyConfiguration configuration = new CopyConfiguration.Builder().setParallelism(4).build();
+
+        CopyStatusReport copyStatusReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(totalFiles, copyStatusReport.getTotalFiles());
+        assertEquals(totalFiles, copyStatusReport.getNumberOfCopiedFiles());
+        assertEquals(0, copyStatusReport.getNumberOfCopiesFailed());
+        assertEquals(totalFiles, copyStatusReport.getCopyHistory().getHistory().size());
+        assertEquals(copyStatusReport.getFinalResult(), CopyStatusReport.FinalResult.COPY_SUCCESSFUL);
+        assertTrue("Error, destDir tree is not equal to srcDir tree", isSameDirTree(srcDir.toPath(), destDir.toPath()));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithPerFileExecutionKeepsDirAttributes() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 3, 8);
+        FileTime srcSubDirLastModifiedTime = FileTime.fromMillis(1000000000000L);
+        Files.setLastModifiedTime(srcDir.toPath().resolve("dir1"), srcSubDirLastModifiedTime);
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setPerFileExecution(true)
+                .setMaxFilesInFlight(16)
+                .build();
+
+        CopyStatusReport copyStatusReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(totalFiles, copyStatusReport.getNumberOfCopiedFiles());
+        assertEquals(copyStatusReport.getFinalResult(), CopyStatusReport.FinalResult.COPY_SUCCESSFUL);
+        assertTrue("Error, destDir tree is not equal to srcDir tree", isSameDirTree(srcDir.toPath(), destDir.toPath()));
+        assertEquals(srcSubDirLastModifiedTime, Files.getLastModifiedTime(destDir.toPath().resolve("dir1")));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithConcurrentDiscoveryReportsExactTotalWhenDone() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 3, 4);
+        CopyConfiguration configuration = new CopyConfiguration.Builder().setConcurrentDiscovery(true).build();
+        List<CopyStatusReport> progressReports = new ArrayList<>();
+        CopyListener copyListener = new ProgressCollectorCopyListener(progressReports);
+
+        CopyStatusReport copyStatusReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, copyListener, null, StandardCopyOption.REPLACE_EXISTING);
+
+        assertFalse(copyStatusReport.isTotalFilesEstimated());
+        assertEquals(totalFiles, copyStatusReport.getTotalFiles());
+        assertEquals(totalFiles, copyStatusReport.getNumberOfCopiedFiles());
+        assertEquals(copyStatusReport.getFinalResult(), CopyStatusReport.FinalResult.COPY_SUCCESSFUL);
+        assertEquals(totalFiles, progressReports.size());
+        for (CopyStatusReport progressReport : progressReports) {
+            assertTrue(progressReport.getCopyPercentage() <= 100.0);
+            assertTrue(progressReport.getTotalFiles() <= totalFiles);
+        }
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithFileChannelStrategyReportsProgressPerChunk() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 1, 2);
+        byte[] bigFileContent = new byte[10 * 1024];
+        new Random(1).nextBytes(bigFileContent);
+        Files.write(srcDir.toPath().resolve("bigFile.bin"), bigFileContent);
+        totalFiles++;
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy(new FileChannelCopyStrategy(1024))
+                .build();
+        List<CopyStatusReport> progressReports = new ArrayList<>();
+        CopyListener copyListener = new ProgressCollectorCopyListener(progressReports);
+
+        CopyStatusReport copyStatusReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, copyListener, null, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(totalFiles, copyStatusReport.getNumberOfCopiedFiles());
+        assertEquals(copyStatusReport.getFinalResult(), CopyStatusReport.FinalResult.COPY_SUCCESSFUL);
+        assertTrue("Error, destDir tree is not equal to srcDir tree", isSameDirTree(srcDir.toPath(), destDir.toPath()));
+        assertEquals(totalFiles + 9, progressReports.size());
+        assertEquals(sizeOfDirTree(srcDir.toPath()), copyStatusReport.getCopiedBytes());
+        assertEquals(sizeOfDirTree(srcDir.toPath()), copyStatusReport.getTotalBytes());
+        for (CopyStatusReport progressReport : progressReports) {
+            assertEquals(copyStatusReport.getTotalBytes(), progressReport.getTotalBytes());
+            assertEquals(100.0 * progressReport.getCopiedBytes() / progressReport.getTotalBytes(), progressReport.getBytesCopyPercentage(), 0.001);
+        }
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithSizeBasedStrategyPicksStrategyBySize() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 1, 2);
+        byte[] midFileContent = new byte[10 * 1024 + 7];
+        new Random(1).nextBytes(midFileContent);
+        Files.write(srcDir.toPath().resolve("midFile.bin"), midFileContent);
+        Files.write(srcDir.toPath().resolve("bigFile.bin"), new byte[100 * 1024]);
+        totalFiles += 2;
+        SizeBasedCopyStrategy sizeBasedCopyStrategy = new SizeBasedCopyStrategy.Builder(new FilesCopyStrategy())
+                .setStrategyFromSize(1024, new MappedCopyStrategy(4096))
+                .setStrategyFromSize(64 * 1024, new FileChannelCopyStrategy())
+                .build();
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy(sizeBasedCopyStrategy)
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(totalFiles, report.getNumberOfCopiedFiles());
+        assertEquals(sizeOfDirTree(srcDir.toPath()), report.getCopiedBytes());
+        assertTrue("Error, destDir tree is not equal to srcDir tree", isSameDirTree(srcDir.toPath(), destDir.toPath()));
+        assertTrue(sizeBasedCopyStrategy.getStrategyForSize(1023) instanceof FilesCopyStrategy);
+        assertTrue(sizeBasedCopyStrategy.getStrategyForSize(midFileContent.length) instanceof MappedCopyStrategy);
+        assertTrue(sizeBasedCopyStrategy.getStrategyForSize(100 * 1024) instanceof FileChannelCopyStrategy);
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySparseFileWithSparseStrategySkipsZeroBlocks() throws IOException {
+        srcFile = new File("sparse.img");
+        destFile = new File("sparseCopy.img");
+        int blockSize = SparseCopyStrategy.DEFAULT_BLOCK_SIZE;
+        long holesSize = 2 * 1024 * 1024 + 25 * blockSize;
+        byte[] content = new byte[(int) holesSize + 2 * blockSize];
+        Random random = new Random(1);
+        for (int i = 0; i < blockSize; i++) {
+            content[i] = (byte) (random.nextInt(255) + 1);
+            content[blockSize + 2 * 1024 * 1024 + i] = (byte) (random.nextInt(255) + 1);
+        }
+        Files.write(srcFile.toPath(), content);
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy(new SparseCopyStrategy())
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcFile.toPath(), destFile.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(holesSize, report.getSparseBytes());
+        assertEquals(2 * blockSize, report.getCopiedBytes());
+        assertEquals(content.length, Files.size(destFile.toPath()));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(destFile.toPath())));
+    }
+
+    @Test
+    public void copySingleFileToExistingFileWithFileChannelStrategyWithoutReplaceCopyOptionFails() throws IOException {
+        srcFile = createTempFileWithContent("srcFile", "src content");
+        destFile = createTempFileWithContent("destFile", "dest content");
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy(new FileChannelCopyStrategy())
+                .build();
+
+        CopyStatusReport copyStatusReport = JavaCopier.copy(srcFile.toPath(), destFile.toPath(), configuration, StandardCopyOption.COPY_ATTRIBUTES);
+
+        assertEquals("dest content", readFileContent(destFile.toPath()));
+        assertEquals(1, copyStatusReport.getNumberOfCopiesFailed());
+        assertEquals(copyStatusReport.getFinalResult(), CopyStatusReport.FinalResult.COPY_FAILED);
+    }
+
+    @Test
+    public void copySrcDirTreeNotifiesProgressFollowingNotificationPolicy() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 2, 3);
+        List<CopyStatusReport> everyThreeEventsReports = new ArrayList<>();
+        List<CopyStatusReport> everyHourReports = new ArrayList<>();
+        List<CopyStatusReport> everyTenPercentReports = new ArrayList<>();
+
+        JavaCopier.copy(srcDir.toPath(), destDir.toPath(),
+                new CopyConfiguration.Builder().setProgressNotificationPolicy(ProgressNotificationPolicy.everyEvents(3)).build(),
+                new ProgressCollectorCopyListener(everyThreeEventsReports), null, StandardCopyOption.REPLACE_EXISTING);
+        JavaCopier.copy(srcDir.toPath(), destDir.toPath(),
+                new CopyConfiguration.Builder().setProgressNotificationPolicy(ProgressNotificationPolicy.everyMillis(3600000)).build(),
+                new ProgressCollectorCopyListener(everyHourReports), null, StandardCopyOption.REPLACE_EXISTING);
+        JavaCopier.copy(srcDir.toPath(), destDir.toPath(),
+                new CopyConfiguration.Builder().setProgressNotificationPolicy(ProgressNotificationPolicy.onPercentageChange(10)).build(),
+                new ProgressCollectorCopyListener(everyTenPercentReports), null, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(totalFiles / 3, everyThreeEventsReports.size());
+        assertEquals(1, everyHourReports.size());
+        for (int i = 1; i < everyTenPercentReports.size(); i++) {
+            CopyStatusReport previous = everyTenPercentReports.get(i - 1);
+            CopyStatusReport current = everyTenPercentReports.get(i);
+            assertTrue(current.getCopyPercentage() - previous.getCopyPercentage() >= 10
+                    || current.getBytesCopyPercentage() - previous.getBytesCopyPercentage() >= 10);
+        }
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithBoundedHistoryRetentionKeepsOnlyCounters() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 2, 3);
+        Path spillFile = Files.createTempFile("history", ".jsonl");
+
+        CopyStatusReport countersOnlyReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(),
+                new CopyConfiguration.Builder().setHistoryRetention(CopyHistory.Retention.COUNTERS_ONLY).build(),
+                StandardCopyOption.REPLACE_EXISTING);
+        CopyStatusReport spillToDiskReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(),
+                new CopyConfiguration.Builder().setHistoryRetention(CopyHistory.Retention.SPILL_TO_DISK).setHistorySpillFile(spillFile).build(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        for (CopyStatusReport copyStatusReport : Arrays.asList(countersOnlyReport, spillToDiskReport)) {
+            assertEquals(totalFiles, copyStatusReport.getNumberOfCopiedFiles());
+            assertEquals(0, copyStatusReport.getNumberOfCopiesFailed());
+            assertTrue(copyStatusReport.getCopyHistory().getHistory().isEmpty());
+            assertTrue(copyStatusReport.getCopyHistory().getCopiedFiles().isEmpty());
+            assertEquals(copyStatusReport.getFinalResult(), CopyStatusReport.FinalResult.COPY_SUCCESSFUL);
+        }
+        assertEquals(totalFiles, Files.readAllLines(spillFile).size());
+
+        Files.delete(spillFile);
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copyHistorySnapshotIsUnaffectedByEventsRegisteredAfterwards() {
+        CopyHistory copyHistory = new CopyHistory();
+        Path src1 = Paths.get("src", "file1");
+        Path src2 = Paths.get("src", "file2");
+        copyHistory.registerCopySuccessEventInHistory(src1, Paths.get("dest"));
+        CopyStatusReport report = new CopyStatusReport(Paths.get("src"), Paths.get("dest"), CopyStatusReport.CopyState.RUNNING, new CopyProgress(2), copyHistory);
+
+        copyHistory.registerCopySuccessEventInHistory(src2, Paths.get("dest"));
+        copyHistory.registerVerificationFailEventInHistory(src1, Paths.get("dest"), new IOException("corrupted"));
+        String reportJson = report.toString();
+
+        assertEquals(1, report.getCopyHistory().getHistory().size());
+        assertEquals(Arrays.asList(src1), report.getCopyHistory().getCopiedFiles());
+        assertTrue(report.getCopyHistory().getCopiesFailed().isEmpty());
+        assertFalse(reportJson.contains("file2"));
+        assertEquals(3, copyHistory.getHistory().size());
+        assertEquals(Arrays.asList(src2), copyHistory.getCopiedFiles());
+        assertEquals(Arrays.asList(src1), copyHistory.getCopiesFailed());
+    }
+
+    @Test
+    public void incrementalCopySkipsUnchangedFiles() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 1, 3);
+        int totalDirs = 3;
+        JavaCopier.copy(srcDir.toPath(), destDir.toPath(), StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+        Path changedSrcFile = srcDir.toPath().resolve("file0.txt");
+        Path tamperedDestFile = destDir.toPath().resolve("file1.txt");
+        Files.write(changedSrcFile, "changed content".getBytes());
+        FileTime tamperedDestFileTime = Files.getLastModifiedTime(tamperedDestFile);
+        Files.write(tamperedDestFile, new byte[(int) Files.size(tamperedDestFile)]);
+        Files.setLastModifiedTime(tamperedDestFile, tamperedDestFileTime);
+        CopyConfiguration sizeAndTimeConfiguration = new CopyConfiguration.Builder().setIncrementalCopy(true).build();
+        CopyConfiguration contentHashConfiguration = new CopyConfiguration.Builder().setIncrementalCopy(true).setContentHashComparison(true).build();
+
+        CopyStatusReport sizeAndTimeReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), sizeAndTimeConfiguration, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+        CopyStatusReport contentHashReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), contentHashConfiguration, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(totalDirs + 1, sizeAndTimeReport.getNumberOfCopiedFiles());
+        assertEquals(totalFiles - totalDirs - 1, sizeAndTimeReport.getNumberOfSkippedFiles());
+        assertTrue(sizeAndTimeReport.getCopyHistory().getCopiedFiles().contains(changedSrcFile.toAbsolutePath()));
+        assertEquals(sizeAndTimeReport.getFinalResult(), CopyStatusReport.FinalResult.COPY_SUCCESSFUL);
+        assertEquals(totalDirs + 1, contentHashReport.getNumberOfCopiedFiles());
+        assertTrue(contentHashReport.getCopyHistory().getCopiedFiles().contains(srcDir.toPath().resolve("file1.txt").toAbsolutePath()));
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void incrementalCopyWithManifestDetectsChangesWithoutReadingDest() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 1, 3);
+        int totalDirs = 3;
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setIncrementalCopy(true)
+                .setContentHashComparison(true)
+                .setManifestEnabled(true)
+                .build();
+
+        CopyStatusReport firstReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(destDir.toPath().resolve("file1.txt"));
+        Files.write(srcDir.toPath().resolve("dir0").resolve("file2.txt"), "changed content".getBytes());
+        CopyStatusReport secondReport = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertTrue(Files.isRegularFile(destDir.toPath().resolve(CopyManifest.DEFAULT_FILE_NAME)));
+        assertEquals(totalFiles, firstReport.getNumberOfCopiedFiles());
+        assertEquals(totalDirs + 1, secondReport.getNumberOfCopiedFiles());
+        assertEquals(totalFiles - totalDirs - 1, secondReport.getNumberOfSkippedFiles());
+        assertFalse("Error, manifest run should not look at dest", Files.exists(destDir.toPath().resolve("file1.txt")));
+        assertTrue(isSameFileContent(srcDir.toPath().resolve("dir0").resolve("file2.txt"), destDir.toPath().resolve("dir0").resolve("file2.txt")));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void resumedCopySkipsFilesCompletedByPreviousRun() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 1, 3);
+        Files.createDirectories(destDir.toPath());
+        Path journalFile = destDir.toPath().resolve(CopyJournal.DEFAULT_FILE_NAME);
+        Files.write(journalFile, "file0.txt\ndir0/file1.txt\ndir1/fil".getBytes());
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setResume(true)
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(totalFiles, report.getTotalFiles());
+        assertEquals(2, report.getNumberOfSkippedFiles());
+        assertEquals(totalFiles - 2, report.getNumberOfCopiedFiles());
+        assertFalse("Error, resumed copy should not copy again completed files", Files.exists(destDir.toPath().resolve("file0.txt")));
+        assertTrue(Files.exists(destDir.toPath().resolve("dir1").resolve("file1.txt")));
+        assertFalse("Error, journal should be deleted when the copy completes", Files.exists(journalFile));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySkipPolicySkipsFilesCompletedByPreviousRunOrUpToDate() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        createSrcDirTree(srcDir.toPath(), 0, 3);
+        JavaCopier.copy(srcDir.toPath(), destDir.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+        Files.write(destDir.toPath().resolve(CopyJournal.DEFAULT_FILE_NAME), "file0.txt\n".getBytes());
+        Files.write(srcDir.toPath().resolve("file2.txt"), "changed content".getBytes());
+        CopyConfiguration configuration = new CopyConfiguration.Builder().setIncrementalCopy(true).setResume(true).build();
+
+        CopySkipPolicy skipPolicy = new CopySkipPolicy(srcDir.toPath(), destDir.toPath(), configuration);
+
+        assertEquals(CopySkipPolicy.Decision.SKIP_COMPLETED_BY_PREVIOUS_RUN, decide(skipPolicy, "file0.txt"));
+        assertEquals(CopySkipPolicy.Decision.SKIP_UP_TO_DATE, decide(skipPolicy, "file1.txt"));
+        assertEquals(CopySkipPolicy.Decision.COPY, decide(skipPolicy, "file2.txt"));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void fileDeduplicatorLinksOnlyFilesWithTheContentOfACopiedOne() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        Files.createDirectories(srcDir.toPath());
+        Files.createDirectories(destDir.toPath());
+        byte[] content = new byte[4096];
+        new Random(1).nextBytes(content);
+        Path copiedSrcFile = Files.write(srcDir.toPath().resolve("copied.bin"), content);
+        Path duplicateSrcFile = Files.write(srcDir.toPath().resolve("duplicate.bin"), content);
+        content[0]++;
+        Path differentSrcFile = Files.write(srcDir.toPath().resolve("different.bin"), content);
+        Path copiedDestFile = Files.copy(copiedSrcFile, destDir.toPath().resolve("copied.bin"));
+        FileDeduplicator deduplicator = new FileDeduplicator(1, false);
+
+        deduplicator.registerCopiedFile(copiedDestFile, Files.readAttributes(copiedSrcFile, BasicFileAttributes.class));
+
+        Path duplicateDestFile = destDir.toPath().resolve("duplicate.bin");
+        assertTrue(deduplicator.linkToDuplicateIfAny(duplicateSrcFile, duplicateDestFile, Files.readAttributes(duplicateSrcFile, BasicFileAttributes.class)));
+        assertTrue(Files.isSameFile(copiedDestFile, duplicateDestFile));
+        assertFalse(deduplicator.linkToDuplicateIfAny(differentSrcFile, destDir.toPath().resolve("different.bin"), Files.readAttributes(differentSrcFile, BasicFileAttributes.class)));
+        assertFalse(Files.exists(destDir.toPath().resolve("different.bin")));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copyModifiedBigFileWithDeltaStrategyRewritesOnlyChangedBlocks() throws IOException {
+        srcFile = new File("srcFile.bin");
+        destFile = new File("destFile.bin");
+        int blockSize = 64 * 1024;
+        byte[] content = new byte[16 * blockSize];
+        new Random().nextBytes(content);
+        Files.write(srcFile.toPath(), content);
+        Files.write(destFile.toPath(), Arrays.copyOf(content, content.length + blockSize));
+        content[5 * blockSize + 10]++;
+        Files.write(srcFile.toPath(), content);
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy(new DeltaCopyStrategy(0, blockSize))
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcFile.toPath(), destFile.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(content.length - blockSize, report.getSavedBytes());
+        assertTrue(isSameFileContent(srcFile.toPath(), destFile.toPath()));
+    }
+
+    @Test
+    public void asyncCopySrcDirTreeCanBePausedAndResumed() throws Exception {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 2, 3);
+        List<Runnable> copyJobs = new ArrayList<>();
+
+        CopyHandle copyHandle = JavaCopier.copyAsync(srcDir.toPath(), destDir.toPath(), CopyConfiguration.DEFAULT, null, copyJobs::add, StandardCopyOption.REPLACE_EXISTING);
+        copyHandle.pause();
+        Thread copyThread = new Thread(copyJobs.get(0));
+        copyThread.start();
+        Thread.sleep(200);
+
+        assertFalse(copyHandle.isDone());
+        assertEquals(0, copyHandle.getProgressSnapshot().getNumberOfCopiedFiles());
+        copyHandle.resume();
+        CopyStatusReport report = copyHandle.getFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(totalFiles, report.getNumberOfCopiedFiles());
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void asyncCopySrcDirTreeCanBeCancelled() throws Exception {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 2, 3);
+        int filesCopiedBeforeCancel = 5;
+        CopyHandle[] copyHandle = new CopyHandle[1];
+        CountDownLatch copyHandleReady = new CountDownLatch(1);
+        CopyListener cancellingCopyListener = new CopyListener() {
+            @Override
+            public void onCopyProgress(CopyStatusReport copyStatusReport) {
+                if (copyStatusReport.getNumberOfCopiedFiles() == filesCopiedBeforeCancel) {
+                    awaitUninterruptibly(copyHandleReady);
+                    copyHandle[0].cancel();
+                }
+            }
+
+            @Override
+            public void onCopyComplete(CopyStatusReport finalCopyStatusReport) {
+            }
+        };
+
+        copyHandle[0] = JavaCopier.copyAsync(srcDir.toPath(), destDir.toPath(), cancellingCopyListener, StandardCopyOption.REPLACE_EXISTING);
+        copyHandleReady.countDown();
+        CopyStatusReport report = copyHandle[0].getFuture().get(10, TimeUnit.SECONDS);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_CANCELLED, report.getFinalResult());
+        assertEquals(filesCopiedBeforeCancel, report.getNumberOfCopiedFiles());
+        assertTrue(report.getNumberOfCopiedFiles() < totalFiles);
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithPerFileExecutionKeepsCopyingWhileListenerIsBusy() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        Files.createDirectories(srcDir.toPath());
+        for (int i = 0; i < 50; i++) {
+            Files.write(srcDir.toPath().resolve("file" + i + ".txt"), ("content " + i).getBytes());
+        }
+        int filesCopiedWhileListenerIsBusy = 20;
+        FilesCopyStrategy filesCopyStrategy = new FilesCopyStrategy();
+        AtomicInteger copiedFiles = new AtomicInteger();
+        CountDownLatch otherFilesCopied = new CountDownLatch(1);
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy((src, dest, copyOptions, copyChunkListener) -> {
+                    filesCopyStrategy.copyFile(src, dest, copyOptions, copyChunkListener);
+                    if (copiedFiles.incrementAndGet() == filesCopiedWhileListenerIsBusy) {
+                        otherFilesCopied.countDown();
+                    }
+                })
+                .setPerFileExecution(true)
+                .setMaxFilesInFlight(4)
+                .build();
+        Thread walkingThread = Thread.currentThread();
+        AtomicBoolean listenerBusy = new AtomicBoolean(false);
+        AtomicBoolean copyWentOnWhileListenerWasBusy = new AtomicBoolean(false);
+        CopyListener slowCopyListener = new CopyListener() {
+            @Override
+            public void onCopyProgress(CopyStatusReport copyStatusReport) {
+                // blocks the first copying thread that notifies, the others must not wait for it
+                if (Thread.currentThread() != walkingThread && listenerBusy.compareAndSet(false, true)) {
+                    try {
+                        copyWentOnWhileListenerWasBusy.set(otherFilesCopied.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public void onCopyComplete(CopyStatusReport finalCopyStatusReport) {
+            }
+        };
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, slowCopyListener, null, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertTrue(listenerBusy.get());
+        assertTrue(copyWentOnWhileListenerWasBusy.get());
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeReportsBytesPercentageThroughputAndEstimatedRemainingTime() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        Files.createDirectories(srcDir.toPath());
+        for (int i = 0; i < 8; i++) {
+            Files.write(srcDir.toPath().resolve("file" + i + ".bin"), new byte[64 * 1024]);
+        }
+        List<CopyStatusReport> progressReports = new ArrayList<>();
+        CopyConfiguration throttledConfiguration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy(new FileChannelCopyStrategy(16 * 1024))
+                .setThrottle(new CopyThrottle(256 * 1024, CopyThrottle.UNLIMITED))
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), throttledConfiguration, new ProgressCollectorCopyListener(progressReports), null, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertFalse(progressReports.isEmpty());
+        double previousBytesPercentage = 0;
+        boolean estimatedWhileRunning = false;
+        for (CopyStatusReport progressReport : progressReports) {
+            assertEquals(CopyStatusReport.CopyState.RUNNING, progressReport.getCopyState());
+            assertTrue(progressReport.getBytesCopyPercentage() >= previousBytesPercentage);
+            assertTrue(progressReport.getBytesCopyPercentage() <= 100.0);
+            assertTrue(progressReport.getEstimatedRemainingMillis() >= 0 || progressReport.getEstimatedRemainingMillis() == -1);
+            if (progressReport.getCopiedBytes() < progressReport.getTotalBytes()) {
+                estimatedWhileRunning |= progressReport.getAverageThroughput() > 0 && progressReport.getEstimatedRemainingMillis() > 0;
+            }
+            previousBytesPercentage = progressReport.getBytesCopyPercentage();
+        }
+        assertTrue(estimatedWhileRunning);
+        assertEquals(100.0, report.getBytesCopyPercentage(), 0.0);
+        assertEquals(100.0, report.getCopyPercentage(), 0.0);
+        assertEquals(0, report.getEstimatedRemainingMillis());
+        assertEquals(8 * 64 * 1024, report.getCopiedBytes());
+
+        // the files skipped by an incremental copy count as done bytes as well
+        progressReports.clear();
+        CopyConfiguration incrementalConfiguration = new CopyConfiguration.Builder().setIncrementalCopy(true).build();
+
+        report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), incrementalConfiguration, new ProgressCollectorCopyListener(progressReports), null, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        CopyStatusReport lastProgressReport = progressReports.get(progressReports.size() - 1);
+        assertEquals(0, lastProgressReport.getCopiedBytes());
+        assertTrue(lastProgressReport.getBytesCopyPercentage() > 0);
+        assertEquals(0, report.getEstimatedRemainingMillis());
+        assertEquals(100.0, report.getBytesCopyPercentage(), 0.0);
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeRecordsMetricsExportedOnJmx() throws Exception {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 2, 3);
+        int totalDirs = 7;
+        try (JmxCopyMetrics metrics = new JmxCopyMetrics("copySrcDirTreeRecordsMetrics")) {
+            CopyConfiguration configuration = new CopyConfiguration.Builder().setMetrics(metrics).build();
+
+            JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, new ProgressCollectorCopyListener(new ArrayList<>()), null, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+
+            assertEquals(totalFiles - totalDirs, metrics.getCopiedFiles());
+            assertEquals(sizeOfDirTree(srcDir.toPath()), metrics.getCopiedBytes());
+            assertEquals(0, metrics.getFailedFiles());
+            assertEquals(1, metrics.getPhaseTimer(CopyPhase.FILES_DISCOVERY).getCount());
+            assertEquals(totalDirs, metrics.getPhaseTimer(CopyPhase.DIRECTORY_CREATION).getCount());
+            assertEquals(totalDirs, metrics.getPhaseTimer(CopyPhase.ATTRIBUTES_COPY).getCount());
+            assertEquals(totalFiles - totalDirs, metrics.getPhaseTimer(CopyPhase.FILE_TRANSFER).getCount());
+            assertEquals(totalFiles + 1, metrics.getPhaseTimer(CopyPhase.LISTENER_CALLBACK).getCount());
+            assertEquals(totalFiles - totalDirs, metrics.getFileCopyLatency(FileSizeBucket.UP_TO_4KB).getCount());
+            assertEquals((long) (totalFiles - totalDirs), ManagementFactory.getPlatformMBeanServer().getAttribute(metrics.getObjectName(), "CopiedFiles"));
+        }
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySingleFileRecordsBytesTransferredInMetrics() throws IOException {
+        srcFile = createTempFileWithStandardContent("srcFile");
+        destFile = new File("destFile");
+        InMemoryCopyMetrics metrics = new InMemoryCopyMetrics();
+        CopyConfiguration configuration = new CopyConfiguration.Builder().setMetrics(metrics).build();
+
+        CopyStatusReport report = JavaCopier.copy(srcFile.toPath(), destFile.toPath(), configuration);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(1, metrics.getCopiedFiles());
+        assertEquals(srcFile.length(), metrics.getCopiedBytes());
+    }
+
+    @Test
+    public void copySrcDirTreeWithDeduplicationLinksIdenticalFiles() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        Path srcSubDir = Files.createDirectories(srcDir.toPath().resolve("dir0"));
+        byte[] content = new byte[8 * 1024];
+        new Random().nextBytes(content);
+        Files.write(srcDir.toPath().resolve("original.bin"), content);
+        Files.write(srcSubDir.resolve("duplicate.bin"), content);
+        content[0]++;
+        Files.write(srcSubDir.resolve("sameSize.bin"), content);
+        Files.write(srcDir.toPath().resolve("tiny1.txt"), "tiny".getBytes());
+        Files.write(srcSubDir.resolve("tiny2.txt"), "tiny".getBytes());
+        InMemoryCopyMetrics metrics = new InMemoryCopyMetrics();
+        CopyConfiguration configuration = new CopyConfiguration.Builder().setDeduplication(true).setMetrics(metrics).build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(1, report.getNumberOfDeduplicatedFiles());
+        assertEquals(content.length, report.getDeduplicatedBytes());
+        assertEquals(report.getNumberOfDeduplicatedFiles(), metrics.getDeduplicatedFiles());
+        assertEquals(report.getDeduplicatedBytes(), metrics.getDeduplicatedBytes());
+        assertEquals(report.getCopiedBytes(), metrics.getCopiedBytes());
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+        assertTrue(Files.isSameFile(destDir.toPath().resolve("original.bin"), destDir.toPath().resolve("dir0").resolve("duplicate.bin")));
+        assertFalse(Files.isSameFile(destDir.toPath().resolve("tiny1.txt"), destDir.toPath().resolve("dir0").resolve("tiny2.txt")));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithFilterSkipsExcludedEntries() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        createSrcDirTree(srcDir.toPath(), 2, 2);
+        Files.write(srcDir.toPath().resolve("dir1").resolve("temp.tmp"), "temporary".getBytes());
+        Files.write(srcDir.toPath().resolve("big.bin"), new byte[64 * 1024]);
+        CopyFilter filter = new CopyFilter.Builder()
+                .exclude("dir0")
+                .exclude("*.tmp")
+                .exclude("regex:dir1/dir1/.*")
+                .setMaxSize(1024)
+                .build();
+        CopyConfiguration configuration = new CopyConfiguration.Builder().setFilter(filter).build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        // root with 2 files, dir1 with 2 files, dir1/dir1 without its files
+        int acceptedFiles = 7;
+        assertEquals(acceptedFiles, (int) JavaCopier.calculateFilesCount(srcDir.toPath(), filter));
+        assertEquals(acceptedFiles, report.getTotalFiles());
+        assertEquals(acceptedFiles, report.getNumberOfCopiedFiles());
+        assertFalse(Files.exists(destDir.toPath().resolve("dir0")));
+        assertFalse(Files.exists(destDir.toPath().resolve("dir1").resolve("temp.tmp")));
+        assertFalse(Files.exists(destDir.toPath().resolve("big.bin")));
+        assertFalse(Files.exists(destDir.toPath().resolve("dir1").resolve("dir1").resolve("file0.txt")));
+        assertFalse(Files.exists(destDir.toPath().resolve("dir1").resolve("dir0")));
+        assertTrue(Files.exists(destDir.toPath().resolve("dir1").resolve("file1.txt")));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void countFileVisitorIgnoresUnreadableEntriesExcludedByFilter() {
+        Path root = Paths.get("srcDir");
+        CopyFilter filter = new CopyFilter.Builder().exclude("*.tmp").exclude("build/**").build();
+        CountFileVisitor countFileVisitor = new CountFileVisitor(null, root, filter);
+
+        countFileVisitor.visitFileFailed(root.resolve("file.tmp"), new IOException("access denied"));
+        countFileVisitor.visitFileFailed(root.resolve("build").resolve("file.txt"), new IOException("access denied"));
+        countFileVisitor.visitFileFailed(root.resolve("file.txt"), new IOException("access denied"));
+
+        assertEquals(1, (int) countFileVisitor.getFilesCount());
+    }
+
+    @Test
+    public void copySrcDirTreeWithVerificationFailsCorruptedFiles() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int createdFilesAndDirs = createSrcDirTree(srcDir.toPath(), 2, 2);
+        int createdDirs = 7;
+        Path corruptedSrcFile = srcDir.toPath().resolve("dir0").resolve("file1.txt").toAbsolutePath();
+        FileChannelCopyStrategy channelCopyStrategy = new FileChannelCopyStrategy();
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy((src, dest, copyOptions, copyChunkListener) -> {
+                    channelCopyStrategy.copyFile(src, dest, copyOptions, copyChunkListener);
+                    if (src.toAbsolutePath().equals(corruptedSrcFile)) {
+                        Files.write(dest, "corrupted".getBytes());
+                    }
+                })
+                .setVerification(true)
+                .setVerificationParallelism(4)
+                .setManifestEnabled(true)
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        int copiedFiles = createdFilesAndDirs - createdDirs;
+        assertEquals(CopyStatusReport.FinalResult.COPY_PARTIAL, report.getFinalResult());
+        assertEquals(1, report.getNumberOfCopiesFailed());
+        assertEquals(createdFilesAndDirs - 1, report.getNumberOfCopiedFiles());
+        assertEquals(copiedFiles - 1, report.getNumberOfVerifiedFiles());
+        assertEquals(sizeOfDirTree(srcDir.toPath()) - Files.size(corruptedSrcFile), report.getVerifiedBytes());
+        assertTrue(report.getVerificationThroughput() > 0);
+        assertTrue(report.getCopyHistory().getCopiesFailed().contains(corruptedSrcFile));
+        assertFalse(Files.exists(destDir.toPath().resolve("dir0").resolve("file1.txt")));
+        assertFalse(Files.exists(destDir.toPath().resolve(CopyManifest.DEFAULT_FILE_NAME)));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeToArchiveStreamsTarGzWithParallelCompression() throws IOException {
+        srcDir = new File("srcDir");
+        destFile = new File("archive.tar.gz");
+        int createdFilesAndDirs = createSrcDirTree(srcDir.toPath(), 1, 2);
+        byte[] bigFileContent = new byte[3 * 1024 * 1024 + 100];
+        new Random(1).nextBytes(bigFileContent);
+        Files.write(srcDir.toPath().resolve("bigFile.bin"), bigFileContent);
+        createdFilesAndDirs++;
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setArchiveOutput(true)
+                .setCompressionThreads(4)
+                .build();
+        List<CopyStatusReport> progressReports = new ArrayList<>();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destFile.toPath(), configuration, new ProgressCollectorCopyListener(progressReports), null, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(createdFilesAndDirs, report.getNumberOfCopiedFiles());
+        assertEquals(sizeOfDirTree(srcDir.toPath()), report.getCopiedBytes());
+        assertTrue(progressReports.size() > createdFilesAndDirs);
+        Map<String, byte[]> entries = readTarGzEntries(destFile.toPath());
+        assertEquals(createdFilesAndDirs, entries.size());
+        assertTrue(entries.containsKey("srcDir/"));
+        assertTrue(entries.containsKey("srcDir/dir1/"));
+        assertTrue(Arrays.equals(bigFileContent, entries.get("srcDir/bigFile.bin")));
+        assertTrue(Arrays.equals(Files.readAllBytes(srcDir.toPath().resolve("dir0").resolve("file1.txt")), entries.get("srcDir/dir0/file1.txt")));
+
+        deleteDirTree(srcDir.toPath());
+    }
+
+    @Test
+    public void cancelledCopySrcDirTreeToArchiveDeletesPartialArchive() throws Exception {
+        srcDir = new File("srcDir");
+        destFile = new File("archive.tar.gz");
+        createSrcDirTree(srcDir.toPath(), 1, 2);
+        byte[] bigFileContent = new byte[3 * 1024 * 1024];
+        new Random(1).nextBytes(bigFileContent);
+        Files.write(srcDir.toPath().resolve("bigFile.bin"), bigFileContent);
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setArchiveOutput(true)
+                .build();
+        CopyHandle[] copyHandle = new CopyHandle[1];
+        CountDownLatch copyHandleReady = new CountDownLatch(1);
+        CopyListener cancellingCopyListener = new CopyListener() {
+            @Override
+            public void onCopyProgress(CopyStatusReport copyStatusReport) {
+                // cancels halfway through the big file, which would be left as a truncated entry
+                if (copyStatusReport.getCopiedBytes() > bigFileContent.length / 2) {
+                    awaitUninterruptibly(copyHandleReady);
+                    copyHandle[0].cancel();
+                }
+            }
+
+            @Override
+            public void onCopyComplete(CopyStatusReport finalCopyStatusReport) {
+            }
+        };
+
+        copyHandle[0] = JavaCopier.copyAsync(srcDir.toPath(), destFile.toPath(), configuration, cancellingCopyListener, null, StandardCopyOption.REPLACE_EXISTING);
+        copyHandleReady.countDown();
+        CopyStatusReport report = copyHandle[0].getFuture().get(10, TimeUnit.SECONDS);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_CANCELLED, report.getFinalResult());
+        assertFalse(destFile.exists());
+
+        deleteDirTree(srcDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeToManyDestsReadsSrcOnce() throws IOException {
+        srcDir = new File("srcDir");
+        int createdFilesAndDirs = createSrcDirTree(srcDir.toPath(), 2, 2);
+        byte[] bigFileContent = new byte[3 * 1024 * 1024 + 100];
+        new Random(1).nextBytes(bigFileContent);
+        Files.write(srcDir.toPath().resolve("bigFile.bin"), bigFileContent);
+        createdFilesAndDirs++;
+        Path[] dests = new Path[]{new File("destDir0").toPath(), new File("destDir1").toPath(), new File("destDir2").toPath()};
+        List<CopyStatusReport> progressReports = new ArrayList<>();
+
+        MultiDestinationCopyReport report = JavaCopier.copyToMany(srcDir.toPath(), dests, CopyConfiguration.DEFAULT, new ProgressCollectorCopyListener(progressReports), StandardCopyOption.REPLACE_EXISTING);
+
+        long srcSize = sizeOfDirTree(srcDir.toPath());
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(srcSize, report.getReadBytes());
+        assertEquals(dests.length * srcSize, report.getWrittenBytes());
+        assertEquals(dests.length, report.getReports().size());
+        for (Path dest : dests) {
+            CopyStatusReport destReport = report.getReport(dest);
+            assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, destReport.getFinalResult());
+            assertEquals(createdFilesAndDirs, destReport.getNumberOfCopiedFiles());
+            assertEquals(srcSize, destReport.getCopiedBytes());
+            assertTrue(isSameDirTree(srcDir.toPath(), dest));
+        }
+        assertTrue(progressReports.size() > dests.length * createdFilesAndDirs);
+
+        deleteDirTree(srcDir.toPath());
+        for (Path dest : dests) {
+            deleteDirTree(dest);
+        }
+    }
+
+    @Test
+    public void copySrcDirTreeWithThrottleWaitsAndFollowsLimitChanges() throws Exception {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        createSrcDirTree(srcDir.toPath(), 1, 2);
+        Files.write(srcDir.toPath().resolve("bigFile.bin"), new byte[5 * 512 * 1024]);
+        CopyThrottle throttle = new CopyThrottle(512 * 1024, CopyThrottle.UNLIMITED);
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy(new FileChannelCopyStrategy(64 * 1024))
+                .setThrottle(throttle)
+                .build();
+        Thread limitRemover = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throttle.setMaxBytesPerSecond(CopyThrottle.UNLIMITED);
+        });
+        limitRemover.start();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+        limitRemover.join();
+
+        // at 512KB/s the copy would last 4 seconds, the limit is removed after half a second
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertTrue(report.getThrottledMillis() >= 200);
+        assertTrue(report.getElapsedMillis() < 3000);
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithAdaptiveConcurrencyRaisesFilesInFlightWhileThroughputScales() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        Files.createDirectories(srcDir.toPath());
+        for (int i = 0; i < 300; i++) {
+            Files.write(srcDir.toPath().resolve("file" + i + ".txt"), ("content " + i).getBytes());
+        }
+        FilesCopyStrategy filesCopyStrategy = new FilesCopyStrategy();
+        InMemoryCopyMetrics metrics = new InMemoryCopyMetrics();
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy((src, dest, copyOptions, copyChunkListener) -> {
+                    // a device whose latency does not depend on the files in flight
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    filesCopyStrategy.copyFile(src, dest, copyOptions, copyChunkListener);
+                })
+                .setAdaptiveConcurrency(true)
+                .setMinFilesInFlight(1)
+                .setMaxFilesInFlight(16)
+                .setMetrics(metrics)
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+        List<InMemoryCopyMetrics.ConcurrencySample> concurrencyHistory = metrics.getConcurrencyHistory();
+        assertEquals(1, concurrencyHistory.get(0).getConcurrency());
+        assertTrue(metrics.getConcurrency() > 1);
+        for (InMemoryCopyMetrics.ConcurrencySample sample : concurrencyHistory) {
+            assertTrue(sample.getConcurrency() >= 1 && sample.getConcurrency() <= 16);
+        }
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void copySrcDirTreeWithDeviceAwareSchedulingLimitsFilesInFlightPerDevice() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        int totalFiles = createSrcDirTree(srcDir.toPath(), 3, 10);
+        FilesCopyStrategy filesCopyStrategy = new FilesCopyStrategy();
+        AtomicInteger filesInFlight = new AtomicInteger();
+        AtomicInteger maxFilesInFlight = new AtomicInteger();
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy((src, dest, copyOptions, copyChunkListener) -> {
+                    maxFilesInFlight.accumulateAndGet(filesInFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(2);
+                        filesCopyStrategy.copyFile(src, dest, copyOptions, copyChunkListener);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        filesInFlight.decrementAndGet();
+                    }
+                })
+                .setDeviceAwareScheduling(true)
+                .setMaxFilesInFlight(64)
+                .setMaxFilesInFlightPerDevice(2)
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertTrue(configuration.isPerFileExecution());
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertEquals(totalFiles, report.getNumberOfCopiedFiles());
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+        // srcDir and destDir are on the same device
+        assertTrue(maxFilesInFlight.get() <= 2);
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    @Test
+    public void deviceIoSchedulerInterleavesDevicePairsSharingADevice() throws InterruptedException {
+        List<Runnable> startedCopies = new ArrayList<>();
+        // srcA and srcB are two devices copying to the single dest device
+        DeviceIoScheduler deviceIoScheduler = new DeviceIoScheduler(startedCopies::add, 1,
+                srcFile -> Paths.get("dest").resolve(srcFile.getParent().getFileName()).resolve(srcFile.getFileName()),
+                directory -> directory.toString().contains("dest") ? "dest" : directory.getFileName().toString());
+        List<String> copyOrder = new ArrayList<>();
+        for (String srcDevice : Arrays.asList("srcA", "srcB")) {
+            for (int i = 0; i < 3; i++) {
+                String copy = srcDevice + i;
+                deviceIoScheduler.execute(Paths.get(srcDevice, "file" + i), () -> copyOrder.add(copy));
+            }
+        }
+
+        while (!startedCopies.isEmpty()) {
+            assertEquals(1, startedCopies.size());
+            startedCopies.remove(0).run();
+        }
+
+        assertEquals(Arrays.asList("srcA0", "srcB0", "srcA1", "srcB1", "srcA2", "srcB2"), copyOrder);
+    }
+
+    @Test
+    public void deviceIoSchedulerRunsCopiesRejectedByTheExecutorOutsideItsMonitor() throws InterruptedException {
+        DeviceIoScheduler[] deviceIoScheduler = new DeviceIoScheduler[1];
+        deviceIoScheduler[0] = new DeviceIoScheduler(copyTask -> {
+            throw new RejectedExecutionException();
+        }, 1, srcFile -> Paths.get("dest").resolve(srcFile), directory -> "device");
+        List<Boolean> monitorHeld = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            deviceIoScheduler[0].execute(Paths.get("src", "file" + i), () -> monitorHeld.add(Thread.holdsLock(deviceIoScheduler[0])));
+        }
+
+        assertEquals(Arrays.asList(false, false, false), monitorHeld);
+    }
+
+    @Test
+    public void deviceAwareDispatchingVisitsFilesOnOtherDevicesWhileOneIsSlow() throws IOException {
+        CountDownLatch fastDeviceVisited = new CountDownLatch(1);
+        AtomicBoolean slowDeviceTimedOut = new AtomicBoolean(false);
+        FileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                try {
+                    if (file.startsWith("fast")) {
+                        fastDeviceVisited.countDown();
+                    } else if (!fastDeviceVisited.await(5, TimeUnit.SECONDS)) {
+                        slowDeviceTimedOut.set(true);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        };
+        ExecutorService executor = Executors.newCachedThreadPool();
+        DeviceIoScheduler deviceIoScheduler = new DeviceIoScheduler(executor, 1, srcFile -> Paths.get("dest").resolve(srcFile),
+                directory -> directory.getFileName().toString());
+        // the files waiting for the slow device must not take the permits the fast one needs
+        DispatchingFileVisitor dispatchingFileVisitor = new DispatchingFileVisitor(visitor, executor, new FixedConcurrencyLimiter(2), deviceIoScheduler);
+        BasicFileAttributes attrs = Files.readAttributes(Paths.get("."), BasicFileAttributes.class);
+
+        for (Path file : Arrays.asList(Paths.get("slow", "file0"), Paths.get("slow", "file1"), Paths.get("slow", "file2"), Paths.get("fast", "file0"))) {
+            dispatchingFileVisitor.visitFile(file, attrs);
+        }
+        dispatchingFileVisitor.awaitCompletion();
+        executor.shutdown();
+
+        assertFalse(slowDeviceTimedOut.get());
+    }
+
+    @Test
+    public void copySrcDirTreeWithOrderedTraversalCopiesEntriesInOrderAndReportsPlanning() throws IOException {
+        srcDir = new File("srcDir");
+        destDir = new File("destDir");
+        Files.createDirectories(srcDir.toPath().resolve("subDir"));
+        for (int i = 0; i < 10; i++) {
+            // the names sort the opposite way of the sizes
+            Files.write(srcDir.toPath().resolve("file" + i + ".txt"), new byte[(10 - i) * 100]);
+            Files.write(srcDir.toPath().resolve("subDir").resolve("file" + i + ".txt"), new byte[(10 - i) * 100]);
+        }
+        FilesCopyStrategy filesCopyStrategy = new FilesCopyStrategy();
+        List<Path> copiedFiles = new ArrayList<>();
+        InMemoryCopyMetrics metrics = new InMemoryCopyMetrics();
+        CopyConfiguration configuration = new CopyConfiguration.Builder()
+                .setFileCopyStrategy((src, dest, copyOptions, copyChunkListener) -> {
+                    copiedFiles.add(src);
+                    filesCopyStrategy.copyFile(src, dest, copyOptions, copyChunkListener);
+                })
+                .setTraversalOrder(OrderedFileTreeWalker.Order.SIZE)
+                .setMetrics(metrics)
+                .build();
+
+        CopyStatusReport report = JavaCopier.copy(srcDir.toPath(), destDir.toPath(), configuration, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(CopyStatusReport.FinalResult.COPY_SUCCESSFUL, report.getFinalResult());
+        assertTrue(isSameDirTree(srcDir.toPath(), destDir.toPath()));
+        assertEquals(20, copiedFiles.size());
+        Path absoluteSrcDir = srcDir.toPath().toAbsolutePath();
+        for (Path dir : Arrays.asList(absoluteSrcDir, absoluteSrcDir.resolve("subDir"))) {
+            long previousSize = -1;
+            int checkedFiles = 0;
+            for (Path copiedFile : copiedFiles) {
+                if (copiedFile.getParent().equals(dir)) {
+                    assertTrue(Files.size(copiedFile) > previousSize);
+                    previousSize = Files.size(copiedFile);
+                    checkedFiles++;
+                }
+            }
+            assertEquals(10, checkedFiles);
+        }
+        assertEquals(2, metrics.getPhaseTimer(CopyPhase.TRAVERSAL_PLANNING).getCount());
+        assertTrue(report.getTraversalPlanningMillis() >= 0);
+
+        deleteDirTree(srcDir.toPath());
+        deleteDirTree(destDir.toPath());
+    }
+
+    /**
+     * @return the number of files and dirs (root included) created
+     */
+    private int createSrcDirTree(Path root, int depth, int filesPerDir) throws IOException {
+        Files.createDirectories(root);
+        int created = 1;
+        for (int i = 0; i < filesPerDir; i++) {
+            Files.write(root.resolve("file" + i + ".txt"), ("content of " + root + " " + i).getBytes());
+            created++;
+        }
+        if (depth > 0) {
+            for (int i = 0; i < 2; i++) {
+                created += createSrcDirTree(root.resolve("dir" + i), depth - 1, filesPerDir);
+            }
+        }
+        return created;
+    }
+
+    private CopySkipPolicy.Decision decide(CopySkipPolicy skipPolicy, String srcFileName) throws IOException {
+        Path srcFile = srcDir.toPath().resolve(srcFileName);
+        return skipPolicy.decide(srcFile, Files.readAttributes(srcFile, BasicFileAttributes.class), destDir.toPath().resolve(srcFileName));
+    }
+
+    private boolean isSameDirTree(Path srcRoot, Path destRoot) throws IOException {
+        try (Stream<Path> srcPaths = Files.walk(srcRoot)) {
+            for (Path srcPath : (Iterable<Path>) srcPaths::iterator) {
+                Path destPath = calculateDestPath(destRoot, srcRoot, srcPath);
+                if (Files.isDirectory(srcPath) ? !Files.isDirectory(destPath) : !isSameFileContent(srcPath, destPath)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private long sizeOfDirTree(Path root) throws IOException {
+        long size = 0;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(path)) {
+                    size += Files.size(path);
+                }
+            }
+        }
+        return size;
+    }
+
+    private void deleteDirTree(Path root) throws IOException {
+        if (Files.notExists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static class ProgressCollectorCopyListener implements CopyListener {
+
+        private final List<CopyStatusReport> progressReports;
+
+        ProgressCollectorCopyListener(List<CopyStatusReport> progressReports) {
+            this.progressReports = progressReports;
+        }
+
+        @Override
+        public void onCopyProgress(CopyStatusReport copyStatusReport) {
+            progressReports.add(copyStatusReport);
+        }
+
+        @Override
+        public void onCopyComplete(CopyStatusReport finalCopyStatusReport) {
+        }
+    }
+
+    /**
+     * @return the content of the entries of a tar.gz archive by name, empty for directories
+     */
+    private Map<String, byte[]> readTarGzEntries(Path archive) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (DataInputStream tarInputStream = new DataInputStream(new GZIPInputStream(Files.newInputStream(archive)))) {
+            byte[] header = new byte[512];
+            while (true) {
+                tarInputStream.readFully(header);
+                if (header[0] == 0) {
+                    return entries;
+                }
+                String name = new String(header, 0, 100, StandardCharsets.UTF_8).trim();
+                int size = Integer.parseInt(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+                byte[] content = new byte[size];
+                tarInputStream.readFully(content);
+                tarInputStream.readFully(new byte[(512 - size % 512) % 512]);
+                entries.put(name, content);
+            }
+        }
+    }
+
     private Path calculateDestPath(Path d, Path s, Path srcPath) {
         return d.resolve(s.relativize(srcPath));
     }
@@ -245,4 +1452,12 @@ public class JavaCopierTest {
         byte[] encoded = Files.readAllBytes(file);
         return new String(encoded, Charset.defaultCharset());
     }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }